@@ -1,21 +1,35 @@
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.List;
+import java.net.InetAddress;
 
 import exception.InvalidCommandException;
+import view.BufferedConsoleView;
 import view.ConsoleView;
 import controller.CalendarController;
+import controller.CalendarServer;
+import controller.HeadlessRunner;
 import view.SwingView;
 import view.UserView;
 
 /**
  * This class represents the main entry point of the calendar application.
  * It supports two modes : interactive and headless.
+ * After the mode, --compact keeps single events in compact storage, --journal &lt;dir&gt;
+ * keeps the calendars in a directory across runs and --sync-every &lt;n&gt; lets that many
+ * journaled commands share one fsync. Output is written on a background thread, and
+ * --quiet leaves out the acknowledgement of each command. In server mode the commands
+ * come from TCP clients instead, on the port that follows the mode. The server listens on
+ * the loopback address only, unless --bind &lt;address&gt; names another address to listen
+ * on, such as 0.0.0.0 for every one.
  */
 
 public class CalendarApp {
 
+  /**
+   * Port server mode listens on when none is given.
+   */
+
+  static final int DEFAULT_PORT = 7070;
+
   /**
    * The main method that starts the calendar application.
    * @param args Command line arguments.
@@ -24,59 +38,94 @@ public class CalendarApp {
 
   public static void main(String[] args) throws InvalidCommandException {
     UserView view = new ConsoleView();
-    CalendarController controller = new CalendarController();
 
     if (args.length < 2) {
       view.displayMessage("Invalid mode, use: --mode interactive "
-              + "OR --mode headless <commandFile>");
+              + "OR --mode headless <commandFile> OR --mode server [port]");
       System.exit(1);
     }
 
+    boolean compactStorage = false;
+    boolean quiet = false;
+    String journalDirectory = null;
+    String bindAddress = null;
+    int syncEvery = 1;
+    for (int i = 2; i < args.length; i++) {
+      if (args[i].equalsIgnoreCase("--compact")) {
+        compactStorage = true;
+      }
+      else if (args[i].equalsIgnoreCase("--quiet")) {
+        quiet = true;
+      }
+      else if (args[i].equalsIgnoreCase("--journal") && i + 1 < args.length) {
+        journalDirectory = args[++i];
+      }
+      else if (args[i].equalsIgnoreCase("--bind") && i + 1 < args.length) {
+        bindAddress = args[++i];
+      }
+      else if (args[i].equalsIgnoreCase("--sync-every") && i + 1 < args.length) {
+        try {
+          syncEvery = Integer.parseInt(args[++i]);
+        }
+        catch (NumberFormatException e) {
+          syncEvery = 0;
+        }
+      }
+    }
+
+    UserView output = new BufferedConsoleView(quiet);
+    CalendarController controller = new CalendarController(compactStorage, output);
+    if (journalDirectory != null) {
+      try {
+        controller.openJournal(journalDirectory, syncEvery);
+        Runtime.getRuntime().addShutdownHook(new Thread(controller::closeJournal));
+      }
+      catch (InvalidCommandException e) {
+        output.flush();
+        view.displayMessage(e.getMessage());
+        System.exit(1);
+      }
+    }
+
     String mode = args[1].toLowerCase();
 
     if (args[0].equalsIgnoreCase("--mode")) {
       if (mode.equals("gui")) {
         new SwingView(controller);
       }
+      else if (mode.equals("server")) {
+        int port = DEFAULT_PORT;
+        if (args.length > 2 && args[2].matches("\\d{1,5}")) {
+          port = Integer.parseInt(args[2]);
+        }
+        try {
+          InetAddress address = bindAddress == null ? InetAddress.getLoopbackAddress()
+                  : InetAddress.getByName(bindAddress);
+          CalendarServer server = new CalendarServer(controller, port, address);
+          server.start();
+          output.displayMessage("Server mode on. Listening on "
+                  + address.getHostAddress() + " port " + server.getPort());
+        }
+        catch (IOException | IllegalArgumentException e) {
+          output.displayMessage("Cannot listen on port " + port + ": " + e.getMessage());
+        }
+      }
       else if (mode.equals("interactive")) {
-        view.displayMessage("Interactive mode on. Type 'exit' to quit");
+        output.displayMessage("Interactive mode on. Type 'exit' to quit");
           while (true) {
             try {
-              String command = view.getInput();
+              String command = output.getInput();
               controller.processCommand(command);
             }
             catch (Exception e) {
-              view.displayMessage(e.getMessage());
+              output.displayMessage(e.getMessage());
           }
         }
       }
       else if (mode.equals("headless")) {
         view.displayMessage("Headless mode on. Provide the absolute path to the command.txt file");
         String filePath = view.getInput();
-        List<String> lines = List.of();
-
-        try {
-          lines = Files.readAllLines(Paths.get(filePath));
-        }
-        catch (IOException e) {
-          view.displayMessage("Invalid Path: " + e.getMessage());
-        }
-
-        if (lines.size() >= 2
-                && lines.get(lines.size() - 1).trim().equalsIgnoreCase("exit")) {
-          try {
-            for (String command : lines) {
-              controller.processCommand(command);
-            }
-          }
-          catch (Exception e) {
-            view.displayMessage(e.getMessage());
-            controller.processCommand("exit");
-          }
-        }
-        else {
-          view.displayMessage("File does not contain exit command or less than 2 commands");
-        }
+        new HeadlessRunner(controller).run(filePath);
       }
       else {
         view.displayMessage("Invalid mode: " + mode);
@@ -1,7 +1,15 @@
 package controller;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -13,11 +21,16 @@ import java.util.Locale;
 
 import exception.EventConflictException;
 import exception.InvalidCommandException;
+import model.CalendarEvent;
 import model.CalendarManager;
+import model.CalendarSession;
+import model.EventVisitor;
 import model.RecurringEvent;
 import model.SingleEvent;
 import utilities.CSVExporter;
 import utilities.CSVImporter;
+import utilities.CommandJournal;
+import utilities.DateTimeParsers;
 import view.ConsoleView;
 import view.UserView;
 
@@ -25,11 +38,16 @@ import view.UserView;
  * CalendarController class manages input from user,
  * processes commands and displays result to user.
  * It manages interaction between calendar model and user view.
+ * Commands run in a {@link CalendarSession}, which carries the calendar they apply to;
+ * many sessions may share one controller and its calendars.
  */
 
 public class CalendarController {
   CalendarManager model;
   UserView view;
+  CommandJournal journal;
+  Path journalDirectory;
+  boolean journalFailed;
 
   /**
    * Formatter for date and time.
@@ -45,6 +63,36 @@ public class CalendarController {
   static final DateTimeFormatter DATE_FORMATTER =
           DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ENGLISH);
 
+  /**
+   * Number of imported events created together while the file is still being read.
+   */
+
+  static final int IMPORT_BATCH_SIZE = 10_000;
+
+  /**
+   * Size in bytes from which a file is imported on several threads.
+   */
+
+  static final long PARALLEL_IMPORT_THRESHOLD = 64L << 20;
+
+  /**
+   * Name of the journal file in the journal directory.
+   */
+
+  static final String JOURNAL_FILE = "commands.journal";
+
+  /**
+   * Longest time in milliseconds a journaled command waits before it is written.
+   */
+
+  static final long JOURNAL_MAX_DELAY_MILLIS = 10;
+
+  /**
+   * Number of free times find free shows when no limit is given.
+   */
+
+  static final int DEFAULT_FREE_SLOTS = 5;
+
   /**
    * Enum representing the properties of the event.
    */
@@ -63,65 +111,175 @@ public class CalendarController {
    */
 
   public CalendarController() {
-    model = new CalendarManager();
-    view = new ConsoleView();
+    this(false);
   }
 
   /**
-   * Method to process the user's command and perform the action needed.
+   * Constructs a calendar controller whose calendars may use compact storage.
+   * @param compactStorage true to keep plain single events in compact form.
+   */
+
+  public CalendarController(boolean compactStorage) {
+    this(compactStorage, new ConsoleView());
+  }
+
+  /**
+   * Constructs a calendar controller that shows its messages in a given view.
+   * @param compactStorage true to keep plain single events in compact form.
+   * @param view the view messages are displayed in.
+   */
+
+  public CalendarController(boolean compactStorage, UserView view) {
+    model = new CalendarManager(compactStorage);
+    this.view = view;
+  }
+
+  /**
+   * Opens a session on the calendars of this controller, to pass to
+   * {@link #processCommand(String, CalendarSession)}.
+   * @return the session, on the Default calendar.
+   */
+
+  public CalendarSession openSession() {
+    return model.openSession();
+  }
+
+  /**
+   * Method to process the user's command and perform the action needed, in the default
+   * session.
    * @param command the user's command.
    */
 
   public void processCommand(String command) {
+    processCommand(command, model.defaultSession());
+  }
+
+  /**
+   * Method to process the user's command and perform the action needed.
+   * @param command the user's command.
+   * @param session the session the command runs in: commands on events apply to its
+   *                active calendar, and use calendar changes it.
+   */
+
+  public void processCommand(String command, CalendarSession session) {
     if (command.trim().equalsIgnoreCase("exit")) {
        view.displayMessage("Exiting application.");
+      closeJournal();
+      view.flush();
       System.exit(0);
     }
 
-    try {
-      if (command.toLowerCase().startsWith("create calendar")) {
-        processCreateCalendar(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("edit calendar")) {
-        processEditCalendar(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("use calendar")) {
-        processUseCalendar(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("create event")) {
-        processCreate(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("edit event")) {
-        processEdit(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("print events")) {
-        processPrint(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("show status")) {
-        processShow(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("export cal")) {
-        processExport(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.toLowerCase().startsWith("copy event")) {
-        processCopyEvents(command);
-         view.displayMessage("Command processed: " + command);
-      }
-      else if (command.startsWith("import cal")) {
-        processImport(command);
-        view.displayMessage("Import completed successfully.");
+    CommandVerb verb = CommandVerb.classify(command);
+    processParsed(command, verb, verb == null ? null : new CommandTokens(command), session,
+            view);
+  }
+
+  /**
+   * Method to perform the action of a command that was already classified and split into
+   * tokens, which may happen on another thread. The command must not be exit.
+   * @param command the user's command.
+   * @param verb the kind of the command, or null if it is of no known kind.
+   * @param tokens the tokens of the command, or null if it is of no known kind.
+   * @param session the session the command runs in.
+   * @param view the view the results of the command are shown in.
+   */
+
+  void processParsed(String command, CommandVerb verb, CommandTokens tokens,
+                     CalendarSession session, UserView view) {
+    if (verb != null && verb.journaled && journal != null) {
+      synchronized (this) {
+        if (journalFailed) {
+          throw new InvalidCommandException("Journal could not be written; changes are "
+                  + "refused until it is reopened");
+        }
+        perform(command, verb, tokens, session, view);
+        if (journalFailed) {
+          view.displayMessage("Journal could not be written; the change was made, but "
+                  + "further changes are refused until it is reopened");
+        }
       }
-      else {
+    }
+    else {
+      perform(command, verb, tokens, session, view);
+    }
+  }
+
+  /**
+   * Performs the action of a command. While a journal is open, commands that change the
+   * calendars run one at a time under the controller's monitor, together with their
+   * journal records and checkpoints, so the journal holds the changes in the order they
+   * were made and a checkpoint never falls between a change and its record. A change
+   * whose record or checkpoint cannot be written is kept, and the journal is marked failed.
+   * @param command the user's command.
+   * @param verb the kind of the command, or null if it is of no known kind.
+   * @param tokens the tokens of the command, or null if it is of no known kind.
+   * @param session the session the command runs in.
+   * @param view the view the results of the command are shown in.
+   */
+
+  private void perform(String command, CommandVerb verb, CommandTokens tokens,
+                       CalendarSession session, UserView view) {
+    try {
+      if (verb == null) {
         throw new InvalidCommandException("Invalid command");
       }
+      switch (verb) {
+        case CREATE_CALENDAR:
+          processCreateCalendar(tokens);
+          journal(command);
+          break;
+        case EDIT_CALENDAR:
+          processEditCalendar(tokens);
+          journal(command);
+          break;
+        case USE_CALENDAR:
+          processUseCalendar(tokens, session);
+          journalUse(command, session);
+          break;
+        case CREATE_EVENT:
+          processCreate(tokens, session);
+          journal(command, session);
+          break;
+        case EDIT_EVENT:
+          processEdit(tokens, session);
+          journal(command, session);
+          break;
+        case PRINT_EVENTS:
+          processPrint(tokens, session, view);
+          break;
+        case SHOW_STATUS:
+          processShow(tokens, session, view);
+          break;
+        case FIND_FREE:
+          processFindFree(tokens, session, view);
+          break;
+        case EXPORT_CALENDAR:
+          processExport(tokens, session);
+          break;
+        case COPY_EVENT:
+          processCopyEvents(tokens, session, view);
+          journal(command, session);
+          break;
+        case IMPORT_CALENDAR:
+          try {
+            processImport(tokens, session, view);
+          }
+          finally {
+            checkpoint();
+          }
+          view.displayAcknowledgement("Import completed successfully.");
+          return;
+        case SAVE_CALENDAR:
+          model.saveSnapshot(snapshotPath(tokens, "save"), session);
+          break;
+        case LOAD_CALENDAR:
+          model.loadSnapshot(snapshotPath(tokens, "load"), session);
+          checkpoint();
+          break;
+        default:
+          throw new InvalidCommandException("Invalid command");
+      }
+      view.displayAcknowledgement("Command processed: " + command);
     }
     catch (InvalidCommandException | EventConflictException e) {
       throw e;
@@ -132,31 +290,204 @@ public class CalendarController {
   }
 
   /**
-   * Extracts command arguments from the input string.
-   * @param command the input command string.
-   * @return list of tokens extracted.
+   * Keeps the calendars in a directory from now on. The latest checkpoint in the directory
+   * is loaded and the commands journaled after it are replayed; every later command that
+   * changes the calendars is journaled, and imports and loads write a new checkpoint.
+   * @param directory the directory, created if it does not exist.
+   * @param syncEvery the number of commands per fsync; 1 makes every command wait until
+   *                  it is on disk.
    */
 
-  private List extractDataFromCommand(String command) {
-    List<String> tokens = new ArrayList<>();
-    boolean insideQuotes = false;
-    StringBuilder captured = new StringBuilder();
+  public void openJournal(String directory, int syncEvery) {
+    if (journal != null) {
+      throw new InvalidCommandException("Journal is already open");
+    }
 
-    for (int i = 0; i < command.length(); i++) {
-      if (command.charAt(i) == ' ' && !insideQuotes) {
-        tokens.add(captured.toString());
-        captured = new StringBuilder();
+    try {
+      Path dir = Paths.get(directory);
+      Files.createDirectories(dir);
+      Path latest = null;
+      long baseSequence = 0;
+      try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(dir,
+              "calendar-*.snapshot")) {
+        for (Path checkpoint : checkpoints) {
+          long sequence = checkpointSequence(checkpoint);
+          if (sequence >= baseSequence) {
+            latest = checkpoint;
+            baseSequence = sequence;
+          }
+        }
       }
-      else if (command.charAt(i) == '"' || command.charAt(i) == '\'') {
-        insideQuotes = !insideQuotes;
+      if (latest != null) {
+        model.loadSnapshot(latest.toString());
       }
-      else {
-        captured.append(command.charAt(i));
+
+      CommandJournal opened = new CommandJournal(dir.resolve(JOURNAL_FILE), baseSequence,
+              syncEvery, JOURNAL_MAX_DELAY_MILLIS);
+      UserView console = view;
+      view = new UserView() {
+        @Override
+        public void displayMessage(String message) {
+        }
+
+        @Override
+        public String getInput() {
+          return console.getInput();
+        }
+      };
+      try {
+        opened.replay(command -> {
+          try {
+            processCommand(command);
+          }
+          catch (InvalidCommandException | EventConflictException e) {
+            console.displayMessage("Skipped journaled command: " + command);
+          }
+        });
+      }
+      catch (IOException e) {
+        opened.close();
+        throw e;
+      }
+      finally {
+        view = console;
       }
+      journal = opened;
+      journalDirectory = dir;
     }
-    tokens.add(captured.toString());
+    catch (IOException | IllegalArgumentException e) {
+      throw new InvalidCommandException("Error opening journal");
+    }
+  }
 
-    return tokens;
+  /**
+   * Writes the journaled commands that are still waiting and closes the journal.
+   * Does nothing if no journal is open.
+   */
+
+  public void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    }
+    catch (IOException e) {
+      view.displayMessage("Error writing journal");
+    }
+    finally {
+      journal = null;
+      journalFailed = false;
+    }
+  }
+
+  /**
+   * Journals a command that changed the events of a session's active calendar, if a
+   * journal is open. The journal is replayed in the default session, so a command that
+   * ran on another calendar is journaled between a use calendar for that calendar and one
+   * back to the default session's. Called under the controller's monitor, which every
+   * change of the default session's calendar also holds while a journal is open.
+   * @param command the command.
+   * @param session the session the command ran in.
+   */
+
+  private synchronized void journal(String command, CalendarSession session) {
+    if (journal == null) {
+      return;
+    }
+    String calendarName = session.getActiveCalendarName();
+    String replayedName = model.getActiveCalendarName();
+    if (calendarName.equals(replayedName)) {
+      journal(command);
+      return;
+    }
+    journal("use calendar --name \"" + calendarName + "\"");
+    journal(command);
+    journal("use calendar --name \"" + replayedName + "\"");
+  }
+
+  /**
+   * Journals a use calendar command, if a journal is open. Only the default session's
+   * active calendar is replayed, so the commands of other sessions are not journaled.
+   * @param command the command.
+   * @param session the session the command ran in.
+   */
+
+  private void journalUse(String command, CalendarSession session) {
+    if (session == model.defaultSession()) {
+      journal(command);
+    }
+  }
+
+  /**
+   * Journals a command that changed the calendars, if a journal is open and has not
+   * failed. The command has already been applied, so a journal that cannot be written is
+   * marked failed rather than reported as an error of the command.
+   * @param command the command.
+   */
+
+  private synchronized void journal(String command) {
+    if (journal == null || journalFailed) {
+      return;
+    }
+    try {
+      journal.append(command);
+    }
+    catch (IOException e) {
+      journalFailed = true;
+    }
+  }
+
+  /**
+   * Saves the calendars as the checkpoint of the journal, if a journal is open, and empties
+   * the journal. Used after commands that bring in data the journal cannot repeat. The
+   * checkpoint is named after the last journaled command and replaces the older ones only
+   * once it is complete, so a crash at any point leaves a checkpoint and the commands
+   * after it. A checkpoint that cannot be written marks the journal failed.
+   */
+
+  private synchronized void checkpoint() {
+    if (journal == null || journalFailed) {
+      return;
+    }
+    try {
+      Path checkpoint = journalDirectory.resolve("calendar-" + journal.lastSequence()
+              + ".snapshot");
+      Path partial = journalDirectory.resolve("calendar.snapshot.tmp");
+      model.saveSnapshot(partial.toString());
+      Files.move(partial, checkpoint, StandardCopyOption.ATOMIC_MOVE,
+              StandardCopyOption.REPLACE_EXISTING);
+      journal.truncate();
+
+      try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(journalDirectory,
+              "calendar-*.snapshot")) {
+        for (Path older : checkpoints) {
+          if (!older.equals(checkpoint)) {
+            Files.deleteIfExists(older);
+          }
+        }
+      }
+    }
+    catch (IOException | InvalidCommandException e) {
+      journalFailed = true;
+    }
+  }
+
+  /**
+   * Reads the sequence number in the name of a checkpoint file.
+   * @param checkpoint the file, named calendar-&lt;sequence&gt;.snapshot.
+   * @return the sequence number, or -1 if the name has none.
+   */
+
+  private static long checkpointSequence(Path checkpoint) {
+    String name = checkpoint.getFileName().toString();
+    try {
+      return Long.parseLong(name.substring("calendar-".length(),
+              name.length() - ".snapshot".length()));
+    }
+    catch (NumberFormatException | IndexOutOfBoundsException e) {
+      return -1;
+    }
   }
 
   /**
@@ -177,21 +508,20 @@ public class CalendarController {
 
   /**
    * Function to create a Calendar.
-   * @param command the list of commands.
+   * @param tokens the tokens of the command.
    */
 
-  private void processCreateCalendar(String command) {
-    List<String> tokens = extractDataFromCommand(command);
-
-    if (!tokens.get(2).equalsIgnoreCase("--name")
-            || !tokens.get(4).equalsIgnoreCase("--timezone")
+  private void processCreateCalendar(CommandTokens tokens) {
+    if (!tokens.isIgnoreCase(2, "--name")
+            || !tokens.isIgnoreCase(4, "--timezone")
             || tokens.size() != 6) {
       throw new InvalidCommandException("Invalid create calendar command format.");
     }
 
     try {
-      if (checkValidZoneID(tokens.get(5))) {
-        model.createCalendar(tokens.get(3), ZoneId.of(tokens.get(5)));
+      String zoneId = tokens.get(5);
+      if (checkValidZoneID(zoneId)) {
+        model.createCalendar(tokens.get(3), ZoneId.of(zoneId));
       }
       else {
         throw new InvalidCommandException("Invalid Zone ID.");
@@ -207,15 +537,13 @@ public class CalendarController {
 
   /**
    * Function to edit a Calendar.
-   * @param command the list of commands.
+   * @param tokens the tokens of the command.
    */
 
-  private void processEditCalendar(String command) {
-    List<String> tokens = extractDataFromCommand(command);
-
+  private void processEditCalendar(CommandTokens tokens) {
     if (tokens.size() != 7
-            || !tokens.get(2).equalsIgnoreCase("--name")
-            || !tokens.get(4).equalsIgnoreCase("--property")) {
+            || !tokens.isIgnoreCase(2, "--name")
+            || !tokens.isIgnoreCase(4, "--property")) {
       throw new InvalidCommandException("Invalid edit calendar command format.");
     }
 
@@ -245,67 +573,60 @@ public class CalendarController {
 
   /**
    * Function to set a Calendar.
-   * @param command the list of commands.
+   * @param tokens the tokens of the command.
+   * @param session the session the command runs in.
    */
 
-  private void processUseCalendar(String command) {
-    List<String> tokens = extractDataFromCommand(command);
-
+  private void processUseCalendar(CommandTokens tokens, CalendarSession session) {
     if (tokens.size() != 4
-            || !tokens.get(2).equalsIgnoreCase("--name")) {
+            || !tokens.isIgnoreCase(2, "--name")) {
       throw new InvalidCommandException("Invalid use calendar command format.");
     }
 
-    try {
-      String calName = tokens.get(3);
-      model.switchCalendar(calName);
-    }
-    catch (InvalidCommandException e) {
-      throw e;
-    }
+    session.switchCalendar(tokens.get(3));
   }
 
-  private void processCopyEvents(String command) {
-    List<String> tokens = extractDataFromCommand(command);
+  /**
+   * Function to copy events to another calendar.
+   * @param tokens the tokens of the command.
+   * @param session the session the command runs in.
+   * @param view the view the copied events are shown in.
+   */
 
+  private void processCopyEvents(CommandTokens tokens, CalendarSession session,
+                                 UserView view) {
     try {
       if (tokens.size() == 9) {
-        String eventName = tokens.get(2);
-        String copyDate = tokens.get(4);
-        String targetCalendar = tokens.get(6);
-        String targetDate = tokens.get(8);
+        LocalDateTime copyDate = tokens.dateTime(4);
+        LocalDateTime targetDate = copyDate == null ? null : tokens.dateTime(8);
 
-        if (checkDateTimeValidity(copyDate) && checkDateTimeValidity(targetDate)) {
-          model.copyEvents(eventName, getDateTime(copyDate),
-                  targetCalendar, getDateTime(targetDate));
+        if (targetDate != null) {
+          displayCopyResults(session.copyEvents(tokens.get(2), copyDate, tokens.get(6),
+                  targetDate), view);
         }
         else {
           throw new InvalidCommandException("Invalid date formats");
         }
       }
       else if (tokens.size() == 8) {
-        String copyDate = tokens.get(3);
-        String targetCalendar = tokens.get(5);
-        String targetDate = tokens.get(7);
+        LocalDate copyDate = tokens.date(3);
+        LocalDate targetDate = copyDate == null ? null : tokens.date(7);
 
-        if (checkDateValidity(copyDate) && checkDateValidity(targetDate)) {
-          model.copyEvents(getDate(copyDate), targetCalendar,
-                  getDate(targetDate));
+        if (targetDate != null) {
+          displayCopyResults(session.copyEvents(copyDate, tokens.get(5), targetDate), view);
         }
         else {
           throw new InvalidCommandException("Invalid date formats");
         }
       }
       else if (tokens.size() == 10) {
-        String copyDateStart = tokens.get(3);
-        String copyDateEnd = tokens.get(5);
-        String targetCalendar = tokens.get(7);
-        String targetDate = tokens.get(9);
+        LocalDate copyDateStart = tokens.date(3);
+        LocalDate copyDateEnd = copyDateStart == null ? null : tokens.date(5);
+        LocalDate targetDate = copyDateEnd == null ? null : tokens.date(9);
 
-        if (checkDateValidity(copyDateStart) && checkDateValidity(copyDateEnd)
-                && checkDateValidity(targetDate)) {
-          model.copyEvents(getDate(copyDateStart), getDate(copyDateEnd),
-                  targetCalendar, getDate(targetDate));
+        if (targetDate != null) {
+          displayCopyResults(session.copyEvents(copyDateStart, copyDateEnd, tokens.get(7),
+                  targetDate), view);
         }
         else {
           throw new InvalidCommandException("Invalid date formats");
@@ -322,57 +643,47 @@ public class CalendarController {
   }
 
   /**
-   * Checks if given date and time is in valid format.
-   * @param date date and time string.
-   * @return true if valid, false if not valid.
+   * Displays the result of a copy, one line per copied or skipped event.
+   * @param results rows of subject, start, end, location and whether the event was copied.
+   * @param view the view the rows are shown in.
    */
 
-  boolean checkDateTimeValidity(String date) {
-    try {
-      LocalDateTime.parse(date, DATE_TIME_FORMATTER);
-      return true;
+  private void displayCopyResults(List<List> results, UserView view) {
+    if (results.isEmpty()) {
+      view.displayMessage("No events to copy");
+      return;
     }
-    catch (Exception e) {
-      return false;
+    StringBuilder out = new StringBuilder();
+    for (List row : results) {
+      if (out.length() > 0) {
+        out.append('\n');
+      }
+      appendEvent(out, (String) row.get(0), (LocalDateTime) row.get(1),
+              (LocalDateTime) row.get(2), (String) row.get(3));
+      out.append(Boolean.TRUE.equals(row.get(4)) ? " copied" : " skipped (conflict)");
     }
+    view.displayMessage(out.toString());
   }
 
   /**
-   * Checks if date is in valid format.
-   * @param date date string.
-   * @return true if valid, false if not valid.
+   * Parses a date and time written as yyyy-MM-dd'T'HH:mm.
+   * @param date date and time string.
+   * @return the date and time, or null if the string is not in the format.
    */
 
-  private boolean checkDateValidity(String date) {
+  static LocalDateTime parseDateTime(String date) {
+    LocalDateTime dateTime = DateTimeParsers.parseIsoDateTime(date);
+    if (dateTime != null) {
+      return dateTime;
+    }
     try {
-      LocalDate.parse(date, DATE_FORMATTER);
-      return true;
+      return LocalDateTime.parse(date, DATE_TIME_FORMATTER);
     }
-    catch (Exception e) {
-      return false;
+    catch (DateTimeException e) {
+      return null;
     }
   }
 
-  /**
-   * Parses date and time string into LocalDateTime object.
-   * @param date date time string.
-   * @return LocalDateTime object.
-   */
-
-  private LocalDateTime getDateTime(String date) {
-    return LocalDateTime.parse(date, DATE_TIME_FORMATTER);
-  }
-
-  /**
-   * Parses date string into LocalDate object.
-   * @param date date string.
-   * @return LocalDate object
-   */
-
-  private LocalDate getDate(String date) {
-    return LocalDate.parse(date, DATE_FORMATTER);
-  }
-
   /**
    * Checks if the property and value is valid.
    * @param property property name.
@@ -384,7 +695,7 @@ public class CalendarController {
     try {
       Properties prop = Properties.valueOf(property);
       if (prop == Properties.startDateTime || prop == Properties.endDateTime) {
-        return checkDateTimeValidity(newValue);
+        return parseDateTime(newValue) != null;
       }
       else if (Properties.valueOf(property) == Properties.isPublic) {
         return (newValue.equalsIgnoreCase("false") || newValue.equalsIgnoreCase("true"));
@@ -432,20 +743,18 @@ public class CalendarController {
 
   /**
    * Method to create a single event based on user input.
-   * @param tokens the list of commands.
+   * @param tokens the tokens of the command.
+   * @param session the session the command runs in.
    */
 
-  private void singleEventCreationHelper(List tokens) {
+  private void singleEventCreationHelper(CommandTokens tokens, CalendarSession session) {
     try {
       if (tokens.contains("from")) {
-        if (checkDateTimeValidity(tokens.get(4).toString())
-                && checkDateTimeValidity(tokens.get(6).toString())
-                && getDateTime(tokens.get(4).toString())
-                .isBefore(getDateTime(tokens.get(6).toString()))) {
-
-          model.createSingleEvent(new SingleEvent(tokens.get(2).toString(),
-                  getDateTime(tokens.get(4).toString()),
-                  getDateTime(tokens.get(6).toString()),
+        LocalDateTime start = tokens.dateTime(4);
+        LocalDateTime end = start == null ? null : tokens.dateTime(6);
+        if (end != null && start.isBefore(end)) {
+
+          session.createSingleEvent(new SingleEvent(tokens.get(2), start, end,
                   "", "", false));
         }
         else {
@@ -453,11 +762,11 @@ public class CalendarController {
         }
       }
       else if (tokens.contains("on")) {
-        if (checkDateTimeValidity(tokens.get(4).toString())) {
+        LocalDateTime start = tokens.dateTime(4);
+        if (start != null) {
 
-          model.createSingleEvent(new SingleEvent(tokens.get(2).toString(),
-                  getDateTime(tokens.get(4).toString()),
-                  getDateTime(tokens.get(4).toString()).plusDays(1).withHour(0).withMinute(0),
+          session.createSingleEvent(new SingleEvent(tokens.get(2), start,
+                  start.plusDays(1).withHour(0).withMinute(0),
                   "", "", false));
         }
         else {
@@ -478,41 +787,40 @@ public class CalendarController {
 
   /**
    * Method to create a recurring event based on user input.
-   * @param tokens the list of command arguments.
+   * @param tokens the tokens of the command.
+   * @param session the session the command runs in.
    */
 
-  private void recurringEventCreationHelper(List tokens) {
+  private void recurringEventCreationHelper(CommandTokens tokens, CalendarSession session) {
     try {
       if (tokens.contains("times")) {
         if (tokens.contains("to")) {
-          if (checkDateTimeValidity(tokens.get(4).toString())
-                  && checkDateTimeValidity(tokens.get(6).toString())
-                  && getDateTime(tokens.get(4).toString())
-                  .isBefore(getDateTime(tokens.get(6).toString()))
-                  && checkWeekDays(tokens.get(8).toString())
-                  && checkNvalue(tokens.get(10).toString())
-                  && getDateTime(tokens.get(4).toString()).toLocalDate()
-                  .isEqual(getDateTime(tokens.get(6).toString()).toLocalDate())) {
-
-            model.createRecurringEvent(new RecurringEvent(tokens.get(2).toString(),
-                    getDateTime(tokens.get(4).toString()), getDateTime(tokens.get(6).toString()),
-                    "", "", false, tokens.get(8).toString(),
-                    Integer.parseInt(tokens.get(10).toString()),null));
+          LocalDateTime start = tokens.dateTime(4);
+          LocalDateTime end = start == null ? null : tokens.dateTime(6);
+          if (end != null
+                  && start.isBefore(end)
+                  && checkWeekDays(tokens.get(8))
+                  && checkNvalue(tokens.get(10))
+                  && start.toLocalDate().isEqual(end.toLocalDate())) {
+
+            session.createRecurringEvent(new RecurringEvent(tokens.get(2), start, end,
+                    "", "", false, tokens.get(8),
+                    Integer.parseInt(tokens.get(10)),null));
           }
           else {
             throw new InvalidCommandException("Invalid datetime or property");
           }
         }
         else {
-          if (checkDateValidity(tokens.get(4).toString())
-                  && checkWeekDays(tokens.get(6).toString())
-                  && checkNvalue(tokens.get(8).toString())) {
-
-            model.createRecurringEvent(new RecurringEvent(tokens.get(2).toString(),
-                    getDate(tokens.get(4).toString()).atStartOfDay(),
-                    getDate(tokens.get(4).toString()).plusDays(1).atStartOfDay(),
-                    "", "", false, tokens.get(6).toString(),
-                    Integer.parseInt(tokens.get(8).toString()),null));
+          LocalDate date = tokens.date(4);
+          if (date != null
+                  && checkWeekDays(tokens.get(6))
+                  && checkNvalue(tokens.get(8))) {
+
+            session.createRecurringEvent(new RecurringEvent(tokens.get(2),
+                    date.atStartOfDay(), date.plusDays(1).atStartOfDay(),
+                    "", "", false, tokens.get(6),
+                    Integer.parseInt(tokens.get(8)),null));
           }
           else {
             throw new InvalidCommandException("Invalid datetime or property");
@@ -521,38 +829,34 @@ public class CalendarController {
       }
       else if (tokens.contains("until")) {
         if (tokens.contains("to")) {
-          if (checkDateTimeValidity(tokens.get(4).toString())
-                  && checkDateTimeValidity(tokens.get(6).toString())
-                  && getDateTime(tokens.get(4).toString())
-                  .isBefore(getDateTime(tokens.get(6).toString()))
-                  && checkWeekDays(tokens.get(8).toString())
-                  && checkDateTimeValidity(tokens.get(10).toString())
-                  && getDateTime(tokens.get(4).toString()).toLocalDate()
-                  .isEqual(getDateTime(tokens.get(6).toString()).toLocalDate())
-                  && getDateTime(tokens.get(6).toString())
-                  .isBefore(getDateTime(tokens.get(10).toString()))) {
-
-            model.createRecurringEvent(new RecurringEvent(tokens.get(2).toString(),
-                    getDateTime(tokens.get(4).toString()), getDateTime(tokens.get(6).toString()),
-                    "", "", false, tokens.get(8).toString(),
-                    0, getDateTime(tokens.get(10).toString())));
+          LocalDateTime start = tokens.dateTime(4);
+          LocalDateTime end = start == null ? null : tokens.dateTime(6);
+          LocalDateTime until = end != null
+                  && start.isBefore(end)
+                  && checkWeekDays(tokens.get(8)) ? tokens.dateTime(10) : null;
+          if (until != null
+                  && start.toLocalDate().isEqual(end.toLocalDate())
+                  && end.isBefore(until)) {
+
+            session.createRecurringEvent(new RecurringEvent(tokens.get(2), start, end,
+                    "", "", false, tokens.get(8),
+                    0, until));
           }
           else {
             throw new InvalidCommandException("Invalid datetime or property");
           }
         }
         else {
-          if (checkDateValidity(tokens.get(4).toString())
-                  && checkWeekDays(tokens.get(6).toString())
-                  && checkDateValidity(tokens.get(8).toString())
-                  && getDate(tokens.get(4).toString()).plusDays(1)
-                  .isBefore(getDate(tokens.get(8).toString()))) {
-
-            model.createRecurringEvent(new RecurringEvent(tokens.get(2).toString(),
-                    getDate(tokens.get(4).toString()).atStartOfDay(),
-                    getDate(tokens.get(4).toString()).plusDays(1).atStartOfDay(),
-                    "", "", false, tokens.get(6).toString(),
-                    0,getDate(tokens.get(8).toString()).atStartOfDay()));
+          LocalDate date = tokens.date(4);
+          LocalDate until = date != null
+                  && checkWeekDays(tokens.get(6)) ? tokens.date(8) : null;
+          if (until != null
+                  && date.plusDays(1).isBefore(until)) {
+
+            session.createRecurringEvent(new RecurringEvent(tokens.get(2),
+                    date.atStartOfDay(), date.plusDays(1).atStartOfDay(),
+                    "", "", false, tokens.get(6),
+                    0, until.atStartOfDay()));
           }
           else {
             throw new InvalidCommandException("Invalid datetime or property");
@@ -573,69 +877,62 @@ public class CalendarController {
 
   /**
    * Processes the creation of event based on user input.
-   * @param command the create event command.
+   * @param tokens the tokens of the create event command.
+   * @param session the session the command runs in.
    */
 
-  private void processCreate(String command) {
-    List tokens = extractDataFromCommand(command);
+  private void processCreate(CommandTokens tokens, CalendarSession session) {
     tokens.remove("--autoDecline");
 
     boolean recurring = tokens.contains("repeats");
 
     if (!recurring) {
-      singleEventCreationHelper(tokens);
+      singleEventCreationHelper(tokens, session);
     }
     else {
-      recurringEventCreationHelper(tokens);
+      recurringEventCreationHelper(tokens, session);
     }
   }
 
   /**
    * Processes the command to modify an event.
-   * @param command edit event command.
+   * @param tokens the tokens of the edit event command.
+   * @param session the session the command runs in.
    */
 
-  private void processEdit(String command) {
-    List tokens = extractDataFromCommand(command);
-
+  private void processEdit(CommandTokens tokens, CalendarSession session) {
     try {
       if (tokens.size() == 10) {
-        String property = tokens.get(2).toString();
-        String eventName = tokens.get(3).toString();
-        String startDateTime = tokens.get(5).toString();
-        String endDateTime = tokens.get(7).toString();
-        String newValue = tokens.get(9).toString();
-
-        if (checkDateTimeValidity(startDateTime)
-                && checkDateTimeValidity(endDateTime)
-                && checkValidPropertyValues(property, newValue)) {
-          model.editEvents(property, eventName,
-                  getDateTime(startDateTime), getDateTime(endDateTime), newValue);
+        String property = tokens.get(2);
+        String newValue = tokens.get(9);
+        LocalDateTime startDateTime = tokens.dateTime(5);
+        LocalDateTime endDateTime = startDateTime == null ? null : tokens.dateTime(7);
+
+        if (endDateTime != null && checkValidPropertyValues(property, newValue)) {
+          session.editEvents(property, tokens.get(3), startDateTime, endDateTime, newValue);
         }
         else {
           throw new InvalidCommandException("Invalid datetime or property");
         }
       }
       else if (tokens.size() == 8) {
-        String property = tokens.get(2).toString();
-        String eventName = tokens.get(3).toString();
-        String dateTime = tokens.get(5).toString();
-        String newValue = tokens.get(7).toString();
+        String property = tokens.get(2);
+        String newValue = tokens.get(7);
+        LocalDateTime dateTime = tokens.dateTime(5);
 
-        if (checkDateTimeValidity(dateTime) && checkValidPropertyValues(property, newValue)) {
-          model.editEvents(property, eventName, getDateTime(dateTime), newValue);
+        if (dateTime != null && checkValidPropertyValues(property, newValue)) {
+          session.editEvents(property, tokens.get(3), dateTime, newValue);
         }
         else {
           throw new InvalidCommandException("Invalid datetime or property");
         }
       }
       else if (tokens.size() == 5) {
-        String property = tokens.get(2).toString();
-        String eventName = tokens.get(3).toString();
-        String newValue = tokens.get(4).toString();
+        String property = tokens.get(2);
+        String newValue = tokens.get(4);
 
         if (checkValidPropertyValues(property, newValue)) {
-          model.editEvents(property, eventName, newValue);
+          session.editEvents(property, tokens.get(3), newValue);
         }
         else {
           throw new InvalidCommandException("Invalid datetime or property");
@@ -661,51 +958,71 @@ public class CalendarController {
 
   public List returnResult(List<List> result) {
     List<String> printResult = new ArrayList<>();
+    StringBuilder line = new StringBuilder();
     for (List event : result) {
-      String eventName = (String) event.get(0);
-      LocalDateTime startDateTime = (LocalDateTime) event.get(1);
-      LocalDateTime endDateTime = (LocalDateTime) event.get(2);
-      String location = (String) event.get(3);
-
-      String startFormatted = startDateTime.format(DATE_TIME_FORMATTER);
-      String endFormatted = endDateTime.format(DATE_TIME_FORMATTER);
+      line.setLength(0);
+      appendEvent(line, (String) event.get(0), (LocalDateTime) event.get(1),
+              (LocalDateTime) event.get(2), (String) event.get(3));
+      printResult.add(line.toString());
+    }
+    return printResult;
+  }
 
-      String locationStr = (location != null && !location.trim()
-              .isEmpty()) ? " at " + location : "";
+  /**
+   * Appends one event in the printed format to a buffer.
+   * @param out the buffer.
+   * @param eventName subject of the event.
+   * @param startDateTime start of the event.
+   * @param endDateTime end of the event.
+   * @param location location of the event, may be empty.
+   */
 
-      printResult.add("• " + eventName + " (" + startFormatted + " - "
-              + endFormatted + ")"
-              + locationStr);
+  private static void appendEvent(StringBuilder out, String eventName,
+                                  LocalDateTime startDateTime, LocalDateTime endDateTime,
+                                  String location) {
+    out.append("• ").append(eventName).append(" (");
+    DATE_TIME_FORMATTER.formatTo(startDateTime, out);
+    out.append(" - ");
+    DATE_TIME_FORMATTER.formatTo(endDateTime, out);
+    out.append(')');
+    if (location != null && !location.trim().isEmpty()) {
+      out.append(" at ").append(location);
     }
-    return printResult;
   }
 
   /**
    * Processes command to print events on a specific date range.
-   * @param command print events command.
+   * @param tokens the tokens of the print events command.
+   * @param session the session the command runs in.
+   * @param view the view the events are shown in.
    * @throws InvalidCommandException if command is invalid.
    */
 
-  private void processPrint(String command) throws InvalidCommandException {
-    List tokens = extractDataFromCommand(command);
-    List<List> result;
+  private void processPrint(CommandTokens tokens, CalendarSession session, UserView view)
+          throws InvalidCommandException {
+    StringBuilder printed = new StringBuilder();
+    EventVisitor printer = (subject, start, end, description, location, isPublic) -> {
+      if (printed.length() > 0) {
+        printed.append('\n');
+      }
+      appendEvent(printed, subject, start, end, location);
+    };
 
     try {
       if (tokens.contains("on")) {
-        if (checkDateValidity(tokens.get(3).toString())) {
-          result = model.getEventsOn(getDate(tokens.get(3).toString()));
+        LocalDate date = tokens.date(3);
+        if (date != null) {
+          session.forEachEventOn(date, printer);
         }
         else {
           throw new InvalidCommandException("Invalid datetime or property");
         }
       }
       else if (tokens.contains("from")) {
-        if (checkDateTimeValidity(tokens.get(3).toString())
-                && checkDateTimeValidity(tokens.get(5).toString())
-                && getDateTime(tokens.get(3).toString())
-                .isBefore(getDateTime(tokens.get(5).toString()))) {
-          result = model.getEventsBetween(getDateTime(tokens.get(3).toString()),
-                  getDateTime(tokens.get(5).toString()));
+        LocalDateTime start = tokens.dateTime(3);
+        LocalDateTime end = start == null ? null : tokens.dateTime(5);
+        if (end != null && start.isBefore(end)) {
+          session.forEachEventBetween(start, end, printer);
         }
         else {
           throw new InvalidCommandException("Invalid datetime or property");
@@ -715,9 +1032,8 @@ public class CalendarController {
         throw new InvalidCommandException("Invalid command");
       }
 
-      if (result.size() >= 1) {
-        String resultString = String.join("\n", returnResult(result));
-        view.displayMessage(resultString);
+      if (printed.length() > 0) {
+        view.displayMessage(printed.toString());
       }
       else {
         view.displayMessage("No events found");
@@ -733,17 +1049,19 @@ public class CalendarController {
 
   /**
    * Processes command to check if user is busy at a specific date and time.
-   * @param command the show status command.
+   * @param tokens the tokens of the show status command.
+   * @param session the session the command runs in.
+   * @param view the view the status is shown in.
    */
 
-  private void processShow(String command) {
-    List tokens = extractDataFromCommand(command);
+  private void processShow(CommandTokens tokens, CalendarSession session, UserView view) {
     boolean isBusy = false;
 
     try {
       if (tokens.contains("on")) {
-        if (checkDateTimeValidity(tokens.get(3).toString())) {
-          isBusy = model.isBusy(getDateTime(tokens.get(3).toString()));
+        LocalDateTime dateTime = tokens.dateTime(3);
+        if (dateTime != null) {
+          isBusy = session.isBusy(dateTime);
         }
       }
       else {
@@ -761,20 +1079,78 @@ public class CalendarController {
   }
 
   /**
-   * Processes the export command to save the calendar as a CSV file.
-   * @param command export calendar command.
+   * Processes command to find when several calendars are all free, as
+   * find free --calendars &lt;name,...&gt; from &lt;dateTime&gt; to &lt;dateTime&gt;
+   * --duration &lt;minutes&gt; [--limit &lt;n&gt;]. Times are in the active calendar's
+   * timezone.
+   * @param tokens the tokens of the find free command.
+   * @param session the session the command runs in.
+   * @param view the view the free times are shown in.
    */
 
-  private void processExport(String command) {
-    List tokens = extractDataFromCommand(command);
-    List<List> result;
+  private void processFindFree(CommandTokens tokens, CalendarSession session,
+                               UserView view) {
+    if ((tokens.size() != 10 && tokens.size() != 12)
+            || !tokens.isIgnoreCase(2, "--calendars") || !tokens.isIgnoreCase(4, "from")
+            || !tokens.isIgnoreCase(6, "to") || !tokens.isIgnoreCase(8, "--duration")
+            || (tokens.size() == 12 && !tokens.isIgnoreCase(10, "--limit"))) {
+      throw new InvalidCommandException("Invalid command. Use: find free --calendars "
+              + "<name,...> from <dateTime> to <dateTime> --duration <minutes> [--limit <n>]");
+    }
+    LocalDateTime from = tokens.dateTime(5);
+    LocalDateTime to = from == null ? null : tokens.dateTime(7);
+    if (to == null || !from.isBefore(to)) {
+      throw new InvalidCommandException("Invalid datetime or property");
+    }
+    int minutes;
+    int limit;
+    try {
+      minutes = Integer.parseInt(tokens.get(9));
+      limit = tokens.size() == 12 ? Integer.parseInt(tokens.get(11)) : DEFAULT_FREE_SLOTS;
+    }
+    catch (NumberFormatException e) {
+      throw new InvalidCommandException("Invalid duration or limit");
+    }
+    if (minutes <= 0 || limit <= 0) {
+      throw new InvalidCommandException("Invalid duration or limit");
+    }
+    List<String> calendarNames = new ArrayList<>();
+    for (String calendarName : tokens.get(3).split(",")) {
+      if (!calendarName.trim().isEmpty()) {
+        calendarNames.add(calendarName.trim());
+      }
+    }
+    if (calendarNames.isEmpty()) {
+      throw new InvalidCommandException("Invalid command");
+    }
+
+    StringBuilder found = new StringBuilder();
+    for (List slot : session.findFreeSlots(calendarNames, from, to,
+            Duration.ofMinutes(minutes), limit)) {
+      if (found.length() > 0) {
+        found.append('\n');
+      }
+      found.append("• ");
+      DATE_TIME_FORMATTER.formatTo((LocalDateTime) slot.get(0), found);
+      found.append(" - ");
+      DATE_TIME_FORMATTER.formatTo((LocalDateTime) slot.get(1), found);
+    }
+    view.displayMessage(found.length() > 0 ? found.toString() : "No free time found");
+  }
+
+  /**
+   * Processes the export command to save the calendar as a CSV file.
+   * @param tokens the tokens of the export calendar command.
+   * @param session the session the command runs in.
+   */
 
+  private void processExport(CommandTokens tokens, CalendarSession session) {
     try {
-      if (tokens.get(2).toString().toLowerCase().endsWith(".csv")
-              && tokens.get(2).toString().length() > 4) {
-        result = model.exportCalendar();
+      String fileName = tokens.get(2);
+      if (fileName.toLowerCase().endsWith(".csv")
+              && fileName.length() > 4) {
         CSVExporter exporter = new CSVExporter();
-        exporter.exportCSV(result, tokens.get(2).toString());
+        exporter.exportCSV(session::forEachEvent, fileName);
         // String filePath = exporter.exportCSV(result, tokens.get(2).toString());
         // view.displayMessage("File available at: " + filePath);
       }
@@ -791,51 +1167,115 @@ public class CalendarController {
   }
 
   /**
-   * Processes the import events from a CSV file to the calendar system.
-   * @param command The command used.
+   * Extracts the file path of a save or load command.
+   * @param tokens The tokens of the command used.
+   * @param verb The verb of the command, save or load.
+   * @return The file path.
    */
 
-  private void processImport(String command) {
-    List<String> tokens = extractDataFromCommand(command);
+  private String snapshotPath(CommandTokens tokens, String verb) {
+    if (tokens.size() != 3 || tokens.get(2).isEmpty()) {
+      throw new InvalidCommandException("Invalid command. Use: " + verb + " cal <filePath>");
+    }
+    return tokens.get(2);
+  }
+
+  /**
+   * Processes the import events from a CSV file to the calendar system.
+   * @param tokens The tokens of the command used.
+   * @param session the session the command runs in.
+   * @param view the view conflicts are reported in.
+   */
 
+  private void processImport(CommandTokens tokens, CalendarSession session, UserView view) {
     if (tokens.size() != 3) {
       throw new InvalidCommandException("Invalid command. Use: import cal <absoluteFilePath>");
     }
 
     String filePath = tokens.get(2);
     CSVImporter importer = new CSVImporter();
-    List<List> importedEvents = importer.importEvents(filePath);
+    List<SingleEvent> batch = new ArrayList<>();
+
+    if (isLargeFile(filePath)) {
+      importer.importEventsInParallel(filePath, importedEvents -> {
+        for (List eventDetails : importedEvents) {
+          batch.add(toSingleEvent(eventDetails));
+          if (batch.size() == IMPORT_BATCH_SIZE) {
+            createImportedEvents(batch, session, view);
+          }
+        }
+      });
+    }
+    else {
+      try (CSVImporter.EventIterator importedEvents = importer.readEvents(filePath)) {
+        while (importedEvents.hasNext()) {
+          batch.add(toSingleEvent(importedEvents.next()));
+          if (batch.size() == IMPORT_BATCH_SIZE) {
+            createImportedEvents(batch, session, view);
+          }
+        }
+      }
+    }
+    createImportedEvents(batch, session, view);
+  }
+
+  /**
+   * Checks if a file is large enough to be imported on several threads.
+   * @param filePath The path to the file.
+   * @return True if the file is large, false if it is small or cannot be read.
+   */
+
+  private boolean isLargeFile(String filePath) {
+    try {
+      return Files.size(Paths.get(filePath)) >= PARALLEL_IMPORT_THRESHOLD;
+    }
+    catch (IOException | InvalidPathException e) {
+      return false;
+    }
+  }
 
-    for (List eventDetails : importedEvents) {
-      String subject = (String) eventDetails.get(0);
-      LocalDate startDate = (LocalDate) eventDetails.get(1);
-      LocalTime startTime = (LocalTime) eventDetails.get(2);
-      LocalDateTime startDateTime = LocalDateTime.of(startDate, startTime);
-      LocalDateTime endDateTime;
+  /**
+   * Creates a batch of imported events, reports the ones that conflict and empties the batch.
+   * @param batch The imported events.
+   * @param session the session the command runs in.
+   * @param view the view conflicts are reported in.
+   */
 
-      LocalDate endDate = (LocalDate) eventDetails.get(3);
-      LocalTime endTime = (LocalTime) eventDetails.get(4);
-      endDateTime = LocalDateTime.of(endDate, endTime);
+  private void createImportedEvents(List<SingleEvent> batch, CalendarSession session,
+                                    UserView view) {
+    for (CalendarEvent rejected : session.createSingleEvents(batch)) {
+      view.displayMessage("Conflict for event occurred for " + rejected.getSubject());
+    }
+    batch.clear();
+  }
 
-      String description = eventDetails.get(5) != null ? eventDetails.get(5).toString() : "";
-      String location = eventDetails.get(6) != null ? eventDetails.get(6).toString() : "";
-      boolean isPrivate = false;
-      if (eventDetails.get(7) != null && !eventDetails.get(7).toString().isEmpty()) {
-        isPrivate = Boolean.parseBoolean(eventDetails.get(7).toString());
-      }
-      boolean isPublic = !isPrivate;
+  /**
+   * Converts the details of an imported event into a single event.
+   * @param eventDetails The event details read by the importer.
+   * @return The single event.
+   */
 
-      try {
-        model.createSingleEvent(new model.SingleEvent(subject, startDateTime,
-                endDateTime, description, location, isPublic));
-      }
-      catch (EventConflictException e) {
-        System.out.println("Conflict for event occurred for " + subject);
-      }
-      catch (InvalidCommandException e) {
-        System.out.println("Invalid event data for " + subject);
-      }
+  private SingleEvent toSingleEvent(List eventDetails) {
+    String subject = (String) eventDetails.get(0);
+    LocalDate startDate = (LocalDate) eventDetails.get(1);
+    LocalTime startTime = (LocalTime) eventDetails.get(2);
+    LocalDateTime startDateTime = LocalDateTime.of(startDate, startTime);
+    LocalDateTime endDateTime;
+
+    LocalDate endDate = (LocalDate) eventDetails.get(3);
+    LocalTime endTime = (LocalTime) eventDetails.get(4);
+    endDateTime = LocalDateTime.of(endDate, endTime);
+
+    String description = eventDetails.get(5) != null ? eventDetails.get(5).toString() : "";
+    String location = eventDetails.get(6) != null ? eventDetails.get(6).toString() : "";
+    boolean isPrivate = false;
+    if (eventDetails.get(7) != null && !eventDetails.get(7).toString().isEmpty()) {
+      isPrivate = Boolean.parseBoolean(eventDetails.get(7).toString());
     }
+    boolean isPublic = !isPrivate;
+
+    return new SingleEvent(subject, startDateTime, endDateTime, description, location,
+            isPublic);
   }
 
   /**
@@ -0,0 +1,255 @@
+package controller;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import exception.InvalidCommandException;
+import model.CalendarSession;
+import view.StreamView;
+
+/**
+ * Serves the command language over TCP, so many clients can share the calendars of one
+ * controller. Each connection is a session of its own, with its own active calendar, and
+ * runs on its own thread: a virtual thread where the runtime has them, a pooled platform
+ * thread otherwise. A client sends one command per line and may send many before reading
+ * the answers; the commands of a connection run in the order sent, and the answer to each,
+ * the lines the command displays, ends with an empty line. Answers are written out when
+ * no further command is waiting, so the answers to pipelined commands share writes. The
+ * exit command closes the connection. Clients are not authenticated, so the server listens
+ * on the loopback address unless given another, and the commands that read or write files
+ * on the server, save, load, export and import, are refused to clients on other hosts.
+ */
+
+public class CalendarServer implements Closeable {
+
+  /**
+   * Number of connections that may wait to be accepted.
+   */
+
+  static final int BACKLOG = 1024;
+
+  /**
+   * Pause in milliseconds after the first failed accept of a run of failures.
+   */
+
+  static final long MIN_ACCEPT_BACKOFF_MILLIS = 10;
+
+  /**
+   * Longest pause in milliseconds between failed accepts.
+   */
+
+  static final long MAX_ACCEPT_BACKOFF_MILLIS = 1000;
+
+  private final CalendarController controller;
+  private final ServerSocket serverSocket;
+  private final ExecutorService connections;
+  private final Thread acceptor;
+  private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+
+  /**
+   * Constructs a server for a controller and binds it to a port of the loopback address,
+   * so only clients on the same host can connect.
+   * @param controller the controller whose calendars the clients share.
+   * @param port the port, or 0 for any free port.
+   * @throws IOException if the port cannot be bound.
+   */
+
+  public CalendarServer(CalendarController controller, int port) throws IOException {
+    this(controller, port, InetAddress.getLoopbackAddress());
+  }
+
+  /**
+   * Constructs a server for a controller and binds it to a port of an address.
+   * @param controller the controller whose calendars the clients share.
+   * @param port the port, or 0 for any free port.
+   * @param address the local address to listen on, or null for every address.
+   * @throws IOException if the port cannot be bound.
+   */
+
+  public CalendarServer(CalendarController controller, int port, InetAddress address)
+          throws IOException {
+    this.controller = controller;
+    this.serverSocket = new ServerSocket(port, BACKLOG, address);
+    this.connections = newConnectionExecutor();
+    this.acceptor = new Thread(this::acceptLoop, "calendar-server");
+  }
+
+  /**
+   * Returns the port the server listens on.
+   * @return the port.
+   */
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * Starts accepting connections, on a thread of its own.
+   */
+
+  public void start() {
+    acceptor.start();
+  }
+
+  /**
+   * Stops accepting connections and closes the open ones.
+   * @throws IOException if the server socket cannot be closed.
+   */
+
+  @Override
+  public void close() throws IOException {
+    try {
+      serverSocket.close();
+    }
+    finally {
+      acceptor.interrupt();
+      connections.shutdownNow();
+      for (Socket socket : open) {
+        closeQuietly(socket);
+      }
+    }
+  }
+
+  /**
+   * Creates the executor connections run on: a thread per connection, virtual if the
+   * runtime supports virtual threads and a cached pool of platform threads otherwise.
+   * @return the executor.
+   */
+
+  static ExecutorService newConnectionExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) factory.invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      AtomicInteger count = new AtomicInteger();
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "calendar-connection-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Accepts connections and hands each to the executor, until the server is closed. A
+   * failed accept, such as when the process is out of file descriptors, is logged and
+   * retried after a pause that doubles with each failure in a row, up to
+   * {@link #MAX_ACCEPT_BACKOFF_MILLIS}.
+   */
+
+  private void acceptLoop() {
+    long backoff = 0;
+    while (!serverSocket.isClosed()) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+        backoff = 0;
+      }
+      catch (IOException e) {
+        if (serverSocket.isClosed()) {
+          return;
+        }
+        backoff = backoff == 0 ? MIN_ACCEPT_BACKOFF_MILLIS
+                : Math.min(backoff * 2, MAX_ACCEPT_BACKOFF_MILLIS);
+        System.err.println("Cannot accept connection, retrying in " + backoff + " ms: "
+                + e.getMessage());
+        try {
+          Thread.sleep(backoff);
+        }
+        catch (InterruptedException interrupted) {
+          return;
+        }
+        continue;
+      }
+      try {
+        connections.execute(() -> serve(socket));
+      }
+      catch (RejectedExecutionException e) {
+        closeQuietly(socket);
+      }
+    }
+  }
+
+  /**
+   * Runs the commands of a connection in a session of its own until the client sends exit
+   * or closes the connection.
+   * @param socket the connection.
+   */
+
+  private void serve(Socket socket) {
+    open.add(socket);
+    try (socket) {
+      if (serverSocket.isClosed()) {
+        return;
+      }
+      socket.setTcpNoDelay(true);
+      StreamView view = new StreamView(socket.getInputStream(), socket.getOutputStream());
+      CalendarSession session = controller.openSession();
+      boolean remote = !socket.getInetAddress().isLoopbackAddress();
+      String command;
+      while ((command = view.getInput()) != null) {
+        if (command.trim().equalsIgnoreCase("exit")) {
+          view.displayMessage("Connection closed.");
+          view.displayMessage("");
+          break;
+        }
+        try {
+          CommandVerb verb = CommandVerb.classify(command);
+          if (remote && readsOrWritesFiles(verb)) {
+            throw new InvalidCommandException("File commands are only available to local "
+                    + "clients");
+          }
+          controller.processParsed(command, verb,
+                  verb == null ? null : new CommandTokens(command), session, view);
+        }
+        catch (Exception e) {
+          view.displayMessage(e.getMessage());
+        }
+        view.displayMessage("");
+      }
+      view.flush();
+    }
+    catch (IOException | RuntimeException e) {
+      // the client went away; its session goes with it
+    }
+    finally {
+      open.remove(socket);
+    }
+  }
+
+  /**
+   * Tells whether a command reads or writes a file on the server.
+   * @param verb the kind of the command, or null if it is of no known kind.
+   * @return true for save, load, export and import.
+   */
+
+  static boolean readsOrWritesFiles(CommandVerb verb) {
+    return verb == CommandVerb.SAVE_CALENDAR || verb == CommandVerb.LOAD_CALENDAR
+            || verb == CommandVerb.EXPORT_CALENDAR || verb == CommandVerb.IMPORT_CALENDAR;
+  }
+
+  /**
+   * Closes a connection, ignoring errors.
+   * @param socket the connection.
+   */
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    }
+    catch (IOException e) {
+      // nothing left to release
+    }
+  }
+}
@@ -0,0 +1,212 @@
+package controller;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import utilities.DateTimeParsers;
+
+/**
+ * The tokens of a command, kept as positions in the command rather than as strings.
+ * Tokens are separated by single spaces outside quotes; a quote, single or double, opens
+ * or closes a quoted part and is not part of the token. A token is only copied out of the
+ * command when it is asked for as a string, and dates are parsed in place.
+ */
+
+final class CommandTokens {
+
+  private final String command;
+  private int[] starts;
+  private int[] ends;
+  private boolean[] quoted;
+  private int size;
+
+  /**
+   * Splits a command into tokens.
+   * @param command the command.
+   */
+
+  CommandTokens(String command) {
+    this.command = command;
+    this.starts = new int[12];
+    this.ends = new int[12];
+    this.quoted = new boolean[12];
+
+    boolean insideQuotes = false;
+    boolean hasQuote = false;
+    int start = 0;
+    for (int i = 0; i < command.length(); i++) {
+      char c = command.charAt(i);
+      if (c == ' ' && !insideQuotes) {
+        add(start, i, hasQuote);
+        start = i + 1;
+        hasQuote = false;
+      }
+      else if (c == '"' || c == '\'') {
+        insideQuotes = !insideQuotes;
+        hasQuote = true;
+      }
+    }
+    add(start, command.length(), hasQuote);
+  }
+
+  /**
+   * Returns the number of tokens.
+   * @return the number of tokens.
+   */
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns a token as a string.
+   * @param index the position of the token.
+   * @return the token, without its quotes.
+   * @throws IndexOutOfBoundsException if there is no such token.
+   */
+
+  String get(int index) {
+    checkIndex(index);
+    if (!quoted[index]) {
+      return command.substring(starts[index], ends[index]);
+    }
+    StringBuilder unquoted = new StringBuilder(ends[index] - starts[index]);
+    for (int i = starts[index]; i < ends[index]; i++) {
+      char c = command.charAt(i);
+      if (c != '"' && c != '\'') {
+        unquoted.append(c);
+      }
+    }
+    return unquoted.toString();
+  }
+
+  /**
+   * Checks if a token is a given word, ignoring case.
+   * @param index the position of the token.
+   * @param word the word.
+   * @return true if the token is the word.
+   * @throws IndexOutOfBoundsException if there is no such token.
+   */
+
+  boolean isIgnoreCase(int index, String word) {
+    checkIndex(index);
+    if (quoted[index]) {
+      return get(index).equalsIgnoreCase(word);
+    }
+    return ends[index] - starts[index] == word.length()
+            && command.regionMatches(true, starts[index], word, 0, word.length());
+  }
+
+  /**
+   * Checks if any token is a given word.
+   * @param word the word.
+   * @return true if a token is the word.
+   */
+
+  boolean contains(String word) {
+    return indexOf(word) >= 0;
+  }
+
+  /**
+   * Removes the first token that is a given word, if there is one.
+   * @param word the word.
+   */
+
+  void remove(String word) {
+    int index = indexOf(word);
+    if (index < 0) {
+      return;
+    }
+    int moved = size - index - 1;
+    System.arraycopy(starts, index + 1, starts, index, moved);
+    System.arraycopy(ends, index + 1, ends, index, moved);
+    System.arraycopy(quoted, index + 1, quoted, index, moved);
+    size--;
+  }
+
+  /**
+   * Parses a token as a date and time written as yyyy-MM-dd'T'HH:mm.
+   * @param index the position of the token.
+   * @return the date and time, or null if the token is not one.
+   * @throws IndexOutOfBoundsException if there is no such token.
+   */
+
+  LocalDateTime dateTime(int index) {
+    checkIndex(index);
+    if (!quoted[index]) {
+      LocalDateTime parsed = DateTimeParsers.parseIsoDateTime(command, starts[index],
+              ends[index]);
+      if (parsed != null) {
+        return parsed;
+      }
+    }
+    return CalendarController.parseDateTime(get(index));
+  }
+
+  /**
+   * Parses a token as a date written as yyyy-MM-dd.
+   * @param index the position of the token.
+   * @return the date, or null if the token is not one.
+   * @throws IndexOutOfBoundsException if there is no such token.
+   */
+
+  LocalDate date(int index) {
+    checkIndex(index);
+    if (!quoted[index]) {
+      LocalDate parsed = DateTimeParsers.parseIsoDate(command, starts[index], ends[index]);
+      if (parsed != null) {
+        return parsed;
+      }
+    }
+    try {
+      return LocalDate.parse(get(index), CalendarController.DATE_FORMATTER);
+    }
+    catch (DateTimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Finds the first token that is a given word.
+   * @return its position, or -1 if no token is the word.
+   */
+
+  private int indexOf(String word) {
+    for (int i = 0; i < size; i++) {
+      if (quoted[i] ? get(i).equals(word)
+              : ends[i] - starts[i] == word.length()
+              && command.startsWith(word, starts[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Appends the positions of a token.
+   */
+
+  private void add(int start, int end, boolean hasQuote) {
+    if (size == starts.length) {
+      starts = Arrays.copyOf(starts, size * 2);
+      ends = Arrays.copyOf(ends, size * 2);
+      quoted = Arrays.copyOf(quoted, size * 2);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    quoted[size] = hasQuote;
+    size++;
+  }
+
+  /**
+   * Fails if there is no token at a position.
+   */
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+}
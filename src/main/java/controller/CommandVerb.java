@@ -0,0 +1,88 @@
+package controller;
+
+/**
+ * The kinds of commands, each recognised by the words a command starts with. A command is
+ * classified in one pass over its first characters, through a trie of the prefixes.
+ */
+
+enum CommandVerb {
+  CREATE_CALENDAR("create calendar", false, true),
+  EDIT_CALENDAR("edit calendar", false, true),
+  USE_CALENDAR("use calendar", false, true),
+  CREATE_EVENT("create event", false, true),
+  EDIT_EVENT("edit event", false, true),
+  PRINT_EVENTS("print events", false, false),
+  SHOW_STATUS("show status", false, false),
+  EXPORT_CALENDAR("export cal", false, false),
+  COPY_EVENT("copy event", false, true),
+  IMPORT_CALENDAR("import cal", true, true),
+  SAVE_CALENDAR("save cal", false, false),
+  LOAD_CALENDAR("load cal", false, true),
+  FIND_FREE("find free", false, false);
+
+  private static final Node ROOT = new Node();
+
+  static {
+    for (CommandVerb verb : values()) {
+      Node node = ROOT;
+      for (int i = 0; i < verb.prefix.length(); i++) {
+        char c = verb.prefix.charAt(i);
+        if (node.next[c] == null) {
+          node.next[c] = new Node();
+        }
+        node = node.next[c];
+      }
+      node.verb = verb;
+    }
+  }
+
+  private final String prefix;
+  private final boolean matchCase;
+  final boolean journaled;
+
+  /**
+   * A position in the trie: the node for each ASCII character that may follow, and the
+   * verb whose prefix ends here, if any.
+   */
+
+  private static final class Node {
+    final Node[] next = new Node[128];
+    CommandVerb verb;
+  }
+
+  /**
+   * Constructs a verb.
+   * @param prefix the words, in lower case, a command of this kind starts with.
+   * @param matchCase true if the command must use the case of the prefix.
+   * @param journaled true if the command changes the calendars, so is journaled or leads
+   *                  to a checkpoint.
+   */
+
+  CommandVerb(String prefix, boolean matchCase, boolean journaled) {
+    this.prefix = prefix;
+    this.matchCase = matchCase;
+    this.journaled = journaled;
+  }
+
+  /**
+   * Finds the kind of a command from the words it starts with, ignoring case.
+   * @param command the command.
+   * @return the kind, or null if the command starts with no known words.
+   */
+
+  static CommandVerb classify(String command) {
+    Node node = ROOT;
+    for (int i = 0; i < command.length() && node.verb == null; i++) {
+      char c = Character.toLowerCase(command.charAt(i));
+      node = c < 128 ? node.next[c] : null;
+      if (node == null) {
+        return null;
+      }
+    }
+    CommandVerb verb = node.verb;
+    if (verb != null && verb.matchCase && !command.startsWith(verb.prefix)) {
+      return null;
+    }
+    return verb;
+  }
+}
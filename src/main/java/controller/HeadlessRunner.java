@@ -0,0 +1,213 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import model.CalendarSession;
+import view.UserView;
+
+/**
+ * Runs the commands of a file through a controller, as headless mode does. The file is
+ * streamed rather than read whole: a reader thread reads the lines ahead, and classifies
+ * and splits each into tokens, while the calling thread applies them in order. At most
+ * {@link #QUEUE_CAPACITY} lines wait between the two, so memory does not grow with the
+ * file. Messages go to the controller's view, which is flushed when the run ends.
+ */
+
+public class HeadlessRunner {
+
+  /**
+   * Number of parsed lines the reader may be ahead of the commands applied.
+   */
+
+  static final int QUEUE_CAPACITY = 4096;
+
+  /**
+   * Most bytes of a last line that may be read looking for exit.
+   */
+
+  private static final int TAIL_LIMIT = 1 << 16;
+
+  private final CalendarController controller;
+
+  /**
+   * A line read from the file: a command with its kind and tokens, the exit command, the
+   * end of the file, or the error that stopped the reader.
+   */
+
+  private static final class ParsedLine {
+    final String command;
+    final CommandVerb verb;
+    final CommandTokens tokens;
+    final boolean exit;
+    final IOException error;
+
+    ParsedLine(String command, CommandVerb verb, CommandTokens tokens, boolean exit,
+               IOException error) {
+      this.command = command;
+      this.verb = verb;
+      this.tokens = tokens;
+      this.exit = exit;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Constructs a runner for a controller.
+   * @param controller the controller the commands run through.
+   */
+
+  public HeadlessRunner(CalendarController controller) {
+    this.controller = controller;
+  }
+
+  /**
+   * Runs the commands of a file in order, until its exit command ends the application.
+   * The file must have at least two lines and end with exit, which is checked before any
+   * command runs. The first command that fails ends the application after its error is
+   * shown. Returns only if the file cannot be run.
+   * @param filePath the path of the command file.
+   */
+
+  public void run(String filePath) {
+    UserView output = controller.view;
+    try {
+      Path path;
+      try {
+        path = Paths.get(filePath);
+        if (!endsWithExit(path)) {
+          output.displayMessage("File does not contain exit command or less than 2 commands");
+          return;
+        }
+      }
+      catch (IOException | InvalidPathException e) {
+        output.displayMessage("Invalid Path: " + e.getMessage());
+        output.displayMessage("File does not contain exit command or less than 2 commands");
+        return;
+      }
+
+      BlockingQueue<ParsedLine> lines = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+      Thread reader = new Thread(() -> readLines(path, lines), "command-reader");
+      reader.setDaemon(true);
+      reader.start();
+      apply(lines, output);
+    }
+    finally {
+      output.flush();
+    }
+  }
+
+  /**
+   * Applies the lines the reader hands over, in the default session, until the exit
+   * command ends the application or the reader stops.
+   * @param lines the queue the lines are handed over through.
+   * @param output the view errors are shown in.
+   */
+
+  private void apply(BlockingQueue<ParsedLine> lines, UserView output) {
+    CalendarSession session = controller.model.defaultSession();
+    try {
+      while (true) {
+        ParsedLine line = lines.take();
+        if (line.exit) {
+          controller.processCommand(line.command, session);
+        }
+        if (line.error != null) {
+          output.displayMessage("Error reading command file: " + line.error.getMessage());
+          controller.processCommand("exit", session);
+        }
+        if (line.command == null) {
+          return;
+        }
+        try {
+          controller.processParsed(line.command, line.verb, line.tokens, session, output);
+        }
+        catch (Exception e) {
+          output.displayMessage(e.getMessage());
+          controller.processCommand("exit", session);
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reads the lines of the file, classifying and splitting each, and hands them over in
+   * order. Stops after the first exit command, at the end of the file or at an error.
+   * @param path the command file.
+   * @param lines the queue the lines are handed over through.
+   */
+
+  private static void readLines(Path path, BlockingQueue<ParsedLine> lines) {
+    try {
+      try (BufferedReader reader = Files.newBufferedReader(path)) {
+        String command;
+        while ((command = reader.readLine()) != null) {
+          if (command.trim().equalsIgnoreCase("exit")) {
+            lines.put(new ParsedLine(command, null, null, true, null));
+            return;
+          }
+          CommandVerb verb = CommandVerb.classify(command);
+          lines.put(new ParsedLine(command, verb,
+                  verb == null ? null : new CommandTokens(command), false, null));
+        }
+      }
+      catch (IOException e) {
+        lines.put(new ParsedLine(null, null, null, false, e));
+        return;
+      }
+      lines.put(new ParsedLine(null, null, null, false, null));
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Checks, reading back from its end, that a file has at least two lines and that the
+   * last one is exit. Lines end at a line feed, a carriage return or both, as for
+   * {@link BufferedReader#readLine()}, and one line end after the last line is allowed.
+   * @param path the file.
+   * @return true if the file ends with an exit line after at least one other line.
+   * @throws IOException if the file cannot be read.
+   */
+
+  static boolean endsWithExit(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      int length = (int) Math.min(size, TAIL_LIMIT);
+      ByteBuffer tail = ByteBuffer.allocate(length);
+      while (tail.hasRemaining() && channel.read(tail, size - length + tail.position()) >= 0) {
+        // keeps reading until the tail is full
+      }
+      byte[] bytes = tail.array();
+
+      int end = length;
+      if (end > 0 && bytes[end - 1] == '\n') {
+        end--;
+      }
+      if (end > 0 && bytes[end - 1] == '\r') {
+        end--;
+      }
+      int start = end;
+      while (start > 0 && bytes[start - 1] != '\n' && bytes[start - 1] != '\r') {
+        start--;
+      }
+      if (start == 0) {
+        return false;
+      }
+      return new String(bytes, start, end - start, "UTF-8").trim().equalsIgnoreCase("exit");
+    }
+  }
+}
@@ -14,6 +14,7 @@ public class CalendarEvent {
   protected String description;
   protected String location;
   protected boolean isPublic;
+  int order;
 
   /**
    * Constructs a calendar event with specified details.
@@ -35,6 +36,15 @@ public class CalendarEvent {
     this.isPublic = isPublic;
   }
 
+  /**
+   * Returns the subject of the event.
+   * @return subject of event.
+   */
+
+  public String getSubject() {
+    return subject;
+  }
+
   /**
    * Checks if event conflicts with the other event.
    * @param other other event to compare against.
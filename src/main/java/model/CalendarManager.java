@@ -1,36 +1,99 @@
 package model;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 import exception.EventConflictException;
 import exception.InvalidCommandException;
 
 /**
  * Class to hold multiple Calendars.
+ * Each client works through a {@link CalendarSession}, which carries its active calendar;
+ * the manager's own event methods go through a default session.
+ * The manager may be shared between threads. Each calendar has its own read/write lock:
+ * changes hold the write lock of the calendar they change only. Queries take no lock at
+ * all and read the latest version the calendar published, so they never wait on a change
+ * and never hold one up. A copy reads the source the same way and holds the write lock of
+ * the target only.
  */
 
 public class CalendarManager implements ICalendarModel, ICalendarManager {
 
-  private Map<String, CalendarModelV2> calendars;
-  private CalendarModelV2 currentCalendar;
+  private volatile Map<String, CalendarModelV2> calendars;
+  private volatile CalendarModelV2 initialCalendar;
+  private final boolean compactStorage;
+  private final CalendarSession defaultSession;
 
   /**
    * Constructor.
    */
 
   public CalendarManager() {
-    calendars = new HashMap<>();
-    currentCalendar = new CalendarModelV2("Default", ZoneId.of("US/Eastern"), Color.RED);
-    calendars.put("Default", currentCalendar);
+    this(false);
+  }
+
+  /**
+   * Constructor for a manager whose calendars may use compact storage.
+   * @param compactStorage true to keep plain single events of every calendar in compact form.
+   */
+
+  public CalendarManager(boolean compactStorage) {
+    this.compactStorage = compactStorage;
+    calendars = new ConcurrentHashMap<>();
+    initialCalendar = new CalendarModelV2("Default", ZoneId.of("US/Eastern"), Color.RED,
+            compactStorage);
+    calendars.put("Default", initialCalendar);
+    defaultSession = new CalendarSession(this, initialCalendar, calendars);
+  }
+
+  /**
+   * Function to open a session on the calendars of this manager.
+   * @return A session whose active calendar is the Default calendar, or the current
+   *         calendar of the last snapshot loaded.
+   */
+
+  public CalendarSession openSession() {
+    Map<String, CalendarModelV2> current = calendars;
+    return new CalendarSession(this, initialCalendar, current);
+  }
+
+  /**
+   * Function to get the session the manager's own event methods go through.
+   * @return The default session.
+   */
+
+  public CalendarSession defaultSession() {
+    return defaultSession;
+  }
+
+  /**
+   * Function to get the calendars by name.
+   * @return The calendars.
+   */
+
+  Map<String, CalendarModelV2> calendars() {
+    return calendars;
+  }
+
+  /**
+   * Function to get the calendar new sessions start on.
+   * @return The Default calendar, or the current calendar of the last snapshot loaded.
+   */
+
+  CalendarModelV2 initialCalendar() {
+    return initialCalendar;
   }
 
   /**
@@ -42,26 +105,103 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
 
   @Override
   public void createCalendar(String calendarName, ZoneId timeZone) throws InvalidCommandException {
-    if (calendars.containsKey(calendarName)) {
+    Color randomColor = new Color((int)(Math.random()*256), (int)(Math.random()*256), (int)(Math.random()*256));
+    CalendarModelV2 newCalendar = new CalendarModelV2(calendarName, timeZone, randomColor,
+            compactStorage);
+    if (calendars.putIfAbsent(calendarName, newCalendar) != null) {
       throw new InvalidCommandException("Calendar already exists with same name.");
     }
-    Color randomColor = new Color((int)(Math.random()*256), (int)(Math.random()*256), (int)(Math.random()*256));
-    CalendarModelV2 newCalendar = new CalendarModelV2(calendarName, timeZone, randomColor);
-    calendars.put(calendarName, newCalendar);
   }
 
   /**
-   * Function to switch calendars.
+   * Function to save every calendar to a snapshot file, with the default session's active
+   * calendar as the current one.
+   * @param filePath The path of the snapshot file.
+   * @throws InvalidCommandException If the file cannot be written.
+   */
+
+  @Override
+  public void saveSnapshot(String filePath) throws InvalidCommandException {
+    saveSnapshot(filePath, defaultSession);
+  }
+
+  /**
+   * Function to save every calendar to a snapshot file.
+   * Every calendar is read locked while it is written, so the file holds one consistent
+   * state of all of them.
+   * @param filePath The path of the snapshot file.
+   * @param session The session whose active calendar is saved as the current one.
+   * @throws InvalidCommandException If the file cannot be written.
+   */
+
+  public void saveSnapshot(String filePath, CalendarSession session)
+          throws InvalidCommandException {
+    CalendarModelV2 current = session.calendar();
+    Map<String, CalendarModelV2> saved = calendars;
+    List<CalendarModelV2> ordered = new ArrayList<>(saved.values());
+    ordered.sort(Comparator.comparingLong(calendar -> calendar.lockOrder));
+    List<Lock> locks = new ArrayList<>(ordered.size());
+    for (CalendarModelV2 calendar : ordered) {
+      locks.add(calendar.lock.readLock());
+    }
+
+    lockAll(locks);
+    try {
+      CalendarSnapshot.write(saved, current, Paths.get(filePath));
+    }
+    catch (IOException | InvalidPathException e) {
+      throw new InvalidCommandException("Error writing snapshot file");
+    }
+    finally {
+      unlockAll(locks);
+    }
+  }
+
+  /**
+   * Function to replace every calendar with the ones saved in a snapshot file, making
+   * the saved current calendar the default session's active one.
+   * @param filePath The path of the snapshot file.
+   * @throws InvalidCommandException If the file cannot be read or is not a snapshot.
+   */
+
+  @Override
+  public void loadSnapshot(String filePath) throws InvalidCommandException {
+    loadSnapshot(filePath, defaultSession);
+  }
+
+  /**
+   * Function to replace every calendar with the ones saved in a snapshot file.
+   * The calendars are only replaced once the whole file was read. Other sessions keep
+   * the calendar of the same name, see {@link CalendarSession}.
+   * @param filePath The path of the snapshot file.
+   * @param session The session whose active calendar becomes the saved current one.
+   * @throws InvalidCommandException If the file cannot be read or is not a snapshot.
+   */
+
+  public void loadSnapshot(String filePath, CalendarSession session)
+          throws InvalidCommandException {
+    CalendarSnapshot.Contents contents;
+    try {
+      contents = CalendarSnapshot.read(Paths.get(filePath), compactStorage);
+    }
+    catch (IOException | InvalidPathException e) {
+      throw new InvalidCommandException("Error reading snapshot file");
+    }
+    Map<String, CalendarModelV2> loaded = new ConcurrentHashMap<>(contents.calendars);
+    initialCalendar = contents.current;
+    calendars = loaded;
+    session.use(contents.current, loaded);
+  }
+
+  /**
+   * Function to switch the active calendar of the default session.
    * @param calendarName The name of the calendar.
    * @throws InvalidCommandException If no such calendar exists.
    */
 
   @Override
   public void switchCalendar(String calendarName) throws InvalidCommandException {
-    if (!calendars.containsKey(calendarName)) {
-      throw new InvalidCommandException("Calendar with the given name does not exist.");
-    }
-    currentCalendar = calendars.get(calendarName);
+    defaultSession.switchCalendar(calendarName);
   }
 
   /**
@@ -74,20 +214,20 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
   @Override
   public void changeCalendarName(String calendarName, String newName)
           throws InvalidCommandException {
-    if (calendars.containsKey(calendarName)) {
-      CalendarModelV2 calendar = calendars.get(calendarName);
-
-      if (calendars.containsKey(newName)) {
-        throw new InvalidCommandException("Calendar with the given name already exists.");
+    CalendarModelV2 calendar = calendarNamed(calendarName);
+    calendar.lock.writeLock().lock();
+    try {
+      if (calendars.get(calendarName) != calendar) {
+        throw new InvalidCommandException("Calendar with the given name does not exist.");
       }
-      else {
-        calendars.remove(calendarName);
-        calendar.changeCalendarName(newName);
-        calendars.put(newName, calendar);
+      if (calendars.putIfAbsent(newName, calendar) != null) {
+        throw new InvalidCommandException("Calendar with the given name already exists.");
       }
+      calendars.remove(calendarName, calendar);
+      calendar.changeCalendarName(newName);
     }
-    else {
-      throw new InvalidCommandException("Calendar with the given name does not exist.");
+    finally {
+      calendar.lock.writeLock().unlock();
     }
   }
 
@@ -99,71 +239,51 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
 
   @Override
   public void changeCalendarTimeZone(String calendarName, ZoneId newTimeZone) {
-    if (calendars.containsKey(calendarName)) {
-      CalendarModelV2 calendar = calendars.get(calendarName);
+    CalendarModelV2 calendar = calendarNamed(calendarName);
+    calendar.lock.writeLock().lock();
+    try {
       calendar.changeCalendarTimeZone(newTimeZone);
     }
-    else {
-      throw new InvalidCommandException("Calendar with the given name does not exist.");
+    finally {
+      calendar.lock.writeLock().unlock();
     }
   }
 
   /**
-   * Function to modify the event and add it to the target calendar if no conflicts occur.
-   * @param targetCalendarObject The target calendar.
-   * @param modifiedEvent The copy of the event to be added.
-   * @param newStartDateTime The new startDateTime of the event to be copied.
+   * Function to look up a calendar by name.
+   * @param calendarName The name of the calendar.
+   * @return The calendar.
+   * @throws InvalidCommandException If no such calendar exists.
    */
 
-  private void AddEventToTargetCalendar(CalendarModelV2 targetCalendarObject,
-                                        SingleEvent modifiedEvent, LocalDateTime newStartDateTime)
-  {
-    modifyEventHelper(targetCalendarObject.timeZone, modifiedEvent, newStartDateTime);
-
-    boolean addEvent = true;
-    for (CalendarEvent targetCalendarEvent: targetCalendarObject.events) {
-      if (targetCalendarEvent instanceof SingleEvent) {
-        if (targetCalendarEvent.conflictsWith(modifiedEvent)) {
-          addEvent = false;
-        }
-      }
-      if (targetCalendarEvent instanceof RecurringEvent) {
-        RecurringEvent targetCalendarRecurringEvent = (RecurringEvent) targetCalendarEvent;
-        for (SingleEvent targetCalendarSingleEvent:
-                targetCalendarRecurringEvent.recurringEventList) {
-          if (targetCalendarSingleEvent.conflictsWith(modifiedEvent)) {
-            addEvent = false;
-          }
-        }
-      }
-    }
-
-    if (addEvent) {
-      targetCalendarObject.events.add(modifiedEvent);
+  CalendarModelV2 calendarNamed(String calendarName) throws InvalidCommandException {
+    CalendarModelV2 calendar = calendars.get(calendarName);
+    if (calendar == null) {
+      throw new InvalidCommandException("Calendar with the given name does not exist.");
     }
+    return calendar;
   }
 
   /**
-   * Function to change the new event's time according to the target calendar's timezone.
-   * @param targetZoneID the target calendar's timezone ID.
-   * @param modifiedEvent The event to be modified.
-   * @param newStartDateTime The start time of the event.
+   * Function to take locks in list order.
+   * @param locks The locks.
    */
 
-  private void modifyEventHelper(ZoneId targetZoneID, SingleEvent modifiedEvent,
-                                 LocalDateTime newStartDateTime) {
-    LocalDateTime newEndDateTime = newStartDateTime.plusMinutes(ChronoUnit.MINUTES
-            .between(modifiedEvent.startDateTime, modifiedEvent.endDateTime));
+  private static void lockAll(List<Lock> locks) {
+    for (Lock lock : locks) {
+      lock.lock();
+    }
+  }
 
-    ZonedDateTime sourceZdt = newStartDateTime.atZone(currentCalendar.timeZone);
-    ZonedDateTime targetZdt = sourceZdt.withZoneSameInstant(targetZoneID);
-    LocalDateTime modifiedStartDateTime = targetZdt.toLocalDateTime();
-    modifiedEvent.startDateTime = modifiedStartDateTime;
+  /**
+   * Function to release locks in reverse list order.
+   * @param locks The locks.
+   */
 
-    sourceZdt = newEndDateTime.atZone(currentCalendar.timeZone);
-    targetZdt = sourceZdt.withZoneSameInstant(targetZoneID);
-    LocalDateTime modifiedEndDateTime = targetZdt.toLocalDateTime();
-    modifiedEvent.endDateTime = modifiedEndDateTime;
+  private static void unlockAll(List<Lock> locks) {
+    for (int i = locks.size() - 1; i >= 0; i--) {
+      locks.get(i).unlock();
+    }
   }
 
   /**
@@ -172,38 +292,13 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
    * @param copyDate The start date time of the event.
    * @param targetCalendar The target calendar.
    * @param targetDateTime The target datetime.
+   * @return one row per copy: subject, start, end, location, and whether it was copied.
    */
 
   @Override
-  public void copyEvents(String eventName, LocalDateTime copyDate, String targetCalendar,
-                         LocalDateTime targetDateTime) {
-    if (!calendars.containsKey(targetCalendar)) {
-      throw new InvalidCommandException("Calendar with the given name does not exist.");
-    }
-
-    CalendarModelV2 targetCalendarObject = calendars.get(targetCalendar);
-    List<CalendarEvent> eventsToBeAdded = new ArrayList<>();
-
-    for (CalendarEvent event: currentCalendar.events) {
-      if (event instanceof SingleEvent) {
-        if (event.subject.equals(eventName) && event.startDateTime.equals(copyDate)) {
-          eventsToBeAdded.add(event);
-        }
-      }
-      if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent: recurringEvent.recurringEventList) {
-          if (singleEvent.subject.equals(eventName) && singleEvent.startDateTime.equals(copyDate)) {
-            eventsToBeAdded.add(singleEvent);
-          }
-        }
-      }
-    }
-
-    for (CalendarEvent event: eventsToBeAdded) {
-      SingleEvent modifiedEvent = new SingleEvent((SingleEvent) event);
-      AddEventToTargetCalendar(targetCalendarObject, modifiedEvent, targetDateTime);
-    }
+  public List<List> copyEvents(String eventName, LocalDateTime copyDate, String targetCalendar,
+                               LocalDateTime targetDateTime) {
+    return defaultSession.copyEvents(eventName, copyDate, targetCalendar, targetDateTime);
   }
 
   /**
@@ -211,39 +306,12 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
    * @param copyDate The date on which the events to be copied.
    * @param targetCalendar The target calendar.
    * @param targetDate The target datetime.
+   * @return one row per copy: subject, start, end, location, and whether it was copied.
    */
 
   @Override
-  public void copyEvents(LocalDate copyDate, String targetCalendar, LocalDate targetDate) {
-    if (!calendars.containsKey(targetCalendar)) {
-      throw new InvalidCommandException("Calendar with the given name does not exist.");
-    }
-
-    CalendarModelV2 targetCalendarObject = calendars.get(targetCalendar);
-    List<CalendarEvent> eventsToBeAdded = new ArrayList<>();
-
-    for (CalendarEvent event: currentCalendar.events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.toLocalDate().equals(copyDate)) {
-          eventsToBeAdded.add(event);
-        }
-      }
-      if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent: recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.toLocalDate().equals(copyDate)) {
-            eventsToBeAdded.add(singleEvent);
-          }
-        }
-      }
-    }
-
-    for (CalendarEvent event: eventsToBeAdded) {
-      SingleEvent modifiedEvent = new SingleEvent((SingleEvent) event);
-      LocalDateTime newStartDateTime = LocalDateTime.of(targetDate,
-              modifiedEvent.startDateTime.toLocalTime());
-      AddEventToTargetCalendar(targetCalendarObject, modifiedEvent, newStartDateTime);
-    }
+  public List<List> copyEvents(LocalDate copyDate, String targetCalendar, LocalDate targetDate) {
+    return defaultSession.copyEvents(copyDate, targetCalendar, targetDate);
   }
 
   /**
@@ -252,69 +320,69 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
    * @param copyDateEnd The end date of the copying period.
    * @param targetCalendar The target calendar.
    * @param targetDate The target datetime.
+   * @return one row per copy: subject, start, end, location, and whether it was copied.
    */
 
   @Override
-  public void copyEvents(LocalDate copyDateStart, LocalDate copyDateEnd,
-                         String targetCalendar, LocalDate targetDate) {
-    if (!calendars.containsKey(targetCalendar)) {
-      throw new InvalidCommandException("Calendar with the given name does not exist.");
-    }
-
-    CalendarModelV2 targetCalendarObject = calendars.get(targetCalendar);
-    List<CalendarEvent> eventsToBeAdded = new ArrayList<>();
+  public List<List> copyEvents(LocalDate copyDateStart, LocalDate copyDateEnd,
+                               String targetCalendar, LocalDate targetDate) {
+    return defaultSession.copyEvents(copyDateStart, copyDateEnd, targetCalendar, targetDate);
+  }
 
-    for (CalendarEvent event: currentCalendar.events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.compareTo(copyDateStart.atStartOfDay()) >= 0
-                && event.startDateTime.compareTo(copyDateEnd.atStartOfDay()) < 0) {
-          eventsToBeAdded.add(event);
-        }
-      }
-      if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent: recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.compareTo(copyDateStart.atStartOfDay()) >= 0
-                  && singleEvent.startDateTime.compareTo(copyDateEnd.atStartOfDay()) < 0) {
-            eventsToBeAdded.add(singleEvent);
-          }
-        }
-      }
-    }
+  /**
+   * Function to find the earliest times at which several calendars are all free, in the
+   * default session.
+   * @param calendarNames The names of the calendars.
+   * @param from The start of the window to search, in the active calendar's timezone.
+   * @param to The end of the window to search, in the active calendar's timezone.
+   * @param duration The shortest free time wanted.
+   * @param limit The most free times to return.
+   * @return one row per free time in chronological order: start and end.
+   * @throws InvalidCommandException If a calendar does not exist.
+   */
 
-    for (CalendarEvent event: eventsToBeAdded) {
-      SingleEvent modifiedEvent = new SingleEvent((SingleEvent) event);
-      LocalDateTime newStartDateTime = LocalDateTime.of(targetDate,
-                      modifiedEvent.startDateTime.toLocalTime())
-              .plusDays(ChronoUnit.DAYS.between(copyDateStart, event.startDateTime.toLocalDate()));
-      AddEventToTargetCalendar(targetCalendarObject, modifiedEvent, newStartDateTime);
-    }
+  @Override
+  public List<List> findFreeSlots(List<String> calendarNames, LocalDateTime from,
+                                  LocalDateTime to, Duration duration, int limit)
+          throws InvalidCommandException {
+    return defaultSession.findFreeSlots(calendarNames, from, to, duration, limit);
   }
 
   /**
-   * Function to create single event. Control sent to CalendarModel.
+   * Function to create single event. Control sent to the default session.
    * @param event The single event to be created.
    * @throws EventConflictException send back from CalendarModel.
    */
 
   @Override
   public void createSingleEvent(CalendarEvent event) throws EventConflictException {
-    currentCalendar.createSingleEvent(event);
+    defaultSession.createSingleEvent(event);
   }
 
   /**
-   * Function to create recurring event. Control sent to CalendarModel.
+   * Function to create many single events. Control sent to the default session.
+   * @param events The single events to be created.
+   * @return The events rejected because of a conflict.
+   */
+
+  @Override
+  public List<CalendarEvent> createSingleEvents(List<? extends CalendarEvent> events) {
+    return defaultSession.createSingleEvents(events);
+  }
+
+  /**
+   * Function to create recurring event. Control sent to the default session.
    * @param event The recurring event to be created.
    * @throws EventConflictException sent back from CalendarModel.
    */
 
   @Override
   public void createRecurringEvent(CalendarEvent event) throws EventConflictException {
-    currentCalendar.createRecurringEvent(event);
+    defaultSession.createRecurringEvent(event);
   }
 
   /**
-   * Function to edit events. Control sent to CalendarModel.
+   * Function to edit events. Control sent to the default session.
    * @param property The property of the event to modify.
    * @param eventName The name of the event to be edited.
    * @param startDateTime The start date and time of the event.
@@ -326,11 +394,11 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
   @Override
   public void editEvents(String property, String eventName, LocalDateTime startDateTime,
                          LocalDateTime endDateTime, String newValue) throws Exception {
-    currentCalendar.editEvents(property, eventName, startDateTime, endDateTime, newValue);
+    defaultSession.editEvents(property, eventName, startDateTime, endDateTime, newValue);
   }
 
   /**
-   * Function to edit events. Control sent to CalendarModel.
+   * Function to edit events. Control sent to the default session.
    * @param property The property of the event to modify.
    * @param eventName The name of the event to be edited.
    * @param startDateTime The start date and time of the event.
@@ -341,11 +409,11 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
   @Override
   public void editEvents(String property, String eventName, LocalDateTime startDateTime,
                          String newValue) throws Exception {
-    currentCalendar.editEvents(property, eventName, startDateTime, newValue);
+    defaultSession.editEvents(property, eventName, startDateTime, newValue);
   }
 
   /**
-   * Function to edit events. Control sent to CalendarModel.
+   * Function to edit events. Control sent to the default session.
    * @param property The property of the event to modify.
    * @param eventName The name of the event to be edited.
    * @param newValue The new value to be set.
@@ -354,22 +422,58 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
 
   @Override
   public void editEvents(String property, String eventName, String newValue) throws Exception {
-    currentCalendar.editEvents(property, eventName, newValue);
+    defaultSession.editEvents(property, eventName, newValue);
+  }
+
+  /**
+   * Function to visit events on a particular date. Control sent to the default session.
+   * The visitor sees the calendar as it was when the call started, and may change it.
+   * @param date The date to check for events.
+   * @param visitor Receives each event.
+   */
+
+  @Override
+  public void forEachEventOn(LocalDate date, EventVisitor visitor) {
+    defaultSession.forEachEventOn(date, visitor);
+  }
+
+  /**
+   * Function to visit events between 2 dates. Control sent to the default session.
+   * The visitor sees the calendar as it was when the call started, and may change it.
+   * @param start The start of the time range.
+   * @param end The end of the time range.
+   * @param visitor Receives each event.
+   */
+
+  @Override
+  public void forEachEventBetween(LocalDateTime start, LocalDateTime end, EventVisitor visitor) {
+    defaultSession.forEachEventBetween(start, end, visitor);
+  }
+
+  /**
+   * Function to visit every event of the calendar. Control sent to the default session.
+   * The visitor sees the calendar as it was when the call started, and may change it.
+   * @param visitor Receives each event.
+   */
+
+  @Override
+  public void forEachEvent(EventVisitor visitor) {
+    defaultSession.forEachEvent(visitor);
   }
 
   /**
-   * Function to get events on a particular date. Control sent to CalendarModel.
+   * Function to get events on a particular date. Control sent to the default session.
    * @param date The date to check for events.
    * @return The list of events.
    */
 
   @Override
   public List<List> getEventsOn(LocalDate date) {
-    return currentCalendar.getEventsOn(date);
+    return defaultSession.getEventsOn(date);
   }
 
   /**
-   * Function to get events between 2 dates. Control sent to CalendarModel.
+   * Function to get events between 2 dates. Control sent to the default session.
    * @param start The start of the time range.
    * @param end The end of the time range.
    * @return The list of events.
@@ -377,18 +481,18 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
 
   @Override
   public List<List> getEventsBetween(LocalDateTime start, LocalDateTime end) {
-    return currentCalendar.getEventsBetween(start, end);
+    return defaultSession.getEventsBetween(start, end);
   }
 
   /**
-   * Function to check if the calendar is busy at a datetime. Control sent to CalendarModel.
+   * Function to check if the calendar is busy at a datetime. Control sent to the default session.
    * @param dateTime The date and time to check.
    * @return True if busy, else False.
    */
 
   @Override
   public boolean isBusy(LocalDateTime dateTime) {
-    return currentCalendar.isBusy(dateTime);
+    return defaultSession.isBusy(dateTime);
   }
 
   /**
@@ -399,7 +503,7 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
 
   @Override
   public List<List> exportCalendar() throws Exception {
-    return currentCalendar.exportCalendar();
+    return defaultSession.exportCalendar();
   }
 
   /**
@@ -417,7 +521,7 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
    */
 
   public String getActiveCalendarName() {
-    return currentCalendar.calendarName;
+    return defaultSession.getActiveCalendarName();
   }
 
   /**
@@ -426,7 +530,7 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
    */
 
   public String getActiveCalendarTimeZone() {
-    return currentCalendar.timeZone.getId();
+    return defaultSession.getActiveCalendarTimeZone();
   }
 
   /**
@@ -435,6 +539,6 @@ public class CalendarManager implements ICalendarModel, ICalendarManager {
    */
 
   public Color getActiveCalendarColor() {
-    return currentCalendar.calendarColor;
+    return defaultSession.getActiveCalendarColor();
   }
 }
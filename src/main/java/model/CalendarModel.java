@@ -2,9 +2,22 @@ package model;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
 
 import exception.EventConflictException;
 import exception.InvalidCommandException;
@@ -12,50 +25,588 @@ import exception.InvalidCommandException;
 /**
  * Calendar model that manages events.
  * It implements the ICalendarModel interface.
+ * Single events and edited occurrences of recurring events are stored as objects and
+ * indexed by time and by subject. Recurring events are kept as rules, grouped by subject,
+ * and only the occurrences a query needs are expanded.
+ * In compact mode, plain single events are kept as primitive columns in a
+ * {@link CompactEventStore} instead, and are turned back into objects when edited.
+ * A model with a zone stores its date times in UTC: the public methods take and return
+ * date times in the display zone and convert them at the boundary, so only the rows a
+ * query returns are converted and changing the display zone touches no event.
+ * Every change ends by publishing a {@link ModelVersion}, and the queries read the latest
+ * version without locks. Stored occurrences are therefore never changed once stored: an
+ * edit replaces them with changed copies. Writers that share the model between threads
+ * hold the write lock of its {@link #lock}.
  */
 
 public class CalendarModel implements ICalendarModel {
 
-  List<CalendarEvent> events;
+  private static final Comparator<CalendarEvent> BY_START =
+          Comparator.comparing(event -> event.startDateTime);
+  private static final AtomicLong LOCK_ORDER = new AtomicLong();
+
+  final ReadWriteLock lock = new ReentrantReadWriteLock();
+  final long lockOrder = LOCK_ORDER.getAndIncrement();
+
+  PersistentVector<Object> entries;
+  List<RecurringEvent> recurringEvents;
+  IntervalTree occurrenceIndex;
+  Map<String, IntervalTree> subjectIndex;
+  Map<String, List<RecurringEvent>> seriesBySubject;
+  CompactEventStore compactStore;
   DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
+  private final Set<RecurringEvent> changedSeries =
+          Collections.newSetFromMap(new IdentityHashMap<>());
+  private volatile ModelVersion version;
+
   /**
    * Constructs an empty calendar model.
    */
 
   public CalendarModel() {
-    this.events = new ArrayList<CalendarEvent>();
+    this(false);
+  }
+
+  /**
+   * Constructs an empty calendar model, optionally in compact mode.
+   * @param compactStorage true to keep plain single events in compact form.
+   */
+
+  public CalendarModel(boolean compactStorage) {
+    this.entries = new PersistentVector<>();
+    this.recurringEvents = new ArrayList<RecurringEvent>();
+    this.occurrenceIndex = new IntervalTree();
+    this.subjectIndex = new HashMap<>();
+    this.seriesBySubject = new HashMap<>();
+    this.compactStore = compactStorage ? new CompactEventStore() : null;
+    publish();
+  }
+
+  /**
+   * Zone the stored date times are expressed in. A plain model has no zone.
+   * @return the zone of the stored date times, or null.
+   */
+
+  ZoneId viewZone() {
+    return null;
+  }
+
+  /**
+   * Zone the calendar presents its date times in, which new recurrence rules are written
+   * in. A plain model has no zone and presents its stored date times as they are.
+   * @return the zone of the calendar, or null.
+   */
+
+  ZoneId displayZone() {
+    return null;
+  }
+
+  /**
+   * Rules of the zone the calendar presents its date times in.
+   * @return the rules, or null to present date times as they are stored.
+   */
+
+  ZoneRules displayRules() {
+    return null;
+  }
+
+  /**
+   * Converts a date time in the display zone to the stored zone.
+   * @param dateTime the date time as the calendar presents it.
+   * @return the date time as it is stored.
+   */
+
+  LocalDateTime toStored(LocalDateTime dateTime) {
+    return version.toStored(dateTime);
+  }
+
+  /**
+   * Converts a stored date time to the display zone.
+   * @param dateTime the date time as it is stored.
+   * @return the date time as the calendar presents it.
+   */
+
+  LocalDateTime toDisplay(LocalDateTime dateTime) {
+    return version.toDisplay(dateTime);
+  }
+
+  /**
+   * Returns the latest published version of the calendar.
+   * @return the version.
+   */
+
+  ModelVersion version() {
+    return version;
+  }
+
+  /**
+   * Publishes the current state of the calendar as a new version. Only the families of
+   * series that changed since the last version are copied; everything else is shared.
+   */
+
+  void publish() {
+    RecurringEvent[] series = version == null ? new RecurringEvent[0] : version.series;
+    if (!changedSeries.isEmpty()) {
+      series = Arrays.copyOf(series, recurringEvents.size());
+      Set<List<RecurringEvent>> families = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (RecurringEvent changed : changedSeries) {
+        families.add(changed.family);
+      }
+      for (List<RecurringEvent> family : families) {
+        List<RecurringEvent> copies = new ArrayList<>(family.size());
+        for (RecurringEvent member : family) {
+          RecurringEvent copy = member.frozenCopy();
+          copies.add(copy);
+          series[member.seriesSlot] = copy;
+        }
+        entries.set(family.get(0).order, Collections.unmodifiableList(copies));
+      }
+      changedSeries.clear();
+    }
+    version = new ModelVersion(occurrenceIndex.snapshot(), entries.snapshot(),
+            compactStore == null ? null : compactStore.snapshot(), series, viewZone(),
+            displayRules());
+  }
+
+  /**
+   * Converts the times of an event handed in by a caller to the stored zone, in place.
+   * @param event the event, which becomes part of the calendar.
+   */
+
+  private void storeTimes(CalendarEvent event) {
+    event.startDateTime = toStored(event.startDateTime);
+    event.endDateTime = toStored(event.endDateTime);
+  }
+
+  /**
+   * Adds an event to the calendar and to the occurrence index without any conflict check.
+   * In compact mode a plain single event goes to the compact store instead.
+   * @param event the single or recurring event to be added.
+   */
+
+  void addEvent(CalendarEvent event) {
+    if (compactStore != null && CompactEventStore.accepts(event)) {
+      compactStore.add(event);
+      return;
+    }
+    addEntry(event);
+    indexEvent(event);
+  }
+
+  /**
+   * Appends a single event, or a recurring event as a family of its own, to the creation
+   * order, and registers a recurring event with the list of series.
+   * @param event the single or recurring event.
+   */
+
+  private void addEntry(CalendarEvent event) {
+    event.order = entries.size();
+    if (event instanceof RecurringEvent) {
+      RecurringEvent recurringEvent = (RecurringEvent) event;
+      recurringEvent.family = new ArrayList<>(1);
+      recurringEvent.family.add(recurringEvent);
+      entries.add(Collections.emptyList());
+      addSeries(recurringEvent);
+    }
+    else {
+      entries.add(event);
+    }
+  }
+
+  /**
+   * Registers a recurring event with the list of series and the subject groups.
+   * @param recurringEvent the series to be registered.
+   */
+
+  private void addSeries(RecurringEvent recurringEvent) {
+    recurringEvent.seriesSlot = recurringEvents.size();
+    recurringEvents.add(recurringEvent);
+    seriesBySubject.computeIfAbsent(recurringEvent.subject, subject -> new ArrayList<>(1))
+            .add(recurringEvent);
+    changedSeries.add(recurringEvent);
+  }
+
+  /**
+   * Moves a recurring event to the subject group of its new subject.
+   * @param recurringEvent the series.
+   * @param newSubject the new subject.
+   */
+
+  private void renameSeries(RecurringEvent recurringEvent, String newSubject) {
+    List<RecurringEvent> group = seriesBySubject.get(recurringEvent.subject);
+    if (group != null) {
+      group.removeIf(series -> series == recurringEvent);
+      if (group.isEmpty()) {
+        seriesBySubject.remove(recurringEvent.subject);
+      }
+    }
+    recurringEvent.subject = newSubject;
+    seriesBySubject.computeIfAbsent(newSubject, subject -> new ArrayList<>(1))
+            .add(recurringEvent);
+    changedSeries.add(recurringEvent);
+  }
+
+  /**
+   * Adds the stored occurrences of an event to the interval tree and the per-day buckets.
+   * A single event is one occurrence; a recurring event contributes only its overrides.
+   * @param event the single or recurring event to be indexed.
+   */
+
+  private void indexEvent(CalendarEvent event) {
+    if (event instanceof RecurringEvent) {
+      for (SingleEvent override : ((RecurringEvent) event).overrides.values()) {
+        indexOccurrence(override);
+      }
+    }
+    else {
+      indexOccurrence(event);
+    }
+  }
+
+  /**
+   * Adds one occurrence to the interval tree and to the tree of its subject.
+   * @param occurrence the occurrence to be indexed.
+   */
+
+  private void indexOccurrence(CalendarEvent occurrence) {
+    occurrenceIndex.add(occurrence);
+    indexSubject(occurrence);
+  }
+
+  /**
+   * Removes one occurrence from the interval tree and from the tree of its subject.
+   * @param occurrence the occurrence to be removed, still carrying its indexed times.
+   */
+
+  private void unindexOccurrence(CalendarEvent occurrence) {
+    occurrenceIndex.remove(occurrence);
+    unindexSubject(occurrence);
+  }
+
+  /**
+   * Puts a changed copy of a stored occurrence in its place: in the indexes, and in the
+   * creation order or among the overrides of its series. The occurrence itself is left
+   * as it was, since published versions may still hand it out.
+   * @param occurrence the stored occurrence.
+   * @param copy the changed copy.
+   */
+
+  private void replaceOccurrence(CalendarEvent occurrence, SingleEvent copy) {
+    unindexOccurrence(occurrence);
+    if (copy.series != null) {
+      copy.series.overrides.put(copy.occurrenceDate, copy);
+      changedSeries.add(copy.series);
+    }
+    else {
+      entries.set(copy.order, copy);
+    }
+    indexOccurrence(copy);
+  }
+
+  /**
+   * Copies a stored occurrence, keeping its series, rule date and place in the creation
+   * order.
+   * @param occurrence the stored occurrence.
+   * @return the copy, not yet stored.
+   */
+
+  private static SingleEvent copyOf(CalendarEvent occurrence) {
+    SingleEvent original = (SingleEvent) occurrence;
+    SingleEvent copy = new SingleEvent(original);
+    copy.series = original.series;
+    copy.occurrenceDate = original.occurrenceDate;
+    copy.order = original.order;
+    return copy;
+  }
+
+  /**
+   * Adds one occurrence to the tree of its subject.
+   * @param occurrence the occurrence to be indexed.
+   */
+
+  private void indexSubject(CalendarEvent occurrence) {
+    subjectIndex.computeIfAbsent(occurrence.subject, subject -> new IntervalTree())
+            .add(occurrence);
+  }
+
+  /**
+   * Removes one occurrence from the tree of its subject.
+   * @param occurrence the occurrence to be removed, still carrying its indexed subject and times.
+   */
+
+  private void unindexSubject(CalendarEvent occurrence) {
+    IntervalTree bySubject = subjectIndex.get(occurrence.subject);
+    if (bySubject != null && bySubject.remove(occurrence) && bySubject.size() == 0) {
+      subjectIndex.remove(occurrence.subject);
+    }
+  }
+
+  /**
+   * Collects the stored occurrences with a subject that start at or after a date time,
+   * in chronological order. The list is a copy, so callers may edit while iterating it.
+   * @param subject the subject to look up.
+   * @param from earliest start date time, inclusive.
+   * @return the matching stored occurrences.
+   */
+
+  private List<CalendarEvent> storedWithSubject(String subject, LocalDateTime from) {
+    List<CalendarEvent> stored = new ArrayList<>();
+    IntervalTree bySubject = subjectIndex.get(subject);
+    if (bySubject != null) {
+      bySubject.forEachStartingBetween(from, LocalDateTime.MAX, stored::add);
+    }
+    return stored;
+  }
+
+  /**
+   * Collects the recurring events with a subject. The list is a copy, so callers may
+   * edit or split the series while iterating it.
+   * @param subject the subject to look up.
+   * @return the matching recurring events.
+   */
+
+  private List<RecurringEvent> seriesWithSubject(String subject) {
+    List<RecurringEvent> group = seriesBySubject.get(subject);
+    return group == null ? new ArrayList<>() : new ArrayList<>(group);
+  }
+
+  /**
+   * Builds the occurrence index from the stored occurrences of events added without being
+   * indexed. The occurrences are sorted once and the trees are built from the sorted runs
+   * instead of one insert at a time.
+   * @param sorted the stored occurrences, in creation order; sorted in place.
+   */
+
+  private void rebuildIndex(List<CalendarEvent> sorted) {
+    sorted.sort(BY_START);
+
+    occurrenceIndex.build(sorted);
+    Map<String, List<CalendarEvent>> bySubject = new HashMap<>();
+    for (CalendarEvent occurrence : sorted) {
+      bySubject.computeIfAbsent(occurrence.subject, subject -> new ArrayList<>()).add(occurrence);
+    }
+
+    subjectIndex.clear();
+    for (Map.Entry<String, List<CalendarEvent>> group : bySubject.entrySet()) {
+      IntervalTree tree = new IntervalTree();
+      tree.build(group.getValue());
+      subjectIndex.put(group.getKey(), tree);
+    }
+  }
+
+  /**
+   * Adds events read back from storage without any conflict check and indexes them once
+   * all of them are added. In compact mode plain single events go to the compact store.
+   * @param loaded the single and recurring events, in creation order.
+   */
+
+  void addEvents(List<CalendarEvent> loaded) {
+    List<CalendarEvent> occurrences = new ArrayList<>(loaded.size());
+    for (CalendarEvent event : loaded) {
+      if (compactStore != null && CompactEventStore.accepts(event)) {
+        compactStore.add(event);
+        continue;
+      }
+      addEntry(event);
+      if (event instanceof RecurringEvent) {
+        occurrences.addAll(((RecurringEvent) event).overrides.values());
+      }
+      else {
+        occurrences.add(event);
+      }
+    }
+    rebuildIndex(occurrences);
+    publish();
+  }
+
+  /**
+   * Turns the compact events with a subject that start within the given bounds back into
+   * objects, so the edit methods can change them in place. Does nothing outside compact mode.
+   * @param subject the subject to look up.
+   * @param from earliest start date time, inclusive.
+   * @param to latest start date time, inclusive.
+   */
+
+  private void promoteCompact(String subject, LocalDateTime from, LocalDateTime to) {
+    if (compactStore == null) {
+      return;
+    }
+    for (SingleEvent event : compactStore.removeWithSubject(subject, from, to)) {
+      addEntry(event);
+      indexOccurrence(event);
+    }
+  }
+
+  /**
+   * Checks if an interval overlaps any occurrence of the calendar, stored or expanded
+   * from a recurrence rule.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @param ignore stored occurrence to skip, may be null.
+   * @return true if it conflicts, false otherwise.
+   */
+
+  boolean hasConflict(LocalDateTime start, LocalDateTime end, CalendarEvent ignore) {
+    if (occurrenceIndex.anyOverlapping(start, end, ignore)) {
+      return true;
+    }
+    if (compactStore != null && compactStore.anyOverlapping(start, end)) {
+      return true;
+    }
+    ZoneId zone = viewZone();
+    for (RecurringEvent recurringEvent : recurringEvents) {
+      if (recurringEvent.overlaps(start, end, zone)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks if an event overlaps any occurrence already stored in the calendar.
+   * @param event the event to check.
+   * @return true if it conflicts, false otherwise.
+   */
+
+  boolean conflictsWithExisting(CalendarEvent event) {
+    return hasConflict(event.startDateTime, event.endDateTime, event);
   }
 
   /**
    * Creates a single event and adds it to the calendar.
-   * in case of conflict.
+   * in case of conflict. An event that is rejected keeps the times it was handed in with.
    * @param event the single event to be created.
    * @throws EventConflictException if event conflicts with existing event.
    */
 
   @Override
   public void createSingleEvent(CalendarEvent event) throws EventConflictException {
-    for (CalendarEvent existing : events) {
-      if (existing instanceof SingleEvent) {
-        if (event.conflictsWith(existing)) {
-          throw new EventConflictException("Event Conflict Occurred");
-        }
+    LocalDateTime start = event.startDateTime;
+    LocalDateTime end = event.endDateTime;
+    storeTimes(event);
+    if (conflictsWithExisting(event)) {
+      event.startDateTime = start;
+      event.endDateTime = end;
+      throw new EventConflictException("Event Conflict Occurred");
+    }
+    addEvent(event);
+    publish();
+  }
+
+  /**
+   * Creates many single events at once, as {@link #createStoredEvents}. The events that
+   * are rejected keep the times they were handed in with.
+   * @param batch the single events to be created.
+   * @return the events that were rejected because of a conflict, in batch order.
+   */
+
+  @Override
+  public List<CalendarEvent> createSingleEvents(List<? extends CalendarEvent> batch) {
+    LocalDateTime[] times = new LocalDateTime[2 * batch.size()];
+    for (int i = 0; i < batch.size(); i++) {
+      CalendarEvent event = batch.get(i);
+      times[2 * i] = event.startDateTime;
+      times[2 * i + 1] = event.endDateTime;
+      storeTimes(event);
+    }
+    List<CalendarEvent> conflicts = createStoredEvents(batch);
+    int i = 0;
+    for (CalendarEvent rejected : conflicts) {
+      while (batch.get(i) != rejected) {
+        i++;
       }
-      else if (existing instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) existing;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (event.conflictsWith(singleEvent)) {
-            throw new EventConflictException("Event Conflict Occurred");
-          }
+      rejected.startDateTime = times[2 * i];
+      rejected.endDateTime = times[2 * i + 1];
+    }
+    return conflicts;
+  }
+
+  /**
+   * Creates many single events whose times are already in the stored zone. Each event is
+   * checked against the calendar and against the events before it in the batch, exactly as
+   * if they were created one by one, but the batch is sorted by start once and swept: an
+   * event that overlaps no other event of the batch needs no further check, and the rest
+   * fall into small clusters of mutually overlapping events that are resolved in batch
+   * order. The accepted events are then added in batch order.
+   * @param batch the single events to be created.
+   * @return the events that were rejected because of a conflict, in batch order.
+   */
+
+  List<CalendarEvent> createStoredEvents(List<? extends CalendarEvent> batch) {
+    boolean[] rejected = new boolean[batch.size()];
+    List<Integer> candidates = new ArrayList<>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      CalendarEvent event = batch.get(i);
+      if (hasConflict(event.startDateTime, event.endDateTime, event)) {
+        rejected[i] = true;
+      }
+      else {
+        candidates.add(i);
+      }
+    }
+    candidates.sort(Comparator.comparing(i -> batch.get(i).startDateTime));
+
+    int from = 0;
+    while (from < candidates.size()) {
+      LocalDateTime clusterEnd = batch.get(candidates.get(from)).endDateTime;
+      int to = from + 1;
+      while (to < candidates.size()
+              && batch.get(candidates.get(to)).startDateTime.isBefore(clusterEnd)) {
+        LocalDateTime end = batch.get(candidates.get(to)).endDateTime;
+        if (end.isAfter(clusterEnd)) {
+          clusterEnd = end;
         }
+        to++;
+      }
+      if (to - from > 1) {
+        resolveCluster(batch, candidates.subList(from, to), rejected);
+      }
+      from = to;
+    }
+
+    List<CalendarEvent> conflicts = new ArrayList<>();
+    for (int i = 0; i < batch.size(); i++) {
+      if (rejected[i]) {
+        conflicts.add(batch.get(i));
+      }
+      else {
+        addEvent(batch.get(i));
+      }
+    }
+    publish();
+    return conflicts;
+  }
+
+  /**
+   * Accepts the events of a cluster of overlapping batch events in batch order, rejecting
+   * each one that overlaps an event accepted before it.
+   * @param batch the whole batch.
+   * @param cluster positions in the batch of the events of the cluster.
+   * @param rejected marks the rejected positions.
+   */
+
+  private static void resolveCluster(List<? extends CalendarEvent> batch, List<Integer> cluster,
+                                     boolean[] rejected) {
+    List<Integer> inBatchOrder = new ArrayList<>(cluster);
+    inBatchOrder.sort(null);
+    IntervalTree accepted = new IntervalTree();
+    for (int position : inBatchOrder) {
+      CalendarEvent event = batch.get(position);
+      if (accepted.anyOverlapping(event.startDateTime, event.endDateTime, event)) {
+        rejected[position] = true;
+      }
+      else {
+        accepted.add(event);
       }
     }
-    events.add(event);
   }
 
   /**
    * Creates recurring event and adds it to the calendar.
+   * Stored occurrences within the span of the new series are tested against its rule,
+   * and existing series are compared rule against rule, so no occurrence is expanded
+   * unless the rules need the fallback check.
    * @param event the recurring event to be created.
    * @throws EventConflictException if event conflicts with existing event.
    */
@@ -63,123 +614,222 @@ public class CalendarModel implements ICalendarModel {
   @Override
   public void createRecurringEvent(CalendarEvent event) throws EventConflictException {
     RecurringEvent recurringToBeCreatedEvent = (RecurringEvent) event;
+    ZoneId zone = viewZone();
+    if (recurringToBeCreatedEvent.zone == null) {
+      recurringToBeCreatedEvent.zone = displayZone();
+    }
 
-    for (CalendarEvent existing : events) {
-      if (existing instanceof SingleEvent) {
-        for (SingleEvent singleEvent : recurringToBeCreatedEvent.recurringEventList) {
-          if (singleEvent.conflictsWith(existing)) {
-            throw new EventConflictException("Event Conflict Occurred");
-          }
-        }
+    if (!recurringToBeCreatedEvent.lastDate.isBefore(recurringToBeCreatedEvent.firstDate)) {
+      LocalDateTime spanStart = recurringToBeCreatedEvent.toView(
+              recurringToBeCreatedEvent.firstDate.atStartOfDay(), zone);
+      LocalDateTime spanEnd = recurringToBeCreatedEvent.toView(
+              recurringToBeCreatedEvent.lastDate.plusDays(2).atStartOfDay(), zone);
+      Predicate<CalendarEvent> hitsRule = stored -> recurringToBeCreatedEvent.overlaps(
+              stored.startDateTime, stored.endDateTime, zone);
+      if (occurrenceIndex.anyOverlapping(spanStart, spanEnd, hitsRule)
+              || (compactStore != null
+              && compactStore.anyOverlapping(spanStart, spanEnd, hitsRule))) {
+        throw new EventConflictException("Event Conflict Occurred");
       }
-      else if (existing instanceof RecurringEvent) {
-        RecurringEvent recurringExistingEvent = (RecurringEvent) existing;
-        for (SingleEvent singleExistingEvent : recurringExistingEvent.recurringEventList) {
-          for (SingleEvent singleToBeCreatedEvent : recurringToBeCreatedEvent.recurringEventList) {
-            if (singleToBeCreatedEvent.conflictsWith(singleExistingEvent)) {
-              throw new EventConflictException("Event Conflict Occurred");
-            }
-          }
+
+      for (RecurringEvent existing : recurringEvents) {
+        if (existing.conflictsWith(recurringToBeCreatedEvent, zone)) {
+          throw new EventConflictException("Event Conflict Occurred");
         }
       }
     }
-    events.add(event);
+    addEvent(event);
+    publish();
   }
 
   /**
-   * Edits an event by modifying its properties.
+   * Edits a stored occurrence by replacing it with a copy that has the property changed.
    * @param property The property to be changed.
    * @param newValue The new value for the property.
    * @param event The event to be modified.
    * @param eventType The type of event.
+   * @return the occurrence stored after the edit: the copy, or the event itself if the
+   *         edit did not apply.
    * @throws EventConflictException if conflict occurs due to editing.
    */
 
-  private void editHelper(String property, String newValue, CalendarEvent event,
-                          String eventType) throws EventConflictException {
+  private CalendarEvent editHelper(String property, String newValue, CalendarEvent event,
+                                   String eventType) throws EventConflictException {
+    SingleEvent copy = copyOf(event);
     switch (property) {
       case "subject":
-        event.subject = newValue;
+        copy.subject = newValue;
         break;
       case "description":
-        event.description = newValue;
+        copy.description = newValue;
         break;
       case "location":
-        event.location = newValue;
+        copy.location = newValue;
         break;
       case "startDateTime":
-        if (LocalDateTime.parse(newValue, formatter).isBefore(event.endDateTime)) {
-          LocalDateTime originalStartDateTime = event.startDateTime;
-
-          if (eventType.equals("Recurring")
-                  && LocalDateTime.parse(newValue, formatter)
-                  .toLocalDate().equals(event.startDateTime.toLocalDate())) {
-            event.startDateTime = LocalDateTime.parse(newValue, formatter);
-
-            if (checkConflict(event)) {
-              event.startDateTime = originalStartDateTime;
-            }
-          } else if (eventType.equals("Single")) {
-            event.startDateTime = LocalDateTime.parse(newValue, formatter);
-
-            if (checkConflict(event)) {
-              event.startDateTime = originalStartDateTime;
-            }
+        LocalDateTime newStartDateTime = LocalDateTime.parse(newValue, formatter);
+        if (toStored(newStartDateTime).isBefore(event.endDateTime)) {
+          if ((eventType.equals("Recurring") && newStartDateTime.toLocalDate()
+                  .equals(toDisplay(event.startDateTime).toLocalDate()))
+                  || eventType.equals("Single")) {
+            return moveIfNoConflict(event, toStored(newStartDateTime), event.endDateTime);
           }
         }
-        break;
+        return event;
       case "endDateTime":
-        if (LocalDateTime.parse(newValue, formatter).isAfter(event.startDateTime)) {
-          LocalDateTime originalEndDateTime = event.endDateTime;
-
-          if (eventType.equals("Recurring")
-                  && LocalDateTime.parse(newValue, formatter)
-                  .toLocalDate().equals(event.endDateTime.toLocalDate())) {
-            event.endDateTime = LocalDateTime.parse(newValue, formatter);
-
-            if (checkConflict(event)) {
-              event.endDateTime = originalEndDateTime;
-            }
-          } else if (eventType.equals("Single")) {
-            event.endDateTime = LocalDateTime.parse(newValue, formatter);
-
-            if (checkConflict(event)) {
-              event.endDateTime = originalEndDateTime;
-            }
+        LocalDateTime newEndDateTime = LocalDateTime.parse(newValue, formatter);
+        if (toStored(newEndDateTime).isAfter(event.startDateTime)) {
+          if ((eventType.equals("Recurring") && newEndDateTime.toLocalDate()
+                  .equals(toDisplay(event.endDateTime).toLocalDate()))
+                  || eventType.equals("Single")) {
+            return moveIfNoConflict(event, event.startDateTime, toStored(newEndDateTime));
           }
         }
-        break;
+        return event;
       case "isPublic":
-        event.isPublic = Boolean.parseBoolean(newValue);
+        copy.isPublic = Boolean.parseBoolean(newValue);
         break;
       default:
         throw new InvalidCommandException("Invalid property: " + property);
     }
+    replaceOccurrence(event, copy);
+    return copy;
   }
 
   /**
-   * Helper function to check if the edited event conflicts.
-   * @param changedEvent the edited event.
-   * @return Boolean true if it conflicts, false in other case.
+   * Helper function to move an edited event to new times unless the new times conflict.
+   * The occurrence index is checked before the event is replaced by a moved copy.
+   * @param event the edited event.
+   * @param newStartDateTime the new start date time.
+   * @param newEndDateTime the new end date time.
+   * @return the occurrence stored afterwards: the moved copy, or the event itself.
    */
 
-  private boolean checkConflict(CalendarEvent changedEvent) {
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (changedEvent.conflictsWith(event) && event != changedEvent) {
-          return true;
-        }
+  private CalendarEvent moveIfNoConflict(CalendarEvent event, LocalDateTime newStartDateTime,
+                                         LocalDateTime newEndDateTime) {
+    if (hasConflict(newStartDateTime, newEndDateTime, event)) {
+      return event;
+    }
+    SingleEvent copy = copyOf(event);
+    copy.startDateTime = newStartDateTime;
+    copy.endDateTime = newEndDateTime;
+    replaceOccurrence(event, copy);
+    return copy;
+  }
+
+  /**
+   * Returns the kind of a stored occurrence as understood by the edit helper.
+   * @param occurrence a single event or an override of a recurring event.
+   * @return "Recurring" for overrides, "Single" otherwise.
+   */
+
+  private String typeOf(CalendarEvent occurrence) {
+    return occurrence instanceof SingleEvent && ((SingleEvent) occurrence).series != null
+            ? "Recurring" : "Single";
+  }
+
+  /**
+   * Edits one occurrence of a recurring event by turning it into an override first.
+   * The override is dropped again if the edit left it identical to the rule.
+   * @param recurringEvent the series.
+   * @param date the rule date of the occurrence.
+   * @param property The property to be changed.
+   * @param newValue The new value for the property.
+   */
+
+  private void editOccurrence(RecurringEvent recurringEvent, LocalDate date,
+                              String property, String newValue) {
+    ZoneId zone = viewZone();
+    SingleEvent override = recurringEvent.materialize(date, zone);
+    indexOccurrence(override);
+    changedSeries.add(recurringEvent);
+    CalendarEvent edited = override;
+    try {
+      edited = editHelper(property, newValue, override, "Recurring");
+    }
+    finally {
+      if (recurringEvent.isRedundant((SingleEvent) edited, zone)) {
+        unindexOccurrence(edited);
+        recurringEvent.overrides.remove(date);
       }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringExistingEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringExistingEvent.recurringEventList) {
-          if (changedEvent.conflictsWith(singleEvent) && singleEvent != changedEvent) {
-            return true;
-          }
-        }
+    }
+  }
+
+  /**
+   * Applies a start or end date time edit to the occurrences of a recurring event.
+   * Such an edit may not move an occurrence to another date, so only the occurrences
+   * around the date of the new value can be affected.
+   * @param recurringEvent the series.
+   * @param property startDateTime or endDateTime.
+   * @param newValue the new date time, in the display zone.
+   * @param notBefore occurrences starting before this stored date time are left alone,
+   *                  may be null.
+   */
+
+  private void editSeriesTime(RecurringEvent recurringEvent, String property, String newValue,
+                              LocalDateTime notBefore) {
+    ZoneId zone = viewZone();
+    LocalDateTime newDateTime = LocalDateTime.parse(newValue, formatter);
+    LocalDateTime storedDateTime = toStored(newDateTime);
+    LocalDate around = recurringEvent.toRule(storedDateTime, zone).toLocalDate();
+
+    for (LocalDate date = around.minusDays(2); !date.isAfter(around.plusDays(1));
+         date = date.plusDays(1)) {
+      if (!recurringEvent.occursOn(date)) {
+        continue;
+      }
+      SingleEvent occurrence = recurringEvent.occurrenceOn(date, zone);
+      if (notBefore != null && occurrence.startDateTime.compareTo(notBefore) < 0) {
+        continue;
+      }
+      boolean applies = property.equals("startDateTime")
+              ? storedDateTime.isBefore(occurrence.endDateTime)
+              && newDateTime.toLocalDate().equals(toDisplay(occurrence.startDateTime).toLocalDate())
+              : storedDateTime.isAfter(occurrence.startDateTime)
+              && newDateTime.toLocalDate().equals(toDisplay(occurrence.endDateTime).toLocalDate());
+      if (applies) {
+        editOccurrence(recurringEvent, date, property, newValue);
       }
     }
-    return false;
+  }
+
+  /**
+   * Changes a property on the rule of a recurring event, which applies it to every
+   * occurrence the rule supplies.
+   * @param recurringEvent the series.
+   * @param property The property to be changed.
+   * @param newValue The new value for the property.
+   */
+
+  private void editSeriesProperty(RecurringEvent recurringEvent, String property,
+                                  String newValue) {
+    changedSeries.add(recurringEvent);
+    switch (property) {
+      case "subject":
+        renameSeries(recurringEvent, newValue);
+        break;
+      case "description":
+        recurringEvent.description = newValue;
+        break;
+      case "location":
+        recurringEvent.location = newValue;
+        break;
+      case "isPublic":
+        recurringEvent.isPublic = Boolean.parseBoolean(newValue);
+        break;
+      default:
+        throw new InvalidCommandException("Invalid property: " + property);
+    }
+  }
+
+  /**
+   * Checks if a property edit changes times rather than a descriptive field.
+   * @param property the property name.
+   * @return true for startDateTime and endDateTime.
+   */
+
+  private boolean isTimeProperty(String property) {
+    return property.equals("startDateTime") || property.equals("endDateTime");
   }
 
   /**
@@ -195,26 +845,36 @@ public class CalendarModel implements ICalendarModel {
   @Override
   public void editEvents(String property, String eventName, LocalDateTime startDateTime,
                          LocalDateTime endDateTime, String newValue) throws Exception {
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.isEqual(startDateTime) && event.endDateTime.isEqual(endDateTime)) {
-          if (event.subject.equals(eventName)) {
-            editHelper(property, newValue, event, "Single");
-          }
+    try {
+      LocalDateTime storedStart = toStored(startDateTime);
+      LocalDateTime storedEnd = toStored(endDateTime);
+      promoteCompact(eventName, storedStart, storedStart);
+      List<CalendarEvent> stored = new ArrayList<>();
+      IntervalTree bySubject = subjectIndex.get(eventName);
+      if (bySubject != null) {
+        bySubject.forEachStartingBetween(storedStart, storedStart, stored::add);
+      }
+      for (CalendarEvent event : stored) {
+        if (event.endDateTime.isEqual(storedEnd)) {
+          editHelper(property, newValue, event, typeOf(event));
         }
       }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.isEqual(startDateTime)
-                  && singleEvent.endDateTime.isEqual(endDateTime)) {
-            if (singleEvent.subject.equals(eventName)) {
-              editHelper(property, newValue, singleEvent, "Recurring");
-            }
+
+      ZoneId zone = viewZone();
+      for (RecurringEvent recurringEvent : seriesWithSubject(eventName)) {
+        LocalDate date = recurringEvent.toRule(storedStart, zone).toLocalDate();
+        if (recurringEvent.occursOn(date)) {
+          SingleEvent occurrence = recurringEvent.occurrenceOn(date, zone);
+          if (occurrence.startDateTime.isEqual(storedStart)
+                  && occurrence.endDateTime.isEqual(storedEnd)) {
+            editOccurrence(recurringEvent, date, property, newValue);
           }
         }
       }
     }
+    finally {
+      publish();
+    }
   }
 
   /**
@@ -229,25 +889,40 @@ public class CalendarModel implements ICalendarModel {
   @Override
   public void editEvents(String property, String eventName,
                          LocalDateTime startDateTime, String newValue) throws Exception {
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.compareTo(startDateTime) >= 0) {
-          if (event.subject.equals(eventName)) {
-            editHelper(property, newValue, event, "Single");
-          }
-        }
+    try {
+      LocalDateTime storedStart = toStored(startDateTime);
+      promoteCompact(eventName, storedStart, LocalDateTime.MAX);
+      for (CalendarEvent event : storedWithSubject(eventName, storedStart)) {
+        editHelper(property, newValue, event, typeOf(event));
       }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.compareTo(startDateTime) >= 0) {
-            if (singleEvent.subject.equals(eventName)) {
-              editHelper(property, newValue, singleEvent, "Recurring");
-            }
-          }
+
+      ZoneId zone = viewZone();
+      for (RecurringEvent recurringEvent : seriesWithSubject(eventName)) {
+        if (isTimeProperty(property)) {
+          editSeriesTime(recurringEvent, property, newValue, storedStart);
+          continue;
+        }
+
+        LocalDateTime ruleFrom = recurringEvent.toRule(storedStart, zone);
+        LocalDate splitDate = ruleFrom.toLocalTime().isAfter(recurringEvent.startTime)
+                ? ruleFrom.toLocalDate().plusDays(1) : ruleFrom.toLocalDate();
+        LocalDate firstAffected = recurringEvent.firstRuleDateOnOrAfter(splitDate);
+        if (firstAffected == null) {
+          continue;
         }
+
+        RecurringEvent target = recurringEvent;
+        if (firstAffected.isAfter(recurringEvent.firstDate)) {
+          target = recurringEvent.splitAt(firstAffected);
+          changedSeries.add(recurringEvent);
+          addSeries(target);
+        }
+        editSeriesProperty(target, property, newValue);
       }
     }
+    finally {
+      publish();
+    }
   }
 
   /**
@@ -260,26 +935,110 @@ public class CalendarModel implements ICalendarModel {
 
   @Override
   public void editEvents(String property, String eventName, String newValue) throws Exception {
+    try {
+      promoteCompact(eventName, LocalDateTime.MIN, LocalDateTime.MAX);
+      for (CalendarEvent event : storedWithSubject(eventName, LocalDateTime.MIN)) {
+        editHelper(property, newValue, event, typeOf(event));
+      }
 
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (event.subject.equals(eventName)) {
-          editHelper(property, newValue, event, "Single");
+      for (RecurringEvent recurringEvent : seriesWithSubject(eventName)) {
+        if (isTimeProperty(property)) {
+          editSeriesTime(recurringEvent, property, newValue, null);
         }
-      }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (singleEvent.subject.equals(eventName)) {
-            editHelper(property, newValue, singleEvent, "Recurring");
-          }
+        else {
+          editSeriesProperty(recurringEvent, property, newValue);
         }
       }
     }
+    finally {
+      publish();
+    }
+  }
+
+  /**
+   * Passes the details of an occurrence to a visitor, its times in the display zone.
+   * @param version the version the occurrence was read from.
+   * @param event the occurrence.
+   * @param visitor the visitor.
+   */
+
+  private static void visit(ModelVersion version, CalendarEvent event, EventVisitor visitor) {
+    visitor.visit(event.subject, version.toDisplay(event.startDateTime),
+            version.toDisplay(event.endDateTime), event.description, event.location,
+            event.isPublic);
+  }
+
+  /**
+   * Converts an occurrence into the row format returned by the query methods.
+   * @param subject subject of the occurrence.
+   * @param startDateTime start of the occurrence.
+   * @param endDateTime end of the occurrence.
+   * @param location location of the occurrence.
+   * @return subject, start, end and location of the occurrence.
+   */
+
+  private static List toRow(String subject, LocalDateTime startDateTime,
+                            LocalDateTime endDateTime, String location) {
+    List eventDetails = new ArrayList();
+    eventDetails.add(subject);
+    eventDetails.add(startDateTime);
+    eventDetails.add(endDateTime);
+    eventDetails.add(location);
+    return eventDetails;
+  }
+
+  /**
+   * Visits all events occurring on a given date, in chronological order.
+   * The events are read from the latest version, so the visitor sees the calendar as it
+   * was when the call started.
+   * @param date date to check for events.
+   * @param visitor receives each event.
+   */
+
+  @Override
+  public void forEachEventOn(LocalDate date, EventVisitor visitor) {
+    ModelVersion current = version;
+    LocalDateTime from = current.toStored(date.atStartOfDay());
+    LocalDateTime to = current.toStored(date.plusDays(1).atStartOfDay()).minusNanos(1);
+    current.forEachStartingBetween(from, to, event -> visit(current, event, visitor));
   }
 
   /**
-   * Retrieves all events occurring on a given date.
+   * Visits all events occurring within a specified time range, in chronological order.
+   * An event must lie entirely inside the range, so only occurrences starting between
+   * start and end are candidates and the sorted start index is scanned over that span only.
+   * Recurring events expand only the occurrences inside the range. The events are read
+   * from the latest version.
+   * @param start The start of the time range.
+   * @param end The end of the time range.
+   * @param visitor receives each event.
+   */
+
+  @Override
+  public void forEachEventBetween(LocalDateTime start, LocalDateTime end, EventVisitor visitor) {
+    ModelVersion current = version;
+    LocalDateTime to = current.toStored(end);
+    current.forEachStartingBetween(current.toStored(start), to, event -> {
+      if (event.endDateTime.compareTo(to) <= 0) {
+        visit(current, event, visitor);
+      }
+    });
+  }
+
+  /**
+   * Visits every event of the calendar, in the order of
+   * {@link ModelVersion#forEachOccurrence}. The events are read from the latest version.
+   * @param visitor receives each event.
+   */
+
+  @Override
+  public void forEachEvent(EventVisitor visitor) {
+    ModelVersion current = version;
+    current.forEachOccurrence(event -> visit(current, event, visitor));
+  }
+
+  /**
+   * Retrieves all events occurring on a given date, in chronological order.
    * @param date date to check for events.
    * @return list of events on the given date.
    */
@@ -287,36 +1046,14 @@ public class CalendarModel implements ICalendarModel {
   @Override
   public List<List> getEventsOn(LocalDate date) {
     List<List> result = new ArrayList<>();
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.toLocalDate().equals(date)) {
-          List eventDetails = new ArrayList();
-          eventDetails.add(event.subject);
-          eventDetails.add(event.startDateTime);
-          eventDetails.add(event.endDateTime);
-          eventDetails.add(event.location);
-          result.add(eventDetails);
-        }
-      }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.toLocalDate().equals(date)) {
-            List eventDetails = new ArrayList();
-            eventDetails.add(singleEvent.subject);
-            eventDetails.add(singleEvent.startDateTime);
-            eventDetails.add(singleEvent.endDateTime);
-            eventDetails.add(singleEvent.location);
-            result.add(eventDetails);
-          }
-        }
-      }
-    }
+    forEachEventOn(date, (subject, start, end, description, location, isPublic) -> {
+      result.add(toRow(subject, start, end, location));
+    });
     return result;
   }
 
   /**
-   * Retrieves all events occurring within a specified time range.
+   * Retrieves all events occurring within a specified time range, in chronological order.
    * @param start The start of the time range.
    * @param end The end of the time range.
    * @return List of events occurring on the specified time range.
@@ -325,33 +1062,9 @@ public class CalendarModel implements ICalendarModel {
   @Override
   public List<List> getEventsBetween(LocalDateTime start, LocalDateTime end) {
     List<List> result = new ArrayList<>();
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.compareTo(start) >= 0
-                && event.endDateTime.compareTo(end) <= 0) {
-          List eventDetails = new ArrayList();
-          eventDetails.add(event.subject);
-          eventDetails.add(event.startDateTime);
-          eventDetails.add(event.endDateTime);
-          eventDetails.add(event.location);
-          result.add(eventDetails);
-        }
-      }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.compareTo(start) >= 0
-                  && singleEvent.endDateTime.compareTo(end) <= 0) {
-            List eventDetails = new ArrayList();
-            eventDetails.add(singleEvent.subject);
-            eventDetails.add(singleEvent.startDateTime);
-            eventDetails.add(singleEvent.endDateTime);
-            eventDetails.add(singleEvent.location);
-            result.add(eventDetails);
-          }
-        }
-      }
-    }
+    forEachEventBetween(start, end, (subject, from, to, description, location, isPublic) -> {
+      result.add(toRow(subject, from, to, location));
+    });
     return result;
   }
 
@@ -363,24 +1076,9 @@ public class CalendarModel implements ICalendarModel {
 
   @Override
   public boolean isBusy(LocalDateTime dateTime) {
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        if (event.startDateTime.compareTo(dateTime) <= 0
-                && event.endDateTime.compareTo(dateTime) > 0) {
-          return true;
-        }
-      }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          if (singleEvent.startDateTime.compareTo(dateTime) <= 0
-                  && singleEvent.endDateTime.compareTo(dateTime) > 0) {
-            return true;
-          }
-        }
-      }
-    }
-    return false;
+    ModelVersion current = version;
+    LocalDateTime stored = current.toStored(dateTime);
+    return current.anyOverlapping(stored, stored.plusNanos(1));
   }
 
   /**
@@ -392,36 +1090,18 @@ public class CalendarModel implements ICalendarModel {
   public List<List> exportCalendar() throws Exception {
     List<List> exportEvents = new ArrayList<>();
 
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        List eventDetails = new ArrayList();
-
-        eventDetails.add(event.subject);
-        eventDetails.add(event.startDateTime.toLocalDate());
-        eventDetails.add(event.startDateTime.toLocalTime());
-        eventDetails.add(event.endDateTime.toLocalDate());
-        eventDetails.add(event.endDateTime.toLocalTime());
-        eventDetails.add(event.description);
-        eventDetails.add(event.location);
-        eventDetails.add(!event.isPublic);
-        exportEvents.add(eventDetails);
-      }
-      else {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          List eventDetails = new ArrayList();
-          eventDetails.add(singleEvent.subject);
-          eventDetails.add(singleEvent.startDateTime.toLocalDate());
-          eventDetails.add(singleEvent.startDateTime.toLocalTime());
-          eventDetails.add(singleEvent.endDateTime.toLocalDate());
-          eventDetails.add(singleEvent.endDateTime.toLocalTime());
-          eventDetails.add(singleEvent.description);
-          eventDetails.add(singleEvent.location);
-          eventDetails.add(!singleEvent.isPublic);
-          exportEvents.add(eventDetails);
-        }
-      }
-    }
+    forEachEvent((subject, start, end, description, location, isPublic) -> {
+      List eventDetails = new ArrayList();
+      eventDetails.add(subject);
+      eventDetails.add(start.toLocalDate());
+      eventDetails.add(start.toLocalTime());
+      eventDetails.add(end.toLocalDate());
+      eventDetails.add(end.toLocalTime());
+      eventDetails.add(description);
+      eventDetails.add(location);
+      eventDetails.add(!isPublic);
+      exportEvents.add(eventDetails);
+    });
     return exportEvents;
   }
-}
\ No newline at end of file
+}
@@ -2,18 +2,22 @@ package model;
 
 import java.awt.*;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
 
 /**
  * Class to include calendarName and timezone on top of the CalendarModel.
+ * Events are stored in UTC and shown in the calendar's timezone. The name and timezone
+ * are changed under the calendar's write lock and may be read without it.
  */
 
 public class CalendarModelV2 extends CalendarModel implements ICalendarModelV2 {
 
-  String calendarName;
-  ZoneId timeZone;
+  volatile String calendarName;
+  volatile ZoneId timeZone;
   Color calendarColor;
+  private ZoneRules rules;
 
   private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
 
@@ -24,11 +28,25 @@ public class CalendarModelV2 extends CalendarModel implements ICalendarModelV2 {
    */
 
   public CalendarModelV2(String calendarName, ZoneId timeZone, Color calendarColor) {
-    super();
+    this(calendarName, timeZone, calendarColor, false);
+  }
+
+  /**
+   * Constructs an empty calendar model, optionally in compact mode.
+   * @param calendarName The name of the calendar.
+   * @param timeZone The timezone designated to the calendar.
+   * @param calendarColor The color of the calendar.
+   * @param compactStorage true to keep plain single events in compact form.
+   */
+
+  public CalendarModelV2(String calendarName, ZoneId timeZone, Color calendarColor,
+                         boolean compactStorage) {
+    super(compactStorage);
     this.calendarName = calendarName;
     this.timeZone = timeZone;
+    this.rules = timeZone.getRules();
     this.calendarColor = calendarColor;
-
+    publish();
   }
 
   /**
@@ -42,39 +60,46 @@ public class CalendarModelV2 extends CalendarModel implements ICalendarModelV2 {
   }
 
   /**
-   * Function to convert start and end times to the new timezone.
-   * @param event The event to be changed.
-   * @param newTimeZone The new timezone ID.
+   * Function to get the zone stored date times are expressed in.
+   * @return UTC, whatever the calendar's timezone.
    */
 
-  private void changeEventTime(CalendarEvent event, ZoneId newTimeZone) {
-    ZonedDateTime oldStartZdt = event.startDateTime.atZone(this.timeZone);
-    ZonedDateTime newStartZdt = oldStartZdt.withZoneSameInstant(newTimeZone);
-    event.startDateTime = newStartZdt.toLocalDateTime();
+  @Override
+  ZoneId viewZone() {
+    return ZoneOffset.UTC;
+  }
 
-    ZonedDateTime oldEndZdt = event.endDateTime.atZone(this.timeZone);
-    ZonedDateTime newEndZdt = oldEndZdt.withZoneSameInstant(newTimeZone);
-    event.endDateTime = newEndZdt.toLocalDateTime();
+  /**
+   * Function to get the zone the calendar presents its date times in.
+   * @return the calendar's timezone.
+   */
+
+  @Override
+  ZoneId displayZone() {
+    return timeZone;
+  }
+
+  /**
+   * Function to get the rules of the zone the calendar presents its date times in.
+   * @return the rules of the calendar's timezone.
+   */
+
+  @Override
+  ZoneRules displayRules() {
+    return rules;
   }
 
   /**
    * Function to change the time zone of the calendar.
+   * Events are stored in UTC and recurring events keep the zone their rule was written
+   * in, so only the zone the calendar is presented in changes.
    * @param newTimeZone The new timezone ID.
    */
 
   @Override
   public void changeCalendarTimeZone(ZoneId newTimeZone) {
-    for (CalendarEvent event : events) {
-      if (event instanceof SingleEvent) {
-        changeEventTime(event, newTimeZone);
-      }
-      else if (event instanceof RecurringEvent) {
-        RecurringEvent recurringEvent = (RecurringEvent) event;
-        for (SingleEvent singleEvent : recurringEvent.recurringEventList) {
-          changeEventTime(singleEvent, newTimeZone);
-        }
-      }
-    }
     this.timeZone = newTimeZone;
+    this.rules = newTimeZone.getRules();
+    publish();
   }
-}
\ No newline at end of file
+}
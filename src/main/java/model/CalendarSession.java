@@ -0,0 +1,511 @@
+package model;
+
+import java.awt.*;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import exception.EventConflictException;
+import exception.InvalidCommandException;
+
+/**
+ * Class for one client of a CalendarManager: it carries the client's active calendar,
+ * against which its event commands run. Sessions of the same manager share the calendars
+ * but switch between them independently, so one client's "use calendar" does not move
+ * another. A session may be shared between threads, though it is meant for one client.
+ * Sessions opened before a snapshot is loaded keep the calendar of the same name, or move
+ * to the current calendar of the snapshot if there is none.
+ */
+
+public class CalendarSession implements ICalendarModel {
+
+  private final CalendarManager manager;
+  private volatile CalendarModelV2 calendar;
+  private volatile Map<String, CalendarModelV2> resolvedIn;
+
+  /**
+   * Constructs a session of a manager.
+   * @param manager The manager whose calendars the session uses.
+   * @param calendar The calendar the session starts on.
+   * @param resolvedIn The calendars of the manager the calendar belongs to.
+   */
+
+  CalendarSession(CalendarManager manager, CalendarModelV2 calendar,
+                  Map<String, CalendarModelV2> resolvedIn) {
+    this.manager = manager;
+    use(calendar, resolvedIn);
+  }
+
+  /**
+   * Function to get the active calendar. If the manager loaded a snapshot since the
+   * calendar was chosen, the calendar of the same name is looked up in the loaded ones.
+   * @return The active calendar.
+   */
+
+  CalendarModelV2 calendar() {
+    Map<String, CalendarModelV2> calendars = manager.calendars();
+    if (resolvedIn != calendars) {
+      CalendarModelV2 renewed = calendars.get(calendar.calendarName);
+      use(renewed != null ? renewed : manager.initialCalendar(), calendars);
+    }
+    return calendar;
+  }
+
+  /**
+   * Function to make a calendar the active one.
+   * @param calendar The calendar.
+   * @param resolvedIn The calendars of the manager the calendar belongs to.
+   */
+
+  void use(CalendarModelV2 calendar, Map<String, CalendarModelV2> resolvedIn) {
+    this.calendar = calendar;
+    this.resolvedIn = resolvedIn;
+  }
+
+  /**
+   * Function to switch the active calendar of this session.
+   * @param calendarName The name of the calendar.
+   * @throws InvalidCommandException If no such calendar exists.
+   */
+
+  public void switchCalendar(String calendarName) throws InvalidCommandException {
+    Map<String, CalendarModelV2> calendars = manager.calendars();
+    CalendarModelV2 named = calendars.get(calendarName);
+    if (named == null) {
+      throw new InvalidCommandException("Calendar with the given name does not exist.");
+    }
+    use(named, calendars);
+  }
+
+  /**
+   * Function to copy an event to a new start time given in the source calendar's timezone.
+   * The copy keeps the length the event has in that timezone. Its times are stored in UTC,
+   * so it falls on the same instant in whichever calendar it is added to.
+   * @param source The version of the calendar the event is copied from.
+   * @param event The stored event to be copied.
+   * @param newStartDateTime The start time of the copy in the source calendar's timezone.
+   * @return the copy.
+   */
+
+  private static SingleEvent copyAt(ModelVersion source, CalendarEvent event,
+                                    LocalDateTime newStartDateTime) {
+    SingleEvent modifiedEvent = new SingleEvent((SingleEvent) event);
+    LocalDateTime newEndDateTime = newStartDateTime.plusMinutes(ChronoUnit.MINUTES
+            .between(source.toDisplay(event.startDateTime),
+                    source.toDisplay(event.endDateTime)));
+    modifiedEvent.startDateTime = source.toStored(newStartDateTime);
+    modifiedEvent.endDateTime = source.toStored(newEndDateTime);
+    return modifiedEvent;
+  }
+
+  /**
+   * Function to copy events of a given name and start time.
+   * @param eventName The name of the event to be modified.
+   * @param copyDate The start date time of the event.
+   * @param targetCalendar The target calendar.
+   * @param targetDateTime The target datetime.
+   * @return one row per copy, see {@link #addCopies(CalendarModelV2, List)}.
+   */
+
+  public List<List> copyEvents(String eventName, LocalDateTime copyDate, String targetCalendar,
+                               LocalDateTime targetDateTime) {
+    ModelVersion source = calendar().version();
+    CalendarModelV2 targetCalendarObject = manager.calendarNamed(targetCalendar);
+    List<SingleEvent> copies = new ArrayList<>();
+    targetCalendarObject.lock.writeLock().lock();
+    try {
+      LocalDateTime storedCopyDate = source.toStored(copyDate);
+      source.forEachStartingBetween(storedCopyDate, storedCopyDate, event -> {
+        if (event.subject.equals(eventName)) {
+          copies.add(copyAt(source, event, targetDateTime));
+        }
+      });
+      return addCopies(targetCalendarObject, copies);
+    }
+    finally {
+      targetCalendarObject.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to copy events on a given date.
+   * @param copyDate The date on which the events to be copied.
+   * @param targetCalendar The target calendar.
+   * @param targetDate The target datetime.
+   * @return one row per copy, see {@link #addCopies(CalendarModelV2, List)}.
+   */
+
+  public List<List> copyEvents(LocalDate copyDate, String targetCalendar, LocalDate targetDate) {
+    ModelVersion source = calendar().version();
+    CalendarModelV2 targetCalendarObject = manager.calendarNamed(targetCalendar);
+    List<SingleEvent> copies = new ArrayList<>();
+    targetCalendarObject.lock.writeLock().lock();
+    try {
+      LocalDateTime from = source.toStored(copyDate.atStartOfDay());
+      LocalDateTime to = source.toStored(copyDate.plusDays(1).atStartOfDay());
+      source.forEachStartingBetween(from, to.minusNanos(1), event -> {
+        LocalDateTime newStartDateTime = LocalDateTime.of(targetDate,
+                source.toDisplay(event.startDateTime).toLocalTime());
+        copies.add(copyAt(source, event, newStartDateTime));
+      });
+      return addCopies(targetCalendarObject, copies);
+    }
+    finally {
+      targetCalendarObject.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to copy events between on a given date.
+   * @param copyDateStart The start date of the copying period.
+   * @param copyDateEnd The end date of the copying period.
+   * @param targetCalendar The target calendar.
+   * @param targetDate The target datetime.
+   * @return one row per copy, see {@link #addCopies(CalendarModelV2, List)}.
+   */
+
+  public List<List> copyEvents(LocalDate copyDateStart, LocalDate copyDateEnd,
+                               String targetCalendar, LocalDate targetDate) {
+    ModelVersion source = calendar().version();
+    CalendarModelV2 targetCalendarObject = manager.calendarNamed(targetCalendar);
+    List<SingleEvent> copies = new ArrayList<>();
+    targetCalendarObject.lock.writeLock().lock();
+    try {
+      LocalDateTime from = source.toStored(copyDateStart.atStartOfDay());
+      LocalDateTime to = source.toStored(copyDateEnd.atStartOfDay());
+      source.forEachStartingBetween(from, to.minusNanos(1), event -> {
+        LocalDateTime start = source.toDisplay(event.startDateTime);
+        LocalDateTime newStartDateTime = LocalDateTime.of(targetDate, start.toLocalTime())
+                .plusDays(ChronoUnit.DAYS.between(copyDateStart, start.toLocalDate()));
+        copies.add(copyAt(source, event, newStartDateTime));
+      });
+      return addCopies(targetCalendarObject, copies);
+    }
+    finally {
+      targetCalendarObject.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to add the copies to the target calendar in one conflict pass and report on
+   * each of them.
+   * @param target The target calendar.
+   * @param copies The copies, with stored times.
+   * @return one row per copy in source order: subject, start and end in the target
+   *         calendar's timezone, location, and whether it was copied (false if it was
+   *         skipped because it conflicts with the target calendar).
+   */
+
+  private static List<List> addCopies(CalendarModelV2 target, List<SingleEvent> copies) {
+    List<CalendarEvent> rejected = target.createStoredEvents(copies);
+    List<List> results = new ArrayList<>(copies.size());
+    int next = 0;
+    for (SingleEvent copy : copies) {
+      boolean copied = next == rejected.size() || rejected.get(next) != copy;
+      if (!copied) {
+        next++;
+      }
+      List<Object> row = new ArrayList<>();
+      row.add(copy.subject);
+      row.add(target.toDisplay(copy.startDateTime));
+      row.add(target.toDisplay(copy.endDateTime));
+      row.add(copy.location);
+      row.add(copied);
+      results.add(row);
+    }
+    return results;
+  }
+
+  /**
+   * Function to find the earliest times at which several calendars are all free. The
+   * calendars store their events in UTC, so the busy times of each, read from its latest
+   * version, fall on one timeline whatever its timezone. The busy times of the calendars
+   * are merged in order of their starts in one sweep, which stops at the last free time
+   * wanted; each gap between them at least the duration long is a free time.
+   * @param calendarNames The names of the calendars.
+   * @param from The start of the window to search, in the active calendar's timezone.
+   * @param to The end of the window to search, in the active calendar's timezone.
+   * @param duration The shortest free time wanted.
+   * @param limit The most free times to return.
+   * @return one row per free time in chronological order: start and end in the active
+   *         calendar's timezone.
+   * @throws InvalidCommandException If a calendar does not exist.
+   */
+
+  public List<List> findFreeSlots(List<String> calendarNames, LocalDateTime from,
+                                  LocalDateTime to, Duration duration, int limit)
+          throws InvalidCommandException {
+    ModelVersion active = calendar().version();
+    LocalDateTime start = active.toStored(from);
+    LocalDateTime end = active.toStored(to);
+
+    List<List<CalendarEvent>> busy = new ArrayList<>(calendarNames.size());
+    for (String calendarName : calendarNames) {
+      List<CalendarEvent> events = new ArrayList<>();
+      manager.calendarNamed(calendarName).version().forEachOverlapping(start, end,
+              events::add);
+      busy.add(events);
+    }
+    PriorityQueue<int[]> next = new PriorityQueue<>(Math.max(1, busy.size()),
+            Comparator.comparing(cursor -> busy.get(cursor[0]).get(cursor[1]).startDateTime));
+    for (int i = 0; i < busy.size(); i++) {
+      if (!busy.get(i).isEmpty()) {
+        next.add(new int[] {i, 0});
+      }
+    }
+
+    List<List> slots = new ArrayList<>();
+    LocalDateTime freeFrom = start;
+    while (!next.isEmpty() && slots.size() < limit) {
+      int[] cursor = next.poll();
+      List<CalendarEvent> events = busy.get(cursor[0]);
+      CalendarEvent event = events.get(cursor[1]);
+      if (++cursor[1] < events.size()) {
+        next.add(cursor);
+      }
+      if (!freeFrom.plus(duration).isAfter(event.startDateTime)) {
+        slots.add(List.of(active.toDisplay(freeFrom), active.toDisplay(event.startDateTime)));
+      }
+      if (event.endDateTime.isAfter(freeFrom)) {
+        freeFrom = event.endDateTime;
+      }
+    }
+    if (slots.size() < limit && !freeFrom.plus(duration).isAfter(end)) {
+      slots.add(List.of(active.toDisplay(freeFrom), active.toDisplay(end)));
+    }
+    return slots;
+  }
+
+  /**
+   * Function to create single event. Control sent to the active calendar.
+   * @param event The single event to be created.
+   * @throws EventConflictException send back from CalendarModel.
+   */
+
+  @Override
+  public void createSingleEvent(CalendarEvent event) throws EventConflictException {
+    CalendarModelV2 calendar = calendar();
+    calendar.lock.writeLock().lock();
+    try {
+      calendar.createSingleEvent(event);
+    }
+    finally {
+      calendar.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to create many single events. Control sent to the active calendar.
+   * @param events The single events to be created.
+   * @return The events rejected because of a conflict.
+   */
+
+  @Override
+  public List<CalendarEvent> createSingleEvents(List<? extends CalendarEvent> events) {
+    CalendarModelV2 calendar = calendar();
+    calendar.lock.writeLock().lock();
+    try {
+      return calendar.createSingleEvents(events);
+    }
+    finally {
+      calendar.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to create recurring event. Control sent to the active calendar.
+   * @param event The recurring event to be created.
+   * @throws EventConflictException sent back from CalendarModel.
+   */
+
+  @Override
+  public void createRecurringEvent(CalendarEvent event) throws EventConflictException {
+    CalendarModelV2 calendar = calendar();
+    calendar.lock.writeLock().lock();
+    try {
+      calendar.createRecurringEvent(event);
+    }
+    finally {
+      calendar.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to edit events. Control sent to the active calendar.
+   * @param property The property of the event to modify.
+   * @param eventName The name of the event to be edited.
+   * @param startDateTime The start date and time of the event.
+   * @param endDateTime The end date and time of the event.
+   * @param newValue The new value to set.
+   * @throws Exception sent back from CalendarModel.
+   */
+
+  @Override
+  public void editEvents(String property, String eventName, LocalDateTime startDateTime,
+                         LocalDateTime endDateTime, String newValue) throws Exception {
+    CalendarModelV2 calendar = calendar();
+    calendar.lock.writeLock().lock();
+    try {
+      calendar.editEvents(property, eventName, startDateTime, endDateTime, newValue);
+    }
+    finally {
+      calendar.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to edit events. Control sent to the active calendar.
+   * @param property The property of the event to modify.
+   * @param eventName The name of the event to be edited.
+   * @param startDateTime The start date and time of the event.
+   * @param newValue The new value to be set.
+   * @throws Exception sent back from CalendarModel.
+   */
+
+  @Override
+  public void editEvents(String property, String eventName, LocalDateTime startDateTime,
+                         String newValue) throws Exception {
+    CalendarModelV2 calendar = calendar();
+    calendar.lock.writeLock().lock();
+    try {
+      calendar.editEvents(property, eventName, startDateTime, newValue);
+    }
+    finally {
+      calendar.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to edit events. Control sent to the active calendar.
+   * @param property The property of the event to modify.
+   * @param eventName The name of the event to be edited.
+   * @param newValue The new value to be set.
+   * @throws Exception sent back from CalendarModel.
+   */
+
+  @Override
+  public void editEvents(String property, String eventName, String newValue) throws Exception {
+    CalendarModelV2 calendar = calendar();
+    calendar.lock.writeLock().lock();
+    try {
+      calendar.editEvents(property, eventName, newValue);
+    }
+    finally {
+      calendar.lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Function to visit events on a particular date. Control sent to the active calendar.
+   * The visitor sees the calendar as it was when the call started, and may change it.
+   * @param date The date to check for events.
+   * @param visitor Receives each event.
+   */
+
+  @Override
+  public void forEachEventOn(LocalDate date, EventVisitor visitor) {
+    calendar().forEachEventOn(date, visitor);
+  }
+
+  /**
+   * Function to visit events between 2 dates. Control sent to the active calendar.
+   * The visitor sees the calendar as it was when the call started, and may change it.
+   * @param start The start of the time range.
+   * @param end The end of the time range.
+   * @param visitor Receives each event.
+   */
+
+  @Override
+  public void forEachEventBetween(LocalDateTime start, LocalDateTime end, EventVisitor visitor) {
+    calendar().forEachEventBetween(start, end, visitor);
+  }
+
+  /**
+   * Function to visit every event of the calendar. Control sent to the active calendar.
+   * The visitor sees the calendar as it was when the call started, and may change it.
+   * @param visitor Receives each event.
+   */
+
+  @Override
+  public void forEachEvent(EventVisitor visitor) {
+    calendar().forEachEvent(visitor);
+  }
+
+  /**
+   * Function to get events on a particular date. Control sent to the active calendar.
+   * @param date The date to check for events.
+   * @return The list of events.
+   */
+
+  @Override
+  public List<List> getEventsOn(LocalDate date) {
+    return calendar().getEventsOn(date);
+  }
+
+  /**
+   * Function to get events between 2 dates. Control sent to the active calendar.
+   * @param start The start of the time range.
+   * @param end The end of the time range.
+   * @return The list of events.
+   */
+
+  @Override
+  public List<List> getEventsBetween(LocalDateTime start, LocalDateTime end) {
+    return calendar().getEventsBetween(start, end);
+  }
+
+  /**
+   * Function to check if the calendar is busy at a datetime. Control sent to the active calendar.
+   * @param dateTime The date and time to check.
+   * @return True if busy, else False.
+   */
+
+  @Override
+  public boolean isBusy(LocalDateTime dateTime) {
+    return calendar().isBusy(dateTime);
+  }
+
+  /**
+   * Function to export calendar.
+   * @return The list of events to be exported.
+   * @throws Exception sent back from CalendarModel.
+   */
+
+  @Override
+  public List<List> exportCalendar() throws Exception {
+    return calendar().exportCalendar();
+  }
+
+  /**
+   * Function to get the active calendar's name. Takes no lock.
+   * @return The active calendar's name.
+   */
+
+  public String getActiveCalendarName() {
+    return calendar().calendarName;
+  }
+
+  /**
+   * Function to get the active calendar's timezone. Takes no lock.
+   * @return The active calendar's timezone.
+   */
+
+  public String getActiveCalendarTimeZone() {
+    return calendar().timeZone.getId();
+  }
+
+  /**
+   * Function to get the active calendar's color.
+   * @return The active calendar's color.
+   */
+
+  public Color getActiveCalendarColor() {
+    return calendar().calendarColor;
+  }
+}
@@ -0,0 +1,441 @@
+package model;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import exception.InvalidCommandException;
+
+/**
+ * Binary snapshot of every calendar of a manager. The file starts with a magic number and
+ * a format version, followed by a table of every distinct string (names, zones, subjects,
+ * descriptions and locations), so each event refers to its strings by index. Then come
+ * the calendars, each with its name, zone, color and stored events in creation order:
+ * single events as their times and strings, recurring events as their rule and overrides.
+ * Whole-minute date times, which is nearly all of them, take one long; the others are
+ * written as epoch seconds and nanoseconds. Since version 2 the times of single events and
+ * overrides are in UTC, as the calendars store them; version 1 files hold them in the
+ * timezone of their calendar and are converted when read.
+ */
+
+class CalendarSnapshot {
+
+  private static final int MAGIC = 0x43414C53;
+  private static final int VERSION = 2;
+  private static final int LOCAL_TIMES_VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  private static final int PUBLIC = 1;
+  private static final int RECURRING = 2;
+  private static final int ENTIRE_DAY = 4;
+  private static final int EXACT_TIMES = 8;
+
+  /**
+   * The calendars read from a snapshot.
+   */
+
+  static class Contents {
+    final Map<String, CalendarModelV2> calendars = new HashMap<>();
+    CalendarModelV2 current;
+  }
+
+  /**
+   * Writes a snapshot of the given calendars.
+   * @param calendars the calendars, by name.
+   * @param current the calendar in use.
+   * @param path the file to be written, replaced if it exists. It is forced to disk before
+   *             this returns.
+   * @throws IOException if the file cannot be written.
+   */
+
+  static void write(Map<String, CalendarModelV2> calendars, CalendarModelV2 current, Path path)
+          throws IOException {
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    for (CalendarModelV2 calendar : calendars.values()) {
+      intern(strings, calendar.calendarName);
+      intern(strings, calendar.timeZone.getId());
+      forEachStored(calendar, event -> {
+        internEvent(strings, event);
+        if (event instanceof RecurringEvent) {
+          RecurringEvent series = (RecurringEvent) event;
+          if (series.zone != null) {
+            intern(strings, series.zone.getId());
+          }
+          for (SingleEvent override : series.overrides.values()) {
+            internEvent(strings, override);
+          }
+        }
+      });
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      Output out = new Output(channel);
+      out.putInt(MAGIC);
+      out.putInt(VERSION);
+      out.putInt(strings.size());
+      for (String value : strings.keySet()) {
+        out.putString(value);
+      }
+
+      out.putInt(calendars.size());
+      out.putInt(strings.get(current.calendarName));
+      for (CalendarModelV2 calendar : calendars.values()) {
+        out.putInt(strings.get(calendar.calendarName));
+        out.putInt(strings.get(calendar.timeZone.getId()));
+        out.putInt(calendar.calendarColor.getRGB());
+        out.putInt(calendar.version().storedCount());
+        forEachStored(calendar, event -> writeEvent(out, strings, event));
+      }
+      out.flush();
+      channel.force(true);
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Reads a snapshot back into new calendars.
+   * @param path the file to be read.
+   * @param compactStorage true to keep plain single events in compact form.
+   * @return the calendars and the one in use.
+   * @throws IOException if the file cannot be read.
+   * @throws InvalidCommandException if the file is not a snapshot of a supported version.
+   */
+
+  static Contents read(Path path, boolean compactStorage) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new InvalidCommandException("Snapshot file is too large.");
+      }
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (in.remaining() < 8 || in.getInt() != MAGIC) {
+        throw new InvalidCommandException("Not a calendar snapshot.");
+      }
+      int version = in.getInt();
+      if (version != VERSION && version != LOCAL_TIMES_VERSION) {
+        throw new InvalidCommandException("Unsupported snapshot version " + version + ".");
+      }
+
+      String[] strings = new String[in.getInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        strings[i] = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      Contents contents = new Contents();
+      TimeDecoder times = new TimeDecoder();
+      int calendarCount = in.getInt();
+      String currentName = strings[in.getInt()];
+      for (int c = 0; c < calendarCount; c++) {
+        String name = strings[in.getInt()];
+        ZoneId zone = ZoneId.of(strings[in.getInt()]);
+        Color color = new Color(in.getInt(), true);
+        CalendarModelV2 calendar = new CalendarModelV2(name, zone, color, compactStorage);
+        int count = in.getInt();
+        List<CalendarEvent> events = new ArrayList<>(Math.min(count, in.remaining()));
+        for (int i = 0; i < count; i++) {
+          events.add(readEvent(in, strings, times));
+        }
+        if (version == LOCAL_TIMES_VERSION) {
+          storeLocalTimes(calendar, events);
+        }
+        calendar.addEvents(events);
+        contents.calendars.put(name, calendar);
+      }
+      contents.current = contents.calendars.get(currentName);
+      if (contents.current == null || in.hasRemaining()) {
+        throw new InvalidCommandException("Snapshot file is damaged.");
+      }
+      return contents;
+    }
+    catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException
+           | IllegalArgumentException | DateTimeException e) {
+      throw new InvalidCommandException("Snapshot file is damaged.");
+    }
+  }
+
+  /**
+   * Converts the times of single events and overrides read from a version 1 file, which
+   * are in the timezone of the calendar, to UTC. Recurrence rules keep their own zone.
+   */
+
+  private static void storeLocalTimes(CalendarModelV2 calendar, List<CalendarEvent> events) {
+    for (CalendarEvent event : events) {
+      if (event instanceof RecurringEvent) {
+        for (SingleEvent override : ((RecurringEvent) event).overrides.values()) {
+          override.startDateTime = calendar.toStored(override.startDateTime);
+          override.endDateTime = calendar.toStored(override.endDateTime);
+        }
+      }
+      else {
+        event.startDateTime = calendar.toStored(event.startDateTime);
+        event.endDateTime = calendar.toStored(event.endDateTime);
+      }
+    }
+  }
+
+  /**
+   * Visits the stored events of a calendar: the single and recurring events in creation
+   * order, then the compact events.
+   */
+
+  private static void forEachStored(CalendarModelV2 calendar, Consumer<CalendarEvent> visitor) {
+    calendar.version().forEachStored(visitor);
+  }
+
+  /**
+   * Adds the strings of an event to the string table.
+   */
+
+  private static void internEvent(Map<String, Integer> strings, CalendarEvent event) {
+    intern(strings, event.subject);
+    intern(strings, event.description);
+    intern(strings, event.location);
+  }
+
+  /**
+   * Adds a string to the string table. Null is not stored; it is written as index -1.
+   */
+
+  private static void intern(Map<String, Integer> strings, String value) {
+    if (value != null) {
+      strings.putIfAbsent(value, strings.size());
+    }
+  }
+
+  /**
+   * Writes a single or recurring event.
+   */
+
+  private static void writeEvent(Output out, Map<String, Integer> strings, CalendarEvent event) {
+    if (event instanceof RecurringEvent) {
+      RecurringEvent series = (RecurringEvent) event;
+      writeFields(out, strings, series, RECURRING | (series.isEntireDay ? ENTIRE_DAY : 0));
+      out.putByte(series.weekDayMask);
+      out.putLong(series.startTime.toNanoOfDay());
+      out.putLong(series.endTime.toNanoOfDay());
+      out.putLong(series.firstDate.toEpochDay());
+      out.putLong(series.lastDate.toEpochDay());
+      out.putInt(series.zone == null ? -1 : strings.get(series.zone.getId()));
+      out.putInt(series.overrides.size());
+      for (Map.Entry<LocalDate, SingleEvent> override : series.overrides.entrySet()) {
+        out.putLong(override.getKey().toEpochDay());
+        writeFields(out, strings, override.getValue(), 0);
+      }
+    }
+    else {
+      writeFields(out, strings, event, 0);
+    }
+  }
+
+  /**
+   * Writes the flags, strings and times shared by every event.
+   */
+
+  private static void writeFields(Output out, Map<String, Integer> strings, CalendarEvent event,
+                                  int flags) {
+    boolean exact = !isWholeMinute(event.startDateTime) || !isWholeMinute(event.endDateTime);
+    out.putByte(flags | (event.isPublic ? PUBLIC : 0) | (exact ? EXACT_TIMES : 0));
+    out.putInt(indexOf(strings, event.subject));
+    out.putInt(indexOf(strings, event.description));
+    out.putInt(indexOf(strings, event.location));
+    if (exact) {
+      out.putLong(event.startDateTime.toEpochSecond(ZoneOffset.UTC));
+      out.putInt(event.startDateTime.getNano());
+      out.putLong(event.endDateTime.toEpochSecond(ZoneOffset.UTC));
+      out.putInt(event.endDateTime.getNano());
+    }
+    else {
+      out.putLong(event.startDateTime.toEpochSecond(ZoneOffset.UTC) / 60);
+      out.putLong(event.endDateTime.toEpochSecond(ZoneOffset.UTC) / 60);
+    }
+  }
+
+  /**
+   * Reads a single or recurring event.
+   */
+
+  private static CalendarEvent readEvent(ByteBuffer in, String[] strings, TimeDecoder times) {
+    int flags = in.get();
+    SingleEvent event = readFields(in, strings, flags, times);
+    if ((flags & RECURRING) == 0) {
+      return event;
+    }
+
+    int weekDayMask = in.get();
+    LocalTime startTime = LocalTime.ofNanoOfDay(in.getLong());
+    LocalTime endTime = LocalTime.ofNanoOfDay(in.getLong());
+    LocalDate firstDate = LocalDate.ofEpochDay(in.getLong());
+    LocalDate lastDate = LocalDate.ofEpochDay(in.getLong());
+    int zone = in.getInt();
+    RecurringEvent series = new RecurringEvent(event, weekDayMask, startTime, endTime,
+            (flags & ENTIRE_DAY) != 0, firstDate, lastDate,
+            zone < 0 ? null : ZoneId.of(strings[zone]));
+    int overrides = in.getInt();
+    for (int i = 0; i < overrides; i++) {
+      LocalDate date = LocalDate.ofEpochDay(in.getLong());
+      SingleEvent override = readFields(in, strings, in.get(), times);
+      override.series = series;
+      override.occurrenceDate = date;
+      series.overrides.put(date, override);
+    }
+    return series;
+  }
+
+  /**
+   * Reads the strings and times shared by every event, the flags already read.
+   */
+
+  private static SingleEvent readFields(ByteBuffer in, String[] strings, int flags,
+                                        TimeDecoder times) {
+    String subject = stringAt(strings, in.getInt());
+    String description = stringAt(strings, in.getInt());
+    String location = stringAt(strings, in.getInt());
+    LocalDateTime start;
+    LocalDateTime end;
+    if ((flags & EXACT_TIMES) != 0) {
+      start = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+      end = LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+    else {
+      start = times.ofMinute(in.getLong());
+      end = times.ofMinute(in.getLong());
+    }
+    return new SingleEvent(subject, start, end, description, location,
+            (flags & PUBLIC) != 0);
+  }
+
+  /**
+   * Returns the index of a string in the table, -1 for null.
+   */
+
+  private static int indexOf(Map<String, Integer> strings, String value) {
+    return value == null ? -1 : strings.get(value);
+  }
+
+  /**
+   * Returns the string at an index of the table, null for -1.
+   */
+
+  private static String stringAt(String[] strings, int index) {
+    return index < 0 ? null : strings[index];
+  }
+
+  /**
+   * Checks if a date time has no seconds or smaller fields.
+   */
+
+  private static boolean isWholeMinute(LocalDateTime dateTime) {
+    return dateTime.getSecond() == 0 && dateTime.getNano() == 0;
+  }
+
+  /**
+   * Turns epoch minutes back into date times, sharing the date and time parts between
+   * events: consecutive events mostly fall on the same few days, and a day has only
+   * 1440 distinct minutes.
+   */
+
+  private static class TimeDecoder {
+    private final LocalTime[] minutes = new LocalTime[24 * 60];
+    private long day = Long.MIN_VALUE;
+    private LocalDate date;
+
+    LocalDateTime ofMinute(long epochMinute) {
+      long minuteDay = Math.floorDiv(epochMinute, 24 * 60);
+      int minuteOfDay = Math.floorMod(epochMinute, 24 * 60);
+      if (minuteDay != day) {
+        date = LocalDate.ofEpochDay(minuteDay);
+        day = minuteDay;
+      }
+      LocalTime time = minutes[minuteOfDay];
+      if (time == null) {
+        time = LocalTime.of(minuteOfDay / 60, minuteOfDay % 60);
+        minutes[minuteOfDay] = time;
+      }
+      return LocalDateTime.of(date, time);
+    }
+  }
+
+  /**
+   * Buffered writer of primitive values to a channel. Failures are passed on unchecked,
+   * so values can be written from the event visitors.
+   */
+
+  private static class Output {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    Output(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void putByte(int value) {
+      reserve(1).put((byte) value);
+    }
+
+    void putInt(int value) {
+      reserve(4).putInt(value);
+    }
+
+    void putLong(long value) {
+      reserve(8).putLong(value);
+    }
+
+    void putString(String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      putInt(bytes.length);
+      if (bytes.length > buffer.capacity()) {
+        flush();
+        write(ByteBuffer.wrap(bytes));
+      }
+      else {
+        reserve(bytes.length).put(bytes);
+      }
+    }
+
+    void flush() {
+      buffer.flip();
+      write(buffer);
+      buffer.clear();
+    }
+
+    private ByteBuffer reserve(int bytes) {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+      return buffer;
+    }
+
+    private void write(ByteBuffer bytes) {
+      try {
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,516 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Compact storage for plain single events, kept as primitive columns instead of objects.
+ * Start and end date times are epoch minutes in long arrays and the strings are ids into
+ * a dictionary, so an occurrence costs a few dozen bytes and a scan walks contiguous arrays.
+ * The columns are split into sorted runs whose sizes roughly double from the newest to the
+ * oldest, and two runs are merged once the newer one grows as large as the older one,
+ * which keeps inserts cheap and every query at a binary search per run.
+ * Events are handed out as detached {@link SingleEvent} views built on demand; a slot is
+ * never edited in place, it is removed and stored again as an object by the model.
+ *
+ * <p>A store hands out read-only snapshots of itself. The sorted runs are never written
+ * after they are built except for their tombstones, which are copied before a removal;
+ * the head run is copied before the first insert that follows a snapshot.</p>
+ */
+
+class CompactEventStore {
+
+  private static final int HEAD_CAPACITY = 256;
+
+  private final Dictionary strings;
+  private final List<Run> runs;
+  private Run head;
+  private boolean headShared;
+  private int size;
+
+  /**
+   * Constructs an empty store.
+   */
+
+  CompactEventStore() {
+    this.strings = new Dictionary();
+    this.runs = new ArrayList<>();
+    this.head = new Run(HEAD_CAPACITY);
+  }
+
+  /**
+   * Constructs a snapshot sharing the runs of another store.
+   */
+
+  private CompactEventStore(Dictionary strings, List<Run> runs, Run head, int size) {
+    this.strings = strings;
+    this.runs = runs;
+    this.head = head;
+    this.size = size;
+  }
+
+  /**
+   * One sorted run of occurrences. Removed slots stay in place with a tombstone until the
+   * run is merged.
+   */
+
+  private static class Run {
+    long[] starts;
+    long[] ends;
+    int[] subjects;
+    int[] descriptions;
+    int[] locations;
+    BitSet isPublic;
+    BitSet removed;
+    int count;
+    int live;
+    long maxDuration;
+
+    Run(int capacity) {
+      this.starts = new long[capacity];
+      this.ends = new long[capacity];
+      this.subjects = new int[capacity];
+      this.descriptions = new int[capacity];
+      this.locations = new int[capacity];
+      this.isPublic = new BitSet(capacity);
+      this.removed = new BitSet(capacity);
+    }
+
+    /**
+     * Copies a run. The columns are shared unless they are copied as well; the
+     * tombstones are always copied.
+     */
+
+    Run(Run other, boolean copyColumns) {
+      this.starts = copyColumns ? other.starts.clone() : other.starts;
+      this.ends = copyColumns ? other.ends.clone() : other.ends;
+      this.subjects = copyColumns ? other.subjects.clone() : other.subjects;
+      this.descriptions = copyColumns ? other.descriptions.clone() : other.descriptions;
+      this.locations = copyColumns ? other.locations.clone() : other.locations;
+      this.isPublic = copyColumns ? (BitSet) other.isPublic.clone() : other.isPublic;
+      this.removed = (BitSet) other.removed.clone();
+      this.count = other.count;
+      this.live = other.live;
+      this.maxDuration = other.maxDuration;
+    }
+
+    /**
+     * Finds the first slot starting at or after a minute.
+     */
+
+    int lowerBound(long minute) {
+      int low = 0;
+      int high = count;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (starts[mid] < minute) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Copies a slot of another run to the end of this run.
+     */
+
+    void append(Run from, int slot) {
+      starts[count] = from.starts[slot];
+      ends[count] = from.ends[slot];
+      subjects[count] = from.subjects[slot];
+      descriptions[count] = from.descriptions[slot];
+      locations[count] = from.locations[slot];
+      isPublic.set(count, from.isPublic.get(slot));
+      maxDuration = Math.max(maxDuration, ends[count] - starts[count]);
+      count++;
+      live++;
+    }
+  }
+
+  /**
+   * Dictionary of the strings used by the stored events. A null string has id -1.
+   * Strings are only ever appended, so a snapshot shares the array of values and reads
+   * the ids it knew about.
+   */
+
+  private static class Dictionary {
+    private final Map<String, Integer> ids;
+    private String[] values;
+    private int count;
+
+    Dictionary() {
+      this.ids = new HashMap<>();
+      this.values = new String[16];
+    }
+
+    private Dictionary(String[] values, int count) {
+      this.ids = null;
+      this.values = values;
+      this.count = count;
+    }
+
+    Dictionary snapshot() {
+      return new Dictionary(values, count);
+    }
+
+    int idOf(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer id = ids.get(value);
+      if (id == null) {
+        if (count == values.length) {
+          values = Arrays.copyOf(values, 2 * count);
+        }
+        id = count;
+        values[count++] = value;
+        ids.put(value, id);
+      }
+      return id;
+    }
+
+    int find(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer id = ids.get(value);
+      return id == null ? -2 : id;
+    }
+
+    String valueOf(int id) {
+      return id < 0 ? null : values[id];
+    }
+  }
+
+  /**
+   * Returns the number of events held by the store.
+   * @return the number of events.
+   */
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns a read-only store with the current events that later changes to this store
+   * do not affect.
+   * @return the snapshot.
+   */
+
+  CompactEventStore snapshot() {
+    headShared = true;
+    return new CompactEventStore(strings.snapshot(), new ArrayList<>(runs), head, size);
+  }
+
+  /**
+   * Checks if an event can be kept in compact form: a single event that is not an edited
+   * occurrence of a recurring event, with whole-minute start and end date times.
+   * @param event the event to check.
+   * @return true if the store can hold the event.
+   */
+
+  static boolean accepts(CalendarEvent event) {
+    return event instanceof SingleEvent && ((SingleEvent) event).series == null
+            && isWholeMinute(event.startDateTime) && isWholeMinute(event.endDateTime);
+  }
+
+  /**
+   * Copies an event into the store. The event object itself is not kept.
+   * @param event the event to be stored, see {@link #accepts}.
+   */
+
+  void add(CalendarEvent event) {
+    if (headShared) {
+      head = new Run(head, true);
+      headShared = false;
+    }
+    long start = toMinute(event.startDateTime);
+    int slot = head.lowerBound(start + 1);
+    int tail = head.count - slot;
+    System.arraycopy(head.starts, slot, head.starts, slot + 1, tail);
+    System.arraycopy(head.ends, slot, head.ends, slot + 1, tail);
+    System.arraycopy(head.subjects, slot, head.subjects, slot + 1, tail);
+    System.arraycopy(head.descriptions, slot, head.descriptions, slot + 1, tail);
+    System.arraycopy(head.locations, slot, head.locations, slot + 1, tail);
+    for (int i = head.count; i > slot; i--) {
+      head.isPublic.set(i, head.isPublic.get(i - 1));
+      head.removed.set(i, head.removed.get(i - 1));
+    }
+
+    head.starts[slot] = start;
+    head.ends[slot] = toMinute(event.endDateTime);
+    head.subjects[slot] = strings.idOf(event.subject);
+    head.descriptions[slot] = strings.idOf(event.description);
+    head.locations[slot] = strings.idOf(event.location);
+    head.isPublic.set(slot, event.isPublic);
+    head.removed.clear(slot);
+    head.maxDuration = Math.max(head.maxDuration, head.ends[slot] - start);
+    head.count++;
+    head.live++;
+    size++;
+
+    if (head.count == HEAD_CAPACITY) {
+      pushHead();
+    }
+  }
+
+  /**
+   * Checks if any stored event overlaps the given interval.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @return true if an overlapping event exists.
+   */
+
+  boolean anyOverlapping(LocalDateTime start, LocalDateTime end) {
+    return anyOverlapping(start, end, null);
+  }
+
+  /**
+   * Checks if any stored event overlapping the given interval also passes a test.
+   * Views are only built for the overlapping events.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @param test applied to a view of each overlapping event, null to accept any.
+   * @return true if an overlapping event passes the test.
+   */
+
+  boolean anyOverlapping(LocalDateTime start, LocalDateTime end, Predicate<CalendarEvent> test) {
+    long from = toMinute(start);
+    long to = ceilMinute(end);
+    for (Run run : allRuns()) {
+      int last = run.lowerBound(to);
+      for (int i = run.lowerBound(from - run.maxDuration); i < last; i++) {
+        if (run.ends[i] > from && !run.removed.get(i)
+                && (test == null || test.test(view(run, i)))) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Visits a view of every stored event that overlaps the given interval, run by run, so
+   * in chronological order only within each run.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @param visitor receives each view.
+   */
+
+  void forEachOverlapping(LocalDateTime start, LocalDateTime end,
+                          Consumer<CalendarEvent> visitor) {
+    long from = toMinute(start);
+    long to = ceilMinute(end);
+    for (Run run : allRuns()) {
+      int last = run.lowerBound(to);
+      for (int i = run.lowerBound(from - run.maxDuration); i < last; i++) {
+        if (run.ends[i] > from && !run.removed.get(i)) {
+          visitor.accept(view(run, i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Visits, in chronological order, a view of every stored event that starts within the
+   * given bounds. The runs are merged on the fly.
+   * @param from earliest start date time, inclusive.
+   * @param to latest start date time, inclusive.
+   * @param visitor receives each view.
+   */
+
+  void forEachStartingBetween(LocalDateTime from, LocalDateTime to,
+                              Consumer<CalendarEvent> visitor) {
+    long first = ceilMinute(from);
+    long last = toMinute(to);
+    List<Run> all = allRuns();
+    int[] cursors = new int[all.size()];
+    int[] limits = new int[all.size()];
+    for (int r = 0; r < all.size(); r++) {
+      cursors[r] = all.get(r).lowerBound(first);
+      limits[r] = all.get(r).lowerBound(last + 1);
+    }
+
+    while (true) {
+      int next = -1;
+      for (int r = 0; r < all.size(); r++) {
+        Run run = all.get(r);
+        while (cursors[r] < limits[r] && run.removed.get(cursors[r])) {
+          cursors[r]++;
+        }
+        if (cursors[r] < limits[r]
+                && (next < 0 || run.starts[cursors[r]] < all.get(next).starts[cursors[next]])) {
+          next = r;
+        }
+      }
+      if (next < 0) {
+        return;
+      }
+      visitor.accept(view(all.get(next), cursors[next]++));
+    }
+  }
+
+  /**
+   * Visits a view of every stored event in chronological order.
+   * @param visitor receives each view.
+   */
+
+  void forEach(Consumer<CalendarEvent> visitor) {
+    forEachStartingBetween(LocalDateTime.MIN, LocalDateTime.MAX, visitor);
+  }
+
+  /**
+   * Removes the stored events with a subject that start within the given bounds and
+   * returns them as standalone events, so they can be edited as objects.
+   * @param subject the subject to look up.
+   * @param from earliest start date time, inclusive.
+   * @param to latest start date time, inclusive.
+   * @return the removed events, in no particular order.
+   */
+
+  List<SingleEvent> removeWithSubject(String subject, LocalDateTime from, LocalDateTime to) {
+    List<SingleEvent> taken = new ArrayList<>();
+    int id = strings.find(subject);
+    if (id == -2) {
+      return taken;
+    }
+    long first = ceilMinute(from);
+    long last = toMinute(to);
+    for (int r = 0; r <= runs.size(); r++) {
+      Run run = r < runs.size() ? runs.get(r) : head;
+      Run changed = null;
+      int limit = run.lowerBound(last + 1);
+      for (int i = run.lowerBound(first); i < limit; i++) {
+        if (run.subjects[i] == id && !run.removed.get(i)) {
+          if (changed == null) {
+            changed = new Run(run, run == head && headShared);
+          }
+          taken.add(view(run, i));
+          changed.removed.set(i);
+          changed.live--;
+          size--;
+        }
+      }
+      if (changed == null) {
+        continue;
+      }
+      if (r < runs.size()) {
+        runs.set(r, changed);
+      }
+      else {
+        head = changed;
+        headShared = false;
+      }
+    }
+    runs.removeIf(run -> run.live == 0);
+    return taken;
+  }
+
+  /**
+   * Returns the sorted runs together with the head run.
+   */
+
+  private List<Run> allRuns() {
+    List<Run> all = new ArrayList<>(runs.size() + 1);
+    all.addAll(runs);
+    if (head.live > 0) {
+      all.add(head);
+    }
+    return all;
+  }
+
+  /**
+   * Moves a full head run onto the list of runs, merging it with the newest runs for as
+   * long as they are no larger than the run being pushed.
+   */
+
+  private void pushHead() {
+    Run pushed = head;
+    head = new Run(HEAD_CAPACITY);
+    headShared = false;
+    while (!runs.isEmpty() && runs.get(runs.size() - 1).live <= pushed.live) {
+      pushed = merge(runs.remove(runs.size() - 1), pushed);
+    }
+    runs.add(pushed);
+  }
+
+  /**
+   * Merges two runs into a new run, dropping removed slots.
+   */
+
+  private static Run merge(Run older, Run newer) {
+    Run merged = new Run(older.live + newer.live);
+    int i = 0;
+    int j = 0;
+    while (i < older.count || j < newer.count) {
+      if (i < older.count && older.removed.get(i)) {
+        i++;
+      }
+      else if (j < newer.count && newer.removed.get(j)) {
+        j++;
+      }
+      else if (j == newer.count
+              || (i < older.count && older.starts[i] <= newer.starts[j])) {
+        merged.append(older, i++);
+      }
+      else {
+        merged.append(newer, j++);
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Builds a standalone view of one slot.
+   */
+
+  private SingleEvent view(Run run, int slot) {
+    return new SingleEvent(strings.valueOf(run.subjects[slot]), toDateTime(run.starts[slot]),
+            toDateTime(run.ends[slot]), strings.valueOf(run.descriptions[slot]),
+            strings.valueOf(run.locations[slot]), run.isPublic.get(slot));
+  }
+
+  /**
+   * Checks if a date time has no seconds or smaller fields.
+   */
+
+  private static boolean isWholeMinute(LocalDateTime dateTime) {
+    return dateTime.getSecond() == 0 && dateTime.getNano() == 0;
+  }
+
+  /**
+   * Converts a date time to epoch minutes, rounding down.
+   */
+
+  private static long toMinute(LocalDateTime dateTime) {
+    return Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60);
+  }
+
+  /**
+   * Converts a date time to epoch minutes, rounding up.
+   */
+
+  private static long ceilMinute(LocalDateTime dateTime) {
+    long minute = toMinute(dateTime);
+    return isWholeMinute(dateTime) ? minute : minute + 1;
+  }
+
+  /**
+   * Converts epoch minutes back to a date time.
+   */
+
+  private static LocalDateTime toDateTime(long minute) {
+    return LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC);
+  }
+}
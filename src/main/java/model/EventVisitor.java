@@ -0,0 +1,24 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Receives the events returned by a calendar query, one call per event.
+ * The details are passed as typed values, so no row object is built per event.
+ */
+
+public interface EventVisitor {
+
+  /**
+   * Visits one event.
+   * @param subject subject of event.
+   * @param startDateTime start date and time of event.
+   * @param endDateTime end date and time of event.
+   * @param description a brief description of event.
+   * @param location location where event takes place.
+   * @param isPublic whether event is public or private.
+   */
+
+  void visit(String subject, LocalDateTime startDateTime, LocalDateTime endDateTime,
+             String description, String location, boolean isPublic);
+}
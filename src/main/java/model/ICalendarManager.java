@@ -1,8 +1,10 @@
 package model;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.List;
 
 import exception.InvalidCommandException;
 
@@ -52,19 +54,22 @@ public interface ICalendarManager {
    * @param copyDate The start date time of the event.
    * @param targetCalendar The target calendar.
    * @param targetDateTime The target datetime.
+   * @return one row per copy: subject, start, end, location, and whether it was copied
+   *         (false if it was skipped because of a conflict).
    */
 
-  void copyEvents(String eventName, LocalDateTime copyDate, String targetCalendar,
-                  LocalDateTime targetDateTime);
+  List<List> copyEvents(String eventName, LocalDateTime copyDate, String targetCalendar,
+                        LocalDateTime targetDateTime);
 
   /**
    * Function to copy events on a given date.
    * @param copyDate The date on which the events to be copied.
    * @param targetCalendar The target calendar.
    * @param targetDate The target datetime.
+   * @return one row per copy, as for a single event.
    */
 
-  void copyEvents(LocalDate copyDate, String targetCalendar, LocalDate targetDate);
+  List<List> copyEvents(LocalDate copyDate, String targetCalendar, LocalDate targetDate);
 
   /**
    * Function to copy events between on a given date.
@@ -72,9 +77,41 @@ public interface ICalendarManager {
    * @param copyDateEnd The end date of the copying period.
    * @param targetCalendar The target calendar.
    * @param targetDate The target datetime.
+   * @return one row per copy, as for a single event.
    */
 
-  void copyEvents(LocalDate copyDateStart, LocalDate copyDateEnd,
-                  String targetCalendar, LocalDate targetDate);
+  List<List> copyEvents(LocalDate copyDateStart, LocalDate copyDateEnd,
+                        String targetCalendar, LocalDate targetDate);
+
+  /**
+   * Function to find the earliest times at which several calendars are all free.
+   * @param calendarNames The names of the calendars.
+   * @param from The start of the window to search, in the active calendar's timezone.
+   * @param to The end of the window to search, in the active calendar's timezone.
+   * @param duration The shortest free time wanted.
+   * @param limit The most free times to return.
+   * @return one row per free time in chronological order: start and end in the active
+   *         calendar's timezone.
+   * @throws InvalidCommandException If a calendar does not exist.
+   */
+
+  List<List> findFreeSlots(List<String> calendarNames, LocalDateTime from, LocalDateTime to,
+                           Duration duration, int limit) throws InvalidCommandException;
+
+  /**
+   * Function to save every calendar to a snapshot file.
+   * @param filePath The path of the snapshot file.
+   * @throws InvalidCommandException If the file cannot be written.
+   */
+
+  void saveSnapshot(String filePath) throws InvalidCommandException;
+
+  /**
+   * Function to replace every calendar with the ones saved in a snapshot file.
+   * @param filePath The path of the snapshot file.
+   * @throws InvalidCommandException If the file cannot be read or is not a snapshot.
+   */
+
+  void loadSnapshot(String filePath) throws InvalidCommandException;
 
 }
@@ -23,6 +23,16 @@ public interface ICalendarModel {
 
   void createSingleEvent(CalendarEvent event) throws EventConflictException;
 
+  /**
+   * Creates many single events at once. An event that conflicts with the calendar or
+   * with an earlier event of the batch is rejected, the others are added.
+   *
+   * @param events The single events to be created.
+   * @return The events that were rejected because of a conflict.
+   */
+
+  List<CalendarEvent> createSingleEvents(List<? extends CalendarEvent> events);
+
   /**
    * Creates a recurring event and adds it to the calendar.
    * @param event The recurring event to be created.
@@ -70,6 +80,33 @@ public interface ICalendarModel {
   void editEvents(String property, String eventName,
                   String newValue) throws Exception;
 
+  /**
+   * Visits all events occurring on a given date, in chronological order.
+   *
+   * @param date The date to check for events.
+   * @param visitor Receives each event scheduled on that date.
+   */
+
+  void forEachEventOn(LocalDate date, EventVisitor visitor);
+
+  /**
+   * Visits all events within a specified time range, in chronological order.
+   *
+   * @param start The start of the time range.
+   * @param end The end of the time range.
+   * @param visitor Receives each event occurring within the specified range.
+   */
+
+  void forEachEventBetween(LocalDateTime start, LocalDateTime end, EventVisitor visitor);
+
+  /**
+   * Visits every event of the calendar.
+   *
+   * @param visitor Receives each event.
+   */
+
+  void forEachEvent(EventVisitor visitor);
+
   /**
    * Retrieves all events occurring on a given date.
    *
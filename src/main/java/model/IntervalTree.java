@@ -0,0 +1,506 @@
+package model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Augmented interval tree over event occurrences, keyed on their start date time.
+ * Every node remembers the latest end date time found in its subtree, so an
+ * overlap query only descends into branches that can still contain a conflict.
+ * The tree is kept height balanced (AVL), which bounds a query to O(log n + k).
+ *
+ * <p>A tree can hand out snapshots of itself in constant time. Nodes are changed in place
+ * only while they belong to the tree alone; once a snapshot shares them, a change copies
+ * the nodes on its path instead, so the snapshot keeps the contents it was taken with.
+ * A tree that never takes a snapshot is never copied.</p>
+ */
+
+class IntervalTree {
+
+  private Node root;
+  private int size;
+  private Object owner = new Object();
+
+  /**
+   * A node holds every occurrence that starts at the same date time. It may be changed
+   * in place only by the tree that owns it.
+   */
+
+  private static class Node {
+    final Object owner;
+    LocalDateTime start;
+    List<CalendarEvent> events;
+    LocalDateTime ownEnd;
+    LocalDateTime maxEnd;
+    Node left;
+    Node right;
+    int height;
+
+    Node(Object owner, CalendarEvent event) {
+      this.owner = owner;
+      this.start = event.startDateTime;
+      this.events = new ArrayList<>(1);
+      this.events.add(event);
+      this.ownEnd = event.endDateTime;
+      this.maxEnd = event.endDateTime;
+      this.height = 1;
+    }
+
+    Node(Object owner, Node other) {
+      this.owner = owner;
+      this.start = other.start;
+      this.events = new ArrayList<>(other.events);
+      this.ownEnd = other.ownEnd;
+      this.maxEnd = other.maxEnd;
+      this.left = other.left;
+      this.right = other.right;
+      this.height = other.height;
+    }
+  }
+
+  /**
+   * Constructs an empty tree.
+   */
+
+  IntervalTree() {
+  }
+
+  /**
+   * Constructs a tree sharing the nodes of another one.
+   */
+
+  private IntervalTree(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns a tree with the current contents that later changes to this tree do not
+   * affect, in constant time.
+   * @return the snapshot.
+   */
+
+  IntervalTree snapshot() {
+    owner = new Object();
+    return new IntervalTree(root, size);
+  }
+
+  /**
+   * Returns the number of occurrences held by the tree.
+   * @return the number of occurrences.
+   */
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Removes every occurrence from the tree.
+   */
+
+  void clear() {
+    root = null;
+    size = 0;
+  }
+
+  /**
+   * Returns a node that this tree may change: the node itself if the tree owns it, or
+   * else a copy owned by the tree.
+   */
+
+  private Node editable(Node node) {
+    return node.owner == owner ? node : new Node(owner, node);
+  }
+
+  /**
+   * Adds an occurrence to the tree using its current start and end date time.
+   * @param event the occurrence to be added.
+   */
+
+  void add(CalendarEvent event) {
+    root = insert(root, event);
+    size++;
+  }
+
+  /**
+   * Replaces the contents of the tree with occurrences already sorted by start date time.
+   * The balanced tree is linked up directly in linear time instead of inserting the
+   * occurrences one by one; occurrences with the same start keep their order.
+   * @param sorted the occurrences, sorted by start date time.
+   */
+
+  void build(List<CalendarEvent> sorted) {
+    List<Node> nodes = new ArrayList<>();
+    Node last = null;
+    for (CalendarEvent event : sorted) {
+      if (last != null && last.start.equals(event.startDateTime)) {
+        last.events.add(event);
+        if (event.endDateTime.isAfter(last.ownEnd)) {
+          last.ownEnd = event.endDateTime;
+        }
+      }
+      else {
+        last = new Node(owner, event);
+        nodes.add(last);
+      }
+    }
+    root = link(nodes, 0, nodes.size());
+    size = sorted.size();
+  }
+
+  /**
+   * Removes an occurrence from the tree. The occurrence must still carry the
+   * start date time it was added with.
+   * @param event the occurrence to be removed.
+   * @return true if the occurrence was found and removed.
+   */
+
+  boolean remove(CalendarEvent event) {
+    int before = size;
+    root = delete(root, event);
+    return size < before;
+  }
+
+  /**
+   * Checks if any occurrence other than the ignored one overlaps the given interval.
+   * Touching intervals do not overlap, the same way {@link CalendarEvent#conflictsWith} works.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @param ignore occurrence to skip, may be null.
+   * @return true if an overlapping occurrence exists.
+   */
+
+  boolean anyOverlapping(LocalDateTime start, LocalDateTime end, CalendarEvent ignore) {
+    return anyOverlapping(root, start, end, event -> event != ignore);
+  }
+
+  /**
+   * Checks if any occurrence overlapping the given interval also passes a test.
+   * The search stops at the first occurrence that passes.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @param test applied to each overlapping occurrence.
+   * @return true if an overlapping occurrence passes the test.
+   */
+
+  boolean anyOverlapping(LocalDateTime start, LocalDateTime end, Predicate<CalendarEvent> test) {
+    return anyOverlapping(root, start, end, test);
+  }
+
+  /**
+   * Visits, in chronological order, every occurrence that starts within the given bounds.
+   * Only the branches whose start keys fall inside the bounds are walked, so the cost is
+   * O(log n + k) whatever the size of the tree.
+   * @param from earliest start date time, inclusive.
+   * @param to latest start date time, inclusive.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachStartingBetween(LocalDateTime from, LocalDateTime to,
+                              Consumer<CalendarEvent> visitor) {
+    forEachStartingBetween(root, from, to, visitor);
+  }
+
+  /**
+   * Visits, in chronological order of their starts, every occurrence that overlaps the
+   * given interval. Branches that end before the interval or start after it are skipped.
+   * Touching intervals do not overlap.
+   * @param start start of the interval.
+   * @param end end of the interval.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachOverlapping(LocalDateTime start, LocalDateTime end,
+                          Consumer<CalendarEvent> visitor) {
+    forEachOverlapping(root, start, end, visitor);
+  }
+
+  /**
+   * In-order overlap walk over one subtree.
+   */
+
+  private void forEachOverlapping(Node node, LocalDateTime start, LocalDateTime end,
+                                  Consumer<CalendarEvent> visitor) {
+    if (node == null || node.maxEnd.compareTo(start) <= 0) {
+      return;
+    }
+    forEachOverlapping(node.left, start, end, visitor);
+    if (node.start.compareTo(end) >= 0) {
+      return;
+    }
+    if (node.ownEnd.compareTo(start) > 0) {
+      for (CalendarEvent event : node.events) {
+        if (event.endDateTime.compareTo(start) > 0) {
+          visitor.accept(event);
+        }
+      }
+    }
+    forEachOverlapping(node.right, start, end, visitor);
+  }
+
+  /**
+   * In-order range walk over one subtree.
+   */
+
+  private void forEachStartingBetween(Node node, LocalDateTime from, LocalDateTime to,
+                                      Consumer<CalendarEvent> visitor) {
+    if (node == null) {
+      return;
+    }
+    boolean afterFrom = node.start.compareTo(from) >= 0;
+    boolean beforeTo = node.start.compareTo(to) <= 0;
+    if (afterFrom) {
+      forEachStartingBetween(node.left, from, to, visitor);
+    }
+    if (afterFrom && beforeTo) {
+      for (CalendarEvent event : node.events) {
+        visitor.accept(event);
+      }
+    }
+    if (beforeTo) {
+      forEachStartingBetween(node.right, from, to, visitor);
+    }
+  }
+
+  /**
+   * Overlap query over one subtree.
+   */
+
+  private boolean anyOverlapping(Node node, LocalDateTime start, LocalDateTime end,
+                                 Predicate<CalendarEvent> test) {
+    if (node == null || node.maxEnd.compareTo(start) <= 0) {
+      return false;
+    }
+    if (anyOverlapping(node.left, start, end, test)) {
+      return true;
+    }
+    if (node.start.compareTo(end) >= 0) {
+      return false;
+    }
+    if (bucketOverlaps(node, start, end, test)) {
+      return true;
+    }
+    return anyOverlapping(node.right, start, end, test);
+  }
+
+  /**
+   * Checks the occurrences of a single node against the interval.
+   */
+
+  private boolean bucketOverlaps(Node node, LocalDateTime start, LocalDateTime end,
+                                 Predicate<CalendarEvent> test) {
+    if (node.start.compareTo(end) >= 0 || node.ownEnd.compareTo(start) <= 0) {
+      return false;
+    }
+    for (CalendarEvent event : node.events) {
+      if (event.endDateTime.compareTo(start) > 0 && test.test(event)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Inserts an occurrence into a subtree.
+   * @return the new root of the subtree.
+   */
+
+  private Node insert(Node node, CalendarEvent event) {
+    if (node == null) {
+      return new Node(owner, event);
+    }
+    node = editable(node);
+    int cmp = event.startDateTime.compareTo(node.start);
+    if (cmp < 0) {
+      node.left = insert(node.left, event);
+    }
+    else if (cmp > 0) {
+      node.right = insert(node.right, event);
+    }
+    else {
+      node.events.add(event);
+      if (event.endDateTime.isAfter(node.ownEnd)) {
+        node.ownEnd = event.endDateTime;
+      }
+    }
+    return rebalance(node);
+  }
+
+  /**
+   * Deletes an occurrence from a subtree by identity.
+   * @return the new root of the subtree.
+   */
+
+  private Node delete(Node node, CalendarEvent event) {
+    if (node == null) {
+      return null;
+    }
+    int cmp = event.startDateTime.compareTo(node.start);
+    node = editable(node);
+    if (cmp < 0) {
+      node.left = delete(node.left, event);
+    }
+    else if (cmp > 0) {
+      node.right = delete(node.right, event);
+    }
+    else {
+      boolean removed = false;
+      for (int i = 0; i < node.events.size(); i++) {
+        if (node.events.get(i) == event) {
+          node.events.remove(i);
+          removed = true;
+          break;
+        }
+      }
+      if (!removed) {
+        return node;
+      }
+      size--;
+      if (!node.events.isEmpty()) {
+        node.ownEnd = latestEnd(node.events);
+      }
+      else if (node.left == null) {
+        return node.right;
+      }
+      else if (node.right == null) {
+        return node.left;
+      }
+      else {
+        Node successor = node.right;
+        while (successor.left != null) {
+          successor = successor.left;
+        }
+        node.start = successor.start;
+        node.events = successor.owner == owner ? successor.events
+                : new ArrayList<>(successor.events);
+        node.ownEnd = successor.ownEnd;
+        node.right = detachMin(node.right);
+      }
+    }
+    return rebalance(node);
+  }
+
+  /**
+   * Links a run of sorted nodes into a balanced subtree around its middle node.
+   * @return the root of the subtree.
+   */
+
+  private static Node link(List<Node> nodes, int from, int to) {
+    if (from == to) {
+      return null;
+    }
+    int mid = (from + to) >>> 1;
+    Node node = nodes.get(mid);
+    node.left = link(nodes, from, mid);
+    node.right = link(nodes, mid + 1, to);
+    update(node);
+    return node;
+  }
+
+  /**
+   * Unlinks the leftmost node of a subtree.
+   * @return the new root of the subtree.
+   */
+
+  private Node detachMin(Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    node = editable(node);
+    node.left = detachMin(node.left);
+    return rebalance(node);
+  }
+
+  /**
+   * Finds the latest end date time among the occurrences of one node.
+   */
+
+  private static LocalDateTime latestEnd(List<CalendarEvent> events) {
+    LocalDateTime latest = events.get(0).endDateTime;
+    for (CalendarEvent event : events) {
+      if (event.endDateTime.isAfter(latest)) {
+        latest = event.endDateTime;
+      }
+    }
+    return latest;
+  }
+
+  /**
+   * Height of a subtree, zero when empty.
+   */
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  /**
+   * Recomputes the height and the subtree end date time of a node from its children.
+   */
+
+  private static void update(Node node) {
+    node.height = 1 + Math.max(height(node.left), height(node.right));
+    LocalDateTime max = node.ownEnd;
+    if (node.left != null && node.left.maxEnd.isAfter(max)) {
+      max = node.left.maxEnd;
+    }
+    if (node.right != null && node.right.maxEnd.isAfter(max)) {
+      max = node.right.maxEnd;
+    }
+    node.maxEnd = max;
+  }
+
+  /**
+   * Rotates a subtree to the right.
+   */
+
+  private Node rotateRight(Node node) {
+    node = editable(node);
+    Node pivot = editable(node.left);
+    node.left = pivot.right;
+    pivot.right = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  /**
+   * Rotates a subtree to the left.
+   */
+
+  private Node rotateLeft(Node node) {
+    node = editable(node);
+    Node pivot = editable(node.right);
+    node.right = pivot.left;
+    pivot.left = node;
+    update(node);
+    update(pivot);
+    return pivot;
+  }
+
+  /**
+   * Restores the AVL balance of a node after one of its subtrees changed. The node must
+   * be owned by the tree.
+   * @return the new root of the subtree.
+   */
+
+  private Node rebalance(Node node) {
+    update(node);
+    int balance = height(node.left) - height(node.right);
+    if (balance > 1) {
+      if (height(node.left.left) < height(node.left.right)) {
+        node.left = rotateLeft(node.left);
+      }
+      return rotateRight(node);
+    }
+    if (balance < -1) {
+      if (height(node.right.right) < height(node.right.left)) {
+        node.right = rotateRight(node.right);
+      }
+      return rotateLeft(node);
+    }
+    return node;
+  }
+}
@@ -0,0 +1,227 @@
+package model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An immutable version of the events of a calendar, which queries read without locks.
+ * The calendar publishes a new version after every change. A version shares everything
+ * that did not change with the one before it: the interval tree and the creation order
+ * are persistent, the compact store shares its sorted runs and only the series that
+ * changed are copied. A reader sees the calendar as it was when it picked up the
+ * version, however long it reads and whatever is written meanwhile.
+ */
+
+final class ModelVersion {
+
+  private static final Comparator<CalendarEvent> BY_START =
+          Comparator.comparing(event -> event.startDateTime);
+
+  final IntervalTree occurrences;
+  final PersistentVector<Object> entries;
+  final CompactEventStore compactStore;
+  final RecurringEvent[] series;
+  final ZoneId viewZone;
+  private final ZoneRules displayRules;
+
+  /**
+   * Constructs a version from snapshots of the calendar's structures.
+   * @param occurrences the stored occurrences, single events and overrides.
+   * @param entries the creation order: single events, and for each family of series
+   *                an unmodifiable list of copies of its series.
+   * @param compactStore the compact events, or null outside compact mode.
+   * @param series copies of every series.
+   * @param viewZone the zone the stored date times are expressed in, or null.
+   * @param displayRules the rules of the zone the calendar presents its date times in,
+   *                     or null to present them as they are stored.
+   */
+
+  ModelVersion(IntervalTree occurrences, PersistentVector<Object> entries,
+               CompactEventStore compactStore, RecurringEvent[] series, ZoneId viewZone,
+               ZoneRules displayRules) {
+    this.occurrences = occurrences;
+    this.entries = entries;
+    this.compactStore = compactStore;
+    this.series = series;
+    this.viewZone = viewZone;
+    this.displayRules = displayRules;
+  }
+
+  /**
+   * Converts a date time in the display zone to the stored zone. A time skipped by a
+   * daylight saving gap moves forward by the length of the gap, and a time repeated by an
+   * overlap takes the earlier offset, as {@link java.time.ZonedDateTime} does.
+   * @param dateTime the date time as the calendar presents it.
+   * @return the date time as it is stored.
+   */
+
+  LocalDateTime toStored(LocalDateTime dateTime) {
+    if (displayRules == null) {
+      return dateTime;
+    }
+    return dateTime.minusSeconds(displayRules.getOffset(dateTime).getTotalSeconds());
+  }
+
+  /**
+   * Converts a stored date time to the display zone.
+   * @param dateTime the date time as it is stored.
+   * @return the date time as the calendar presents it.
+   */
+
+  LocalDateTime toDisplay(LocalDateTime dateTime) {
+    if (displayRules == null) {
+      return dateTime;
+    }
+    ZoneOffset offset = displayRules.isFixedOffset() ? displayRules.getOffset(Instant.EPOCH)
+            : displayRules.getOffset(dateTime.toInstant(ZoneOffset.UTC));
+    return dateTime.plusSeconds(offset.getTotalSeconds());
+  }
+
+  /**
+   * Checks if an interval overlaps any occurrence, stored or supplied by a rule.
+   * @param start start of the interval, in the stored zone.
+   * @param end end of the interval, in the stored zone.
+   * @return true if it overlaps.
+   */
+
+  boolean anyOverlapping(LocalDateTime start, LocalDateTime end) {
+    if (occurrences.anyOverlapping(start, end, (CalendarEvent) null)) {
+      return true;
+    }
+    if (compactStore != null && compactStore.anyOverlapping(start, end)) {
+      return true;
+    }
+    for (RecurringEvent recurringEvent : series) {
+      if (recurringEvent.overlaps(start, end, viewZone)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Visits the occurrences, stored or supplied by a rule, that start between two stored
+   * date times, in chronological order. Only the part of each index within the range is
+   * read and only the rule occurrences inside it are expanded.
+   * @param from earliest start, inclusive, in the stored zone.
+   * @param to latest start, inclusive, in the stored zone.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachStartingBetween(LocalDateTime from, LocalDateTime to,
+                              Consumer<CalendarEvent> visitor) {
+    List<CalendarEvent> found = new ArrayList<>();
+    occurrences.forEachStartingBetween(from, to, found::add);
+
+    int stored = found.size();
+    if (compactStore != null) {
+      compactStore.forEachStartingBetween(from, to, found::add);
+    }
+    for (RecurringEvent recurringEvent : series) {
+      recurringEvent.forEachRuleOccurrence(from, to, viewZone, found::add);
+    }
+    if (found.size() > stored) {
+      found.sort(BY_START);
+    }
+    found.forEach(visitor);
+  }
+
+  /**
+   * Visits the occurrences, stored or supplied by a rule, that overlap an interval of
+   * stored date times, in chronological order of their starts. Touching intervals do not
+   * overlap.
+   * @param start start of the interval, in the stored zone.
+   * @param end end of the interval, in the stored zone.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachOverlapping(LocalDateTime start, LocalDateTime end,
+                          Consumer<CalendarEvent> visitor) {
+    List<CalendarEvent> found = new ArrayList<>();
+    occurrences.forEachOverlapping(start, end, found::add);
+
+    int stored = found.size();
+    if (compactStore != null) {
+      compactStore.forEachOverlapping(start, end, found::add);
+    }
+    // a rule occurrence lasts at most a day, or a little more across a change of offset
+    LocalDateTime earliestStart = start.minusDays(2);
+    for (RecurringEvent recurringEvent : series) {
+      recurringEvent.forEachRuleOccurrence(earliestStart, end, viewZone, occurrence -> {
+        if (occurrence.startDateTime.compareTo(end) < 0
+                && occurrence.endDateTime.compareTo(start) > 0) {
+          found.add(occurrence);
+        }
+      });
+    }
+    if (found.size() > stored) {
+      found.sort(BY_START);
+    }
+    found.forEach(visitor);
+  }
+
+  /**
+   * Visits every occurrence in creation order, series expanded in place with their
+   * overrides. Compact events follow in chronological order.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachOccurrence(Consumer<CalendarEvent> visitor) {
+    forEachStored(event -> {
+      if (event instanceof RecurringEvent) {
+        ((RecurringEvent) event).forEachOccurrence(viewZone, visitor::accept);
+      }
+      else {
+        visitor.accept(event);
+      }
+    }, true);
+  }
+
+  /**
+   * Visits the stored events: the single events and series in creation order, then the
+   * compact events in chronological order.
+   * @param visitor receives each event.
+   */
+
+  void forEachStored(Consumer<CalendarEvent> visitor) {
+    forEachStored(visitor, true);
+  }
+
+  /**
+   * Counts the events {@link #forEachStored} visits.
+   * @return the number of single events and series.
+   */
+
+  int storedCount() {
+    int[] count = {compactStore == null ? 0 : compactStore.size()};
+    forEachStored(event -> count[0]++, false);
+    return count[0];
+  }
+
+  /**
+   * Visits the single events and series in creation order, and the compact events if
+   * asked to.
+   */
+
+  @SuppressWarnings("unchecked")
+  private void forEachStored(Consumer<CalendarEvent> visitor, boolean withCompact) {
+    entries.forEach(entry -> {
+      if (entry instanceof CalendarEvent) {
+        visitor.accept((CalendarEvent) entry);
+      }
+      else {
+        ((List<RecurringEvent>) entry).forEach(visitor);
+      }
+    });
+    if (withCompact && compactStore != null) {
+      compactStore.forEach(visitor);
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package model;
+
+import java.util.function.Consumer;
+
+/**
+ * A growable array kept as a tree of 32-slot nodes, so reading, replacing and appending
+ * an element touch one node per level.
+ *
+ * <p>Like {@link IntervalTree}, a vector hands out snapshots of itself in constant time.
+ * Nodes are changed in place only while they belong to the vector alone; once a snapshot
+ * shares them, a change copies the nodes on its path instead.</p>
+ * @param <T> the type of the elements.
+ */
+
+class PersistentVector<T> {
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  private Node root;
+  private int shift;
+  private int size;
+  private Object owner = new Object();
+
+  /**
+   * A node holds either elements, at the lowest level, or the nodes of the level below.
+   * It may be changed in place only by the vector that owns it.
+   */
+
+  private static class Node {
+    final Object owner;
+    final Object[] slots;
+
+    Node(Object owner, Object[] slots) {
+      this.owner = owner;
+      this.slots = slots;
+    }
+  }
+
+  /**
+   * Constructs an empty vector.
+   */
+
+  PersistentVector() {
+    this.root = new Node(owner, new Object[WIDTH]);
+  }
+
+  /**
+   * Constructs a vector sharing the nodes of another one.
+   */
+
+  private PersistentVector(Node root, int shift, int size) {
+    this.root = root;
+    this.shift = shift;
+    this.size = size;
+  }
+
+  /**
+   * Returns a vector with the current elements that later changes to this vector do not
+   * affect, in constant time.
+   * @return the snapshot.
+   */
+
+  PersistentVector<T> snapshot() {
+    owner = new Object();
+    return new PersistentVector<>(root, shift, size);
+  }
+
+  /**
+   * Returns the number of elements.
+   * @return the number of elements.
+   */
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the element at a position.
+   * @param index the position.
+   * @return the element.
+   */
+
+  @SuppressWarnings("unchecked")
+  T get(int index) {
+    checkIndex(index);
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Node) node.slots[(index >>> level) & MASK];
+    }
+    return (T) node.slots[index & MASK];
+  }
+
+  /**
+   * Replaces the element at a position.
+   * @param index the position.
+   * @param element the new element.
+   */
+
+  void set(int index, T element) {
+    checkIndex(index);
+    root = set(root, shift, index, element);
+  }
+
+  /**
+   * Appends an element.
+   * @param element the element.
+   */
+
+  void add(T element) {
+    if (size == 1 << (shift + BITS)) {
+      Node grown = new Node(owner, new Object[WIDTH]);
+      grown.slots[0] = root;
+      root = grown;
+      shift += BITS;
+    }
+    root = append(root, shift, size, element);
+    size++;
+  }
+
+  /**
+   * Visits every element in order.
+   * @param visitor receives each element.
+   */
+
+  void forEach(Consumer<? super T> visitor) {
+    forEach(root, shift, 0, visitor);
+  }
+
+  /**
+   * Replaces an element below a node.
+   * @return the node, or the copy that replaces it.
+   */
+
+  private Node set(Node node, int level, int index, T element) {
+    Node editable = editable(node);
+    int slot = (index >>> level) & MASK;
+    editable.slots[slot] = level == 0 ? element
+            : set((Node) node.slots[slot], level - BITS, index, element);
+    return editable;
+  }
+
+  /**
+   * Appends an element below a node, adding the nodes its position needs.
+   * @return the node, or the copy that replaces it.
+   */
+
+  private Node append(Node node, int level, int index, T element) {
+    Node editable = editable(node);
+    int slot = (index >>> level) & MASK;
+    if (level == 0) {
+      editable.slots[slot] = element;
+    }
+    else {
+      Node child = (Node) node.slots[slot];
+      if (child == null) {
+        child = new Node(owner, new Object[WIDTH]);
+      }
+      editable.slots[slot] = append(child, level - BITS, index, element);
+    }
+    return editable;
+  }
+
+  /**
+   * Visits the elements below a node that lie before the end of the vector.
+   * @return the position after the last element visited.
+   */
+
+  @SuppressWarnings("unchecked")
+  private int forEach(Node node, int level, int index, Consumer<? super T> visitor) {
+    for (int slot = 0; slot < WIDTH && index < size; slot++) {
+      if (level == 0) {
+        visitor.accept((T) node.slots[slot]);
+        index++;
+      }
+      else {
+        index = forEach((Node) node.slots[slot], level - BITS, index, visitor);
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Returns a node that this vector may change: the node itself if the vector owns it,
+   * or else a copy owned by the vector.
+   */
+
+  private Node editable(Node node) {
+    return node.owner == owner ? node : new Node(owner, node.slots.clone());
+  }
+
+  /**
+   * Fails if a position lies outside the vector.
+   */
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    }
+  }
+}
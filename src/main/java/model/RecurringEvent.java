@@ -1,16 +1,39 @@
 package model;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.ArrayList;
+import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 /**
  * Class represents a recurring event in the calendar.
+ * The series is stored as a rule (weekday mask, time of day and the first and last
+ * date it repeats on) instead of one object per occurrence. Occurrences are expanded
+ * only for the dates a caller asks about. Occurrences that were edited individually
+ * are kept as overrides keyed on the date the rule placed them on.
+ * A series that was split stays in one family with its tails, which keep the order they
+ * were split off in.
  */
 
 public class RecurringEvent extends CalendarEvent {
-  List<SingleEvent> recurringEventList;
+  private static final String WEEKDAY_CODES = "MTWRFSU";
+  private static final long NANOS_PER_DAY = 24L * 60 * 60 * 1_000_000_000L;
+
+  int weekDayMask;
+  LocalTime startTime;
+  LocalTime endTime;
+  boolean isEntireDay;
+  LocalDate firstDate;
+  LocalDate lastDate;
+  ZoneId zone;
+  TreeMap<LocalDate, SingleEvent> overrides;
+  List<RecurringEvent> family;
+  int seriesSlot;
 
   /**
    * Constructs a recurring event.
@@ -30,85 +53,445 @@ public class RecurringEvent extends CalendarEvent {
                         int n, LocalDateTime untilDateTime) {
     super(subject, startDateTime, endDateTime, description, location, isPublic);
 
-    boolean isEntireDay = startDateTime.toLocalTime().equals(LocalTime.MIDNIGHT)
+    this.isEntireDay = startDateTime.toLocalTime().equals(LocalTime.MIDNIGHT)
             && endDateTime.toLocalTime().equals(LocalTime.MIDNIGHT);
-    recurringEventList = new ArrayList<SingleEvent>();
-    LocalDateTime currentDateTime = startDateTime;
+    this.startTime = startDateTime.toLocalTime();
+    this.endTime = endDateTime.toLocalTime();
+    this.weekDayMask = toWeekDayMask(weekDays);
+    this.firstDate = startDateTime.toLocalDate();
+    this.overrides = new TreeMap<>();
 
     if (n == 0) {
-      while (currentDateTime.isBefore(untilDateTime)) {
-        if (checkWeekDayValidity(currentDateTime.getDayOfWeek().toString(), weekDays)) {
-          if (isEntireDay) {
-            recurringEventList.add(new SingleEvent(subject, LocalDateTime
-                    .of(currentDateTime.toLocalDate(), startDateTime.toLocalTime()),
-                    LocalDateTime.of(currentDateTime.plusDays(1)
-                            .toLocalDate(), endDateTime.toLocalTime()),
-                    description, location, isPublic));
-          }
-          else {
-            recurringEventList.add(new SingleEvent(subject,
-                    LocalDateTime.of(currentDateTime.toLocalDate(),
-                            startDateTime.toLocalTime()),
-                    LocalDateTime.of(currentDateTime.toLocalDate(), endDateTime.toLocalTime()),
-                    description, location, isPublic));
-          }
-        }
-        currentDateTime = currentDateTime.plusDays(1);
-      }
+      LocalDate limit = startTime.isBefore(untilDateTime.toLocalTime())
+              ? untilDateTime.toLocalDate() : untilDateTime.toLocalDate().minusDays(1);
+      this.lastDate = lastMatchOnOrBefore(limit);
     }
     else {
-      while (n > 0) {
-        if (checkWeekDayValidity(currentDateTime.getDayOfWeek().toString(), weekDays)) {
-          if (isEntireDay) {
-            recurringEventList.add(new SingleEvent(subject,
-                    LocalDateTime.of(currentDateTime.toLocalDate(),
-                            startDateTime.toLocalTime()),
-                    LocalDateTime.of(currentDateTime.plusDays(1).toLocalDate(),
-                            endDateTime.toLocalTime()),
-                    description, location, isPublic));
-          }
-          else {
-            recurringEventList.add(new SingleEvent(subject,
-                    LocalDateTime.of(currentDateTime.toLocalDate(),
-                            startDateTime.toLocalTime()),
-                    LocalDateTime.of(currentDateTime.toLocalDate(), endDateTime.toLocalTime()),
-                    description, location, isPublic));
-          }
-          n--;
+      this.lastDate = nthMatch(n);
+    }
+  }
+
+  /**
+   * Constructs the tail of a series that was split, sharing the rule of the original.
+   * @param other the series being split.
+   * @param firstDate the first date of the tail.
+   */
+
+  private RecurringEvent(RecurringEvent other, LocalDate firstDate) {
+    super(other.subject, LocalDateTime.of(firstDate, other.startTime),
+            LocalDateTime.of(other.isEntireDay ? firstDate.plusDays(1) : firstDate,
+                    other.endTime),
+            other.description, other.location, other.isPublic);
+    this.weekDayMask = other.weekDayMask;
+    this.startTime = other.startTime;
+    this.endTime = other.endTime;
+    this.isEntireDay = other.isEntireDay;
+    this.zone = other.zone;
+    this.firstDate = firstDate;
+    this.lastDate = other.lastDate;
+    this.overrides = new TreeMap<>();
+  }
+
+  /**
+   * Constructs a series from the parts of a stored rule, as read back from a snapshot.
+   * The series starts without overrides.
+   * @param event the subject, times of the first occurrence, description, location and
+   *              visibility of the series.
+   * @param weekDayMask the weekdays the rule repeats on, Monday being the lowest bit.
+   * @param startTime the start time of each occurrence.
+   * @param endTime the end time of each occurrence.
+   * @param isEntireDay whether each occurrence lasts the whole day.
+   * @param firstDate the first date the rule repeats on.
+   * @param lastDate the last date the rule repeats on.
+   * @param zone the zone the rule was written in, may be null.
+   */
+
+  RecurringEvent(CalendarEvent event, int weekDayMask, LocalTime startTime, LocalTime endTime,
+                 boolean isEntireDay, LocalDate firstDate, LocalDate lastDate, ZoneId zone) {
+    super(event.subject, event.startDateTime, event.endDateTime, event.description,
+            event.location, event.isPublic);
+    this.weekDayMask = weekDayMask;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.isEntireDay = isEntireDay;
+    this.firstDate = firstDate;
+    this.lastDate = lastDate;
+    this.zone = zone;
+    this.overrides = new TreeMap<>();
+  }
+
+  /**
+   * Converts a weekday string such as "MWF" into a bit mask, Monday being the lowest bit.
+   * @param weekDays string representing valid recurrence days.
+   * @return the weekday mask.
+   */
+
+  static int toWeekDayMask(String weekDays) {
+    int mask = 0;
+    for (int i = 0; i < WEEKDAY_CODES.length(); i++) {
+      if (weekDays.indexOf(WEEKDAY_CODES.charAt(i)) >= 0) {
+        mask |= 1 << i;
+      }
+    }
+    return mask;
+  }
+
+  /**
+   * Checks if the rule repeats on the weekday of the given date.
+   * @param date the date to check.
+   * @return true or false.
+   */
+
+  boolean matchesWeekDay(LocalDate date) {
+    return (weekDayMask & (1 << (date.getDayOfWeek().getValue() - 1))) != 0;
+  }
+
+  /**
+   * Finds the date of the n-th occurrence counting from the first date.
+   * Every run of seven days holds exactly one match per weekday in the mask,
+   * so whole weeks are skipped arithmetically.
+   * @param n the occurrence number, starting at 1.
+   * @return the date, or the day before the first date if the series is empty.
+   */
+
+  private LocalDate nthMatch(int n) {
+    int perWeek = Integer.bitCount(weekDayMask);
+    if (n <= 0 || perWeek == 0) {
+      return firstDate.minusDays(1);
+    }
+    int fullWeeks = (n - 1) / perWeek;
+    int remaining = n - fullWeeks * perWeek;
+    LocalDate date = firstDate.plusWeeks(fullWeeks);
+    while (true) {
+      if (matchesWeekDay(date)) {
+        remaining--;
+        if (remaining == 0) {
+          return date;
         }
-        currentDateTime = currentDateTime.plusDays(1);
       }
+      date = date.plusDays(1);
     }
   }
 
   /**
-   * Checks if the given day is included in the specified pattern.
-   * @param currentDay The name of the current day.
-   * @param weekDays string representing valid recurrence days.
+   * Finds the latest matching date that is not after the limit and not before the first date.
+   * @param limit the latest date allowed.
+   * @return the date, or the day before the first date if the series is empty.
+   */
+
+  private LocalDate lastMatchOnOrBefore(LocalDate limit) {
+    LocalDate date = limit;
+    for (int i = 0; i < 7 && !date.isBefore(firstDate); i++) {
+      if (matchesWeekDay(date)) {
+        return date;
+      }
+      date = date.minusDays(1);
+    }
+    return firstDate.minusDays(1);
+  }
+
+  /**
+   * Checks if the rule places an occurrence on the given date, overridden or not.
+   * @param date the date in the zone of the rule.
+   * @return true or false.
+   */
+
+  boolean isRuleDate(LocalDate date) {
+    return !date.isBefore(firstDate) && !date.isAfter(lastDate) && matchesWeekDay(date);
+  }
+
+  /**
+   * Checks if the rule itself supplies the occurrence on the given date,
+   * meaning it is a rule date without an override.
+   * @param date the date in the zone of the rule.
    * @return true or false.
    */
 
-  private boolean checkWeekDayValidity(String currentDay, String weekDays) {
-    if (currentDay.equals("MONDAY") && weekDays.contains(String.valueOf('M'))) {
-      return true;
+  boolean occursOn(LocalDate date) {
+    return isRuleDate(date) && !overrides.containsKey(date);
+  }
+
+  /**
+   * Converts a date time in the rule's zone to the zone the calendar stores date times in.
+   * @param ruleDateTime the date time in the zone of the rule.
+   * @param viewZone the stored zone of the calendar, null if the model has no zone.
+   * @return the date time in the view zone.
+   */
+
+  LocalDateTime toView(LocalDateTime ruleDateTime, ZoneId viewZone) {
+    if (zone == null || viewZone == null || zone.equals(viewZone)) {
+      return ruleDateTime;
+    }
+    return ruleDateTime.atZone(zone).withZoneSameInstant(viewZone).toLocalDateTime();
+  }
+
+  /**
+   * Converts a date time in the zone the calendar stores date times in to the zone of
+   * the rule.
+   * @param viewDateTime the date time in the view zone.
+   * @param viewZone the stored zone of the calendar, null if the model has no zone.
+   * @return the date time in the zone of the rule.
+   */
+
+  LocalDateTime toRule(LocalDateTime viewDateTime, ZoneId viewZone) {
+    if (zone == null || viewZone == null || zone.equals(viewZone)) {
+      return viewDateTime;
+    }
+    return viewDateTime.atZone(viewZone).withZoneSameInstant(zone).toLocalDateTime();
+  }
+
+  /**
+   * Builds the occurrence the rule places on a date, without storing it.
+   * @param date the date in the zone of the rule.
+   * @param viewZone the zone of the calendar.
+   * @return a detached occurrence carrying the current series properties.
+   */
+
+  SingleEvent occurrenceOn(LocalDate date, ZoneId viewZone) {
+    LocalDateTime start = LocalDateTime.of(date, startTime);
+    LocalDateTime end = LocalDateTime.of(isEntireDay ? date.plusDays(1) : date, endTime);
+    return new SingleEvent(subject, toView(start, viewZone), toView(end, viewZone),
+            description, location, isPublic);
+  }
+
+  /**
+   * Visits the occurrences supplied by the rule whose start, in the view zone,
+   * lies between the given bounds. Overridden dates are skipped, the overrides
+   * themselves are stored and indexed by the calendar.
+   * @param from earliest start, inclusive, in the view zone.
+   * @param to latest start, inclusive, in the view zone.
+   * @param viewZone the zone of the calendar.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachRuleOccurrence(LocalDateTime from, LocalDateTime to, ZoneId viewZone,
+                             Consumer<SingleEvent> visitor) {
+    LocalDate fromDate = toRule(from, viewZone).toLocalDate().minusDays(1);
+    LocalDate toDate = toRule(to, viewZone).toLocalDate().plusDays(1);
+    if (fromDate.isBefore(firstDate)) {
+      fromDate = firstDate;
     }
-    else if (currentDay.equals("TUESDAY") && weekDays.contains(String.valueOf('T'))) {
-      return true;
+    if (toDate.isAfter(lastDate)) {
+      toDate = lastDate;
     }
-    else if (currentDay.equals("WEDNESDAY") && weekDays.contains(String.valueOf('W'))) {
-      return true;
+    for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+      if (matchesWeekDay(date) && !overrides.containsKey(date)) {
+        SingleEvent occurrence = occurrenceOn(date, viewZone);
+        if (occurrence.startDateTime.compareTo(from) >= 0
+                && occurrence.startDateTime.compareTo(to) <= 0) {
+          visitor.accept(occurrence);
+        }
+      }
+    }
+  }
+
+  /**
+   * Visits every occurrence of the series in date order, overrides included.
+   * @param viewZone the zone of the calendar.
+   * @param visitor receives each occurrence.
+   */
+
+  void forEachOccurrence(ZoneId viewZone, Consumer<SingleEvent> visitor) {
+    for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+      if (matchesWeekDay(date)) {
+        SingleEvent override = overrides.get(date);
+        visitor.accept(override != null ? override : occurrenceOn(date, viewZone));
+      }
     }
-    else if (currentDay.equals("THURSDAY") && weekDays.contains(String.valueOf('R'))) {
-      return true;
+  }
+
+  /**
+   * Checks if any occurrence supplied by the rule overlaps the given interval.
+   * Overridden dates are skipped. Touching intervals do not overlap.
+   * @param start start of the interval in the view zone.
+   * @param end end of the interval in the view zone.
+   * @param viewZone the zone of the calendar.
+   * @return true if an occurrence overlaps.
+   */
+
+  boolean overlaps(LocalDateTime start, LocalDateTime end, ZoneId viewZone) {
+    LocalDateTime ruleStart = toRule(start, viewZone);
+    LocalDateTime ruleEnd = toRule(end, viewZone);
+    LocalDate fromDate = ruleStart.toLocalDate().minusDays(1);
+    LocalDate toDate = ruleEnd.toLocalDate();
+    if (fromDate.isBefore(firstDate)) {
+      fromDate = firstDate;
     }
-    else if (currentDay.equals("FRIDAY") && weekDays.contains(String.valueOf('F'))) {
-      return true;
+    if (toDate.isAfter(lastDate)) {
+      toDate = lastDate;
     }
-    else if (currentDay.equals("SATURDAY") && weekDays.contains(String.valueOf('S'))) {
-      return true;
+    for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)) {
+      if (matchesWeekDay(date) && !overrides.containsKey(date)) {
+        LocalDateTime occurrenceStart = LocalDateTime.of(date, startTime);
+        LocalDateTime occurrenceEnd = LocalDateTime.of(isEntireDay
+                ? date.plusDays(1) : date, endTime);
+        if (occurrenceStart.compareTo(ruleEnd) < 0 && occurrenceEnd.compareTo(ruleStart) > 0) {
+          return true;
+        }
+      }
     }
-    else {
-      return currentDay.equals("SUNDAY") && weekDays.contains(String.valueOf('U'));
+    return false;
+  }
+
+  /**
+   * Checks if every occurrence of the rule starts and ends within its own date,
+   * an entire-day occurrence ending exactly at the next midnight.
+   * @return true if occurrences on different dates can never overlap.
+   */
+
+  boolean isWithinDay() {
+    return isEntireDay || !endTime.isBefore(startTime);
+  }
+
+  /**
+   * Checks if an occurrence supplied by this rule overlaps one supplied by another rule.
+   * When both rules share a zone and stay within their dates, two occurrences can only
+   * overlap on the same date, so the check reduces to the time of day intervals, the
+   * weekday masks and the shared date range. Dates where either rule is overridden are
+   * skipped; overrides are stored occurrences and are checked on their own. Rules in
+   * different zones are compared occurrence by occurrence over the shared date range.
+   * @param other the other rule.
+   * @param viewZone the zone of the calendar.
+   * @return true if the two rules conflict.
+   */
+
+  boolean conflictsWith(RecurringEvent other, ZoneId viewZone) {
+    if (!Objects.equals(zone, other.zone) || !isWithinDay() || !other.isWithinDay()) {
+      return conflictsByExpansion(other, viewZone);
+    }
+
+    long thisStart = startTime.toNanoOfDay();
+    long thisEnd = isEntireDay ? NANOS_PER_DAY : endTime.toNanoOfDay();
+    long otherStart = other.startTime.toNanoOfDay();
+    long otherEnd = other.isEntireDay ? NANOS_PER_DAY : other.endTime.toNanoOfDay();
+    if (thisStart >= otherEnd || thisEnd <= otherStart
+            || (weekDayMask & other.weekDayMask) == 0) {
+      return false;
+    }
+
+    LocalDate from = firstDate.isAfter(other.firstDate) ? firstDate : other.firstDate;
+    LocalDate to = lastDate.isBefore(other.lastDate) ? lastDate : other.lastDate;
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (matchesWeekDay(date) && other.matchesWeekDay(date)
+              && !overrides.containsKey(date) && !other.overrides.containsKey(date)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Fallback for {@link #conflictsWith}: expands this rule over the dates it shares
+   * with the other one, allowing a day either side for zone differences.
+   * @param other the other rule.
+   * @param viewZone the zone of the calendar.
+   * @return true if the two rules conflict.
+   */
+
+  private boolean conflictsByExpansion(RecurringEvent other, ZoneId viewZone) {
+    LocalDate from = other.firstDate.minusDays(1);
+    LocalDate to = other.lastDate.plusDays(1);
+    if (from.isBefore(firstDate)) {
+      from = firstDate;
+    }
+    if (to.isAfter(lastDate)) {
+      to = lastDate;
+    }
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      if (occursOn(date)) {
+        SingleEvent occurrence = occurrenceOn(date, viewZone);
+        if (other.overlaps(occurrence.startDateTime, occurrence.endDateTime, viewZone)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Turns the occurrence on a date into a stored override so it can be edited on its own.
+   * @param date the rule date of the occurrence.
+   * @param viewZone the zone of the calendar.
+   * @return the override, already registered with the series.
+   */
+
+  SingleEvent materialize(LocalDate date, ZoneId viewZone) {
+    SingleEvent override = occurrenceOn(date, viewZone);
+    override.series = this;
+    override.occurrenceDate = date;
+    overrides.put(date, override);
+    return override;
+  }
+
+  /**
+   * Checks if an override still looks exactly like the occurrence the rule would produce.
+   * @param override the override to check.
+   * @param viewZone the zone of the calendar.
+   * @return true if the override carries no change.
+   */
+
+  boolean isRedundant(SingleEvent override, ZoneId viewZone) {
+    SingleEvent generated = occurrenceOn(override.occurrenceDate, viewZone);
+    return Objects.equals(generated.subject, override.subject)
+            && generated.startDateTime.equals(override.startDateTime)
+            && generated.endDateTime.equals(override.endDateTime)
+            && Objects.equals(generated.description, override.description)
+            && Objects.equals(generated.location, override.location)
+            && generated.isPublic == override.isPublic;
+  }
+
+  /**
+   * Finds the first date the rule supplies on or after the given date.
+   * @param date the date to start looking from.
+   * @return the date, or null if the series has no rule date left.
+   */
+
+  LocalDate firstRuleDateOnOrAfter(LocalDate date) {
+    LocalDate current = date.isBefore(firstDate) ? firstDate : date;
+    for (int i = 0; i < 7 && !current.isAfter(lastDate); i++) {
+      if (matchesWeekDay(current)) {
+        return current;
+      }
+      current = current.plusDays(1);
+    }
+    return null;
+  }
+
+  /**
+   * Copies the series for a published version of the calendar. The copy has a map of
+   * overrides of its own but shares the override events, which are replaced rather than
+   * changed once they are stored.
+   * @return the copy.
+   */
+
+  RecurringEvent frozenCopy() {
+    RecurringEvent copy = new RecurringEvent(this, weekDayMask, startTime, endTime,
+            isEntireDay, firstDate, lastDate, zone);
+    copy.overrides.putAll(overrides);
+    copy.order = order;
+    return copy;
+  }
+
+  /**
+   * Splits the series so that the returned tail starts at the given date and this
+   * series ends the day before. Overrides move with the dates they belong to, and the
+   * tail joins the family of this series right after it.
+   * @param date the first date of the tail, after the first date of this series.
+   * @return the tail series.
+   */
+
+  RecurringEvent splitAt(LocalDate date) {
+    RecurringEvent tail = new RecurringEvent(this, date);
+    tail.order = order;
+    tail.family = family;
+    family.add(family.indexOf(this) + 1, tail);
+    Map<LocalDate, SingleEvent> moved = overrides.tailMap(date, true);
+    for (SingleEvent override : moved.values()) {
+      override.series = tail;
     }
+    tail.overrides.putAll(moved);
+    moved.clear();
+    this.lastDate = date.minusDays(1);
+    return tail;
   }
 }
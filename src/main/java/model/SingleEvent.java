@@ -1,12 +1,17 @@
 package model;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 /**
- * This class represents a single event.
+ * This class represents a single event. An occurrence of a recurring event that
+ * was edited on its own is also kept as a single event, linked back to its series
+ * and to the date the series placed it on.
  */
 
 public class SingleEvent extends CalendarEvent {
+  RecurringEvent series;
+  LocalDate occurrenceDate;
 
   /**
    * Constructs a SingleEvent with the specified details.
@@ -24,7 +29,8 @@ public class SingleEvent extends CalendarEvent {
   }
 
   /**
-   * Copy constructor.
+   * Copy constructor. The copy is a standalone event even if the original
+   * was an edited occurrence of a recurring event.
    * @param other other Single Event object.
    */
 
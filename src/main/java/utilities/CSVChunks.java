@@ -0,0 +1,251 @@
+package utilities;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A CSV file mapped into memory and cut into chunks that start and end on record
+ * boundaries, so each chunk can be parsed on its own. A line break only ends a record
+ * outside double quotes, which is decided from the number of quotes before it; the quotes
+ * and line breaks of the file are counted in parallel, so the chunks can be found without
+ * reading the whole file on one thread. Line breaks are counted the same way as by
+ * {@link CSVTokenizer}, so each chunk also knows the line number it starts on.
+ */
+
+class CSVChunks implements Closeable {
+
+  private static final int SCAN_WINDOW = 1 << 20;
+
+  private final FileChannel channel;
+  private final long size;
+  private final Charset charset = Charset.defaultCharset();
+
+  /**
+   * A part of the file that holds whole records.
+   */
+
+  static class Chunk {
+    final long start;
+    final long end;
+    final int firstLine;
+
+    Chunk(long start, long end, int firstLine) {
+      this.start = start;
+      this.end = end;
+      this.firstLine = firstLine;
+    }
+  }
+
+  /**
+   * Opens a file for reading in chunks.
+   * @param path the file.
+   * @throws IOException if the file cannot be opened.
+   */
+
+  CSVChunks(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = channel.size();
+  }
+
+  /**
+   * Finds the end of the first record, skipping any blank lines before it.
+   * @return the position just past the line break that ends the first record, or the size
+   *         of the file if it has a single record.
+   * @throws IOException if the file cannot be read.
+   */
+
+  long firstRecordEnd() throws IOException {
+    long position = 0;
+    while (position < size) {
+      ByteBuffer window = map(position, Math.min(size, position + SCAN_WINDOW));
+      int i = 0;
+      while (i < window.limit() && (window.get(i) == '\n' || window.get(i) == '\r')) {
+        i++;
+      }
+      if (i < window.limit()) {
+        return nextBoundary(position + i, false)[0];
+      }
+      position += window.limit();
+    }
+    return size;
+  }
+
+  /**
+   * Cuts a part of the file into chunks of roughly the given size.
+   * @param from the start of the part, which must be a record boundary.
+   * @param firstLine the line number at the start of the part.
+   * @param chunkSize the preferred number of bytes per chunk.
+   * @param pool runs the counting of quotes and line breaks.
+   * @return the chunks, in file order.
+   * @throws IOException if the file cannot be read.
+   */
+
+  List<Chunk> split(long from, int firstLine, int chunkSize, ForkJoinPool pool)
+          throws IOException {
+    List<ForkJoinTask<long[]>> counts = new ArrayList<>();
+    for (long start = from; start < size; start += chunkSize) {
+      long regionStart = start;
+      long regionEnd = Math.min(size, start + chunkSize);
+      counts.add(pool.submit(() -> count(regionStart, regionEnd)));
+    }
+
+    List<Chunk> chunks = new ArrayList<>();
+    long chunkStart = from;
+    long chunkLine = firstLine;
+    long regionLine = firstLine;
+    long quotes = 0;
+    for (int r = 0; r < counts.size(); r++) {
+      if (r > 0) {
+        long[] boundary = nextBoundary(from + (long) r * chunkSize, (quotes & 1) == 1);
+        if (boundary[0] > chunkStart && boundary[0] < size) {
+          long boundaryLine = regionLine + boundary[1];
+          chunks.add(new Chunk(chunkStart, boundary[0], toLine(chunkLine)));
+          chunkStart = boundary[0];
+          chunkLine = boundaryLine;
+        }
+      }
+      long[] region = join(counts.get(r));
+      quotes += region[0];
+      regionLine += region[1];
+    }
+    if (chunkStart < size) {
+      chunks.add(new Chunk(chunkStart, size, toLine(chunkLine)));
+    }
+    return chunks;
+  }
+
+  /**
+   * Decodes a part of the file with the platform character set, like a {@code FileReader}.
+   * @param start the first byte.
+   * @param end the byte past the end.
+   * @return a reader over the decoded text.
+   * @throws IOException if the file cannot be read.
+   */
+
+  Reader open(long start, long end) throws IOException {
+    CharBuffer text = charset.decode(map(start, end));
+    return new CharArrayReader(text.array(), text.arrayOffset() + text.position(),
+            text.remaining());
+  }
+
+  /**
+   * Closes the file. Parts that are still mapped stay readable.
+   * @throws IOException if closing fails.
+   */
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * Counts the quotes and line breaks in a part of the file.
+   * @return the number of quotes and the number of line breaks.
+   */
+
+  private long[] count(long start, long end) {
+    try {
+      ByteBuffer bytes = map(start, Math.min(size, end + 1));
+      int limit = (int) (end - start);
+      long quotes = 0;
+      long lines = 0;
+      for (int i = 0; i < limit; i++) {
+        byte b = bytes.get(i);
+        if (b == '"') {
+          quotes++;
+        }
+        else if (isLineBreak(bytes, i, b)) {
+          lines++;
+        }
+      }
+      return new long[] {quotes, lines};
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Finds the first record boundary past a position: the byte after a line break that is
+   * outside quotes.
+   * @param from the position to scan from.
+   * @param quoted whether the position is inside quotes.
+   * @return the boundary, or the size of the file if there is none, and the number of line
+   *         breaks between the position and the boundary.
+   */
+
+  private long[] nextBoundary(long from, boolean quoted) throws IOException {
+    long lines = 0;
+    long position = from;
+    while (position < size) {
+      long end = Math.min(size, position + SCAN_WINDOW);
+      ByteBuffer window = map(position, Math.min(size, end + 1));
+      int limit = (int) (end - position);
+      for (int i = 0; i < limit; i++) {
+        byte b = window.get(i);
+        if (b == '"') {
+          quoted = !quoted;
+        }
+        else if (isLineBreak(window, i, b)) {
+          lines++;
+          if (!quoted) {
+            return new long[] {position + i + 1, lines};
+          }
+        }
+      }
+      position = end;
+    }
+    return new long[] {size, lines};
+  }
+
+  /**
+   * Checks if a byte ends a line: a line feed, or a carriage return that is not followed
+   * by a line feed.
+   */
+
+  private static boolean isLineBreak(ByteBuffer bytes, int i, byte b) {
+    return b == '\n' || (b == '\r' && (i + 1 == bytes.limit() || bytes.get(i + 1) != '\n'));
+  }
+
+  /**
+   * Maps a part of the file into memory.
+   */
+
+  private ByteBuffer map(long start, long end) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+  }
+
+  /**
+   * Waits for a counting task, passing on its failure.
+   */
+
+  private static long[] join(ForkJoinTask<long[]> task) throws IOException {
+    try {
+      return task.join();
+    }
+    catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Narrows a line number, which the tokenizer keeps as an int.
+   */
+
+  private static int toLine(long line) {
+    return (int) Math.min(Integer.MAX_VALUE, line);
+  }
+}
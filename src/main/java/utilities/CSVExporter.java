@@ -1,14 +1,24 @@
 package utilities;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.function.Consumer;
 
 import exception.InvalidCommandException;
+import model.EventVisitor;
 
 /**
  * Utility class for exporting calendar events to a CSV file.
@@ -16,6 +26,10 @@ import exception.InvalidCommandException;
 
 public class CSVExporter {
 
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final DateTimeFormatter csvDateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
   /**
    * Exports a list of events to a CSV file.
    * @param eventList A list of event details.
@@ -23,44 +37,149 @@ public class CSVExporter {
    */
 
   public void exportCSV(List<List> eventList, String fileName) {
+    writeFile(rows -> {
+      for (List<Object> eventDetails : eventList) {
+        rows.writeRow((String) eventDetails.get(0), (LocalDate) eventDetails.get(1),
+                (LocalTime) eventDetails.get(2), (LocalDate) eventDetails.get(3),
+                (LocalTime) eventDetails.get(4), (String) eventDetails.get(5),
+                (String) eventDetails.get(6), Boolean.TRUE.equals(eventDetails.get(7)));
+      }
+    }, fileName);
+  }
+
+  /**
+   * Exports the events handed out by a query, such as {@code model::forEachEvent}, to a
+   * CSV file in the same format as {@link #exportCSV(List, String)}. Each event is written
+   * as soon as it is visited, so no more than one row is held in memory.
+   * @param events Visits every event to be exported.
+   * @param fileName The name of the CSV file to be created.
+   */
 
-    String absolutePath = Paths.get(fileName).toAbsolutePath().toString();
-    DateTimeFormatter csvDateFormatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
-    DateTimeFormatter csvTimeFormatter = DateTimeFormatter.ofPattern("hh:mm a");
+  public void exportCSV(Consumer<EventVisitor> events, String fileName) {
+    writeFile(events, fileName);
+  }
 
-    try (FileWriter writer = new FileWriter(absolutePath)) {
+  /**
+   * Opens the file, writes the header and lets the caller write the rows.
+   * @param rows Writes the rows.
+   * @param fileName The name of the CSV file to be created.
+   */
+
+  private void writeFile(Consumer<? super RowWriter> rows, String fileName) {
+    Path absolutePath = Paths.get(fileName).toAbsolutePath();
+
+    try (Writer writer = Channels.newWriter(FileChannel.open(absolutePath,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING),
+            Charset.defaultCharset().newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE), BUFFER_SIZE)) {
       writer.write("Subject, Start Date, Start Time, End Date, "
               + "End Time, Description, Location, Private\n");
+      rows.accept(new RowWriter(writer));
+    }
+    catch (IOException | UncheckedIOException e) {
+      throw new InvalidCommandException("Error writing CSV file");
+    }
+  }
 
-      for (List<Object> eventDetails : eventList) {
-        String subject = (String) eventDetails.get(0);
-        LocalDate startDate = (LocalDate) eventDetails.get(1);
-        LocalTime startTime = (LocalTime) eventDetails.get(2);
-        LocalDate endDate = (LocalDate) eventDetails.get(3);
-        LocalTime endTime = (LocalTime) eventDetails.get(4);
-        String description = (String) eventDetails.get(5);
-        String location = (String) eventDetails.get(6);
-        Boolean isPublic = (Boolean) eventDetails.get(7);
-
-        String startDateStr = (startDate != null) ? startDate.format(csvDateFormatter) : "";
-        String startTimeStr = (startTime != null) ? startTime.format(csvTimeFormatter) : "";
-        String endDateStr = (endDate != null) ? endDate.format(csvDateFormatter) : "";
-        String endTimeStr = (endTime != null) ? endTime.format(csvTimeFormatter) : "";
-
-        writer.write(String.format("\"%s\",%s,%s,\"%s\",\"%s\",\"%s\",\"%s\",%b\n",
-                subject,
-                startDateStr,
-                startTimeStr,
-                endDateStr,
-                endTimeStr,
-                description,
-                location,
-                isPublic));
+  /**
+   * Encodes rows into a reused buffer and writes them out one at a time.
+   */
+
+  private class RowWriter implements EventVisitor {
+    private final Writer writer;
+    private final StringBuilder row = new StringBuilder(256);
+    private char[] chars = new char[256];
+
+    RowWriter(Writer writer) {
+      this.writer = writer;
+    }
+
+    /**
+     * Writes a visited event; the Private column holds the opposite of isPublic.
+     */
+
+    @Override
+    public void visit(String subject, LocalDateTime startDateTime, LocalDateTime endDateTime,
+                      String description, String location, boolean isPublic) {
+      writeRow(subject, startDateTime.toLocalDate(), startDateTime.toLocalTime(),
+              endDateTime.toLocalDate(), endDateTime.toLocalTime(), description, location,
+              !isPublic);
+    }
+
+    /**
+     * Writes one row as "subject",date,time,"date","time","description","location",flag.
+     * Missing dates and times are left empty and missing strings are written as null.
+     */
+
+    void writeRow(String subject, LocalDate startDate, LocalTime startTime, LocalDate endDate,
+                  LocalTime endTime, String description, String location, boolean flag) {
+      row.setLength(0);
+      row.append('"').append(subject).append("\",");
+      appendDate(startDate);
+      row.append(',');
+      appendTime(startTime);
+      row.append(",\"");
+      appendDate(endDate);
+      row.append("\",\"");
+      appendTime(endTime);
+      row.append("\",\"").append(description).append("\",\"").append(location)
+              .append("\",").append(flag).append('\n');
+
+      int length = row.length();
+      if (chars.length < length) {
+        chars = new char[Math.max(length, 2 * chars.length)];
+      }
+      row.getChars(0, length, chars, 0);
+      try {
+        writer.write(chars, 0, length);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
       }
-      // return absolutePath;
     }
-    catch (IOException e) {
-      throw new InvalidCommandException("Error writing CSV file");
+
+    /**
+     * Appends a date as MM/dd/yyyy. Years without four digits go through the formatter.
+     */
+
+    private void appendDate(LocalDate date) {
+      if (date == null) {
+        return;
+      }
+      int year = date.getYear();
+      if (year < 1000 || year > 9999) {
+        csvDateFormatter.formatTo(date, row);
+        return;
+      }
+      appendTwoDigits(date.getMonthValue());
+      row.append('/');
+      appendTwoDigits(date.getDayOfMonth());
+      row.append('/').append(year);
+    }
+
+    /**
+     * Appends a time as hh:mm a.
+     */
+
+    private void appendTime(LocalTime time) {
+      if (time == null) {
+        return;
+      }
+      int hour = time.getHour() % 12;
+      appendTwoDigits(hour == 0 ? 12 : hour);
+      row.append(':');
+      appendTwoDigits(time.getMinute());
+      row.append(time.getHour() < 12 ? " AM" : " PM");
+    }
+
+    /**
+     * Appends a number below 100 with a leading zero.
+     */
+
+    private void appendTwoDigits(int value) {
+      row.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
     }
   }
 }
@@ -2,19 +2,26 @@ package utilities;
 
 import exception.InvalidCommandException;
 
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 /**
  * Class to import events from CSV files to the calendar system.
@@ -29,6 +36,29 @@ public class CSVImporter {
   private final DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern(
           "hh:mm a", Locale.ENGLISH);
 
+  /**
+   * Size in bytes of the chunks a file is cut into by {@link #importEventsInParallel}.
+   */
+
+  int chunkSize = 8 << 20;
+
+  private final RecentDate[] recentDates = new RecentDate[64];
+
+  /**
+   * A date string and its parsed value. Entries are immutable, so the cache can be shared
+   * by the threads of a parallel import without locking; a lost update only costs a parse.
+   */
+
+  private static class RecentDate {
+    final String text;
+    final LocalDate date;
+
+    RecentDate(String text, LocalDate date) {
+      this.text = text;
+      this.date = date;
+    }
+  }
+
   /**
    * Function to read the file and extract the required information.
    * @param filePath The path to the file.
@@ -37,120 +67,374 @@ public class CSVImporter {
 
   public List<List> importEvents(String filePath) {
     List<List> importedEvents = new ArrayList<>();
-
-    try (BufferedReader reader = new BufferedReader(new FileReader(Paths.get(filePath).toFile())))
-    {
-      String headerLine = reader.readLine();
-      if (headerLine == null) {
-        throw new InvalidCommandException("CSV file is empty.");
+    try (EventIterator events = readEvents(filePath)) {
+      while (events.hasNext()) {
+        importedEvents.add(events.next());
       }
-      String[] headers = headerLine.split("\\s*,\\s*");
-      Map<String, Integer> headerMap = new HashMap<>();
-      for (int i = 0; i < headers.length; i++) {
-        headerMap.put(headers[i].trim(), i);
+    }
+    return importedEvents;
+  }
+
+  /**
+   * Function to open the file and read the events one at a time, so the caller can use
+   * each event while the rest of the file is still being read. Only the header is read
+   * here; the iterator must be closed once it is no longer needed.
+   * @param filePath The path to the file.
+   * @return Iterator over the events that are recognised, in the same format as
+   *         {@link #importEvents}.
+   */
+
+  public EventIterator readEvents(String filePath) {
+    CSVTokenizer tokenizer;
+    try {
+      tokenizer = new CSVTokenizer(new FileReader(Paths.get(filePath).toFile()));
+    }
+    catch (IOException e) {
+      throw new InvalidCommandException("Error reading CSV file");
+    }
+
+    try {
+      return new EventIterator(tokenizer, readHeader(tokenizer.next()), System.err::println);
+    }
+    catch (IOException e) {
+      closeQuietly(tokenizer);
+      throw new InvalidCommandException("Error reading CSV file");
+    }
+    catch (RuntimeException e) {
+      closeQuietly(tokenizer);
+      throw e;
+    }
+  }
+
+  /**
+   * Function to read a large file on several threads. The file is mapped into memory and
+   * cut into chunks on record boundaries, and the chunks are parsed on the common fork/join
+   * pool. The events of a chunk are handed over once it and every chunk before it are
+   * parsed, so they arrive in file order while later chunks are still being parsed.
+   * Lines that cannot be parsed are reported on the error stream with their line number
+   * in the file, as by {@link #readEvents}.
+   * @param filePath The path to the file.
+   * @param consumer Receives the events of each chunk, in the same format as
+   *                 {@link #importEvents}.
+   */
+
+  public void importEventsInParallel(String filePath, Consumer<List<List>> consumer) {
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    Deque<ForkJoinTask<ParsedChunk>> inFlight = new ArrayDeque<>();
+    try (CSVChunks file = new CSVChunks(Paths.get(filePath))) {
+      long bodyStart = file.firstRecordEnd();
+      CSVTokenizer headerTokenizer = new CSVTokenizer(file.open(0, bodyStart));
+      Map<String, Integer> headerMap = readHeader(headerTokenizer.next());
+      List<CSVChunks.Chunk> chunks = file.split(bodyStart, headerTokenizer.line(),
+              chunkSize, pool);
+
+      int window = 2 * pool.getParallelism();
+      int next = 0;
+      while (next < chunks.size() || !inFlight.isEmpty()) {
+        while (next < chunks.size() && inFlight.size() < window) {
+          CSVChunks.Chunk chunk = chunks.get(next++);
+          inFlight.add(pool.submit(() -> parseChunk(file, chunk, headerMap)));
+        }
+        ParsedChunk parsed = inFlight.poll().join();
+        parsed.errors.forEach(System.err::println);
+        consumer.accept(parsed.events);
       }
+    }
+    catch (IOException | UncheckedIOException e) {
+      throw new InvalidCommandException("Error reading CSV file");
+    }
+    finally {
+      inFlight.forEach(task -> task.cancel(false));
+    }
+  }
+
+  /**
+   * Checks the header of a file and finds the position of each column.
+   * @param headers the fields of the header, null if the file is empty.
+   * @return the position of each column by name.
+   */
 
-      if (!headerMap.containsKey("Subject") || !headerMap.containsKey("Start Date")
-              || !headerMap.containsKey("Start Time")) {
-        throw new InvalidCommandException("CSV must contain 'Subject', "
-                + "'Start Date', and 'Start Time' columns.");
+  private Map<String, Integer> readHeader(List<String> headers) {
+    if (headers == null) {
+      throw new InvalidCommandException("CSV file is empty.");
+    }
+    Map<String, Integer> headerMap = new HashMap<>();
+    for (int i = 0; i < headers.size(); i++) {
+      headerMap.put(unquote(headers.get(i)).trim(), i);
+    }
+
+    if (!headerMap.containsKey("Subject") || !headerMap.containsKey("Start Date")
+            || !headerMap.containsKey("Start Time")) {
+      throw new InvalidCommandException("CSV must contain 'Subject', "
+              + "'Start Date', and 'Start Time' columns.");
+    }
+    return headerMap;
+  }
+
+  /**
+   * Parses one chunk of a file, keeping the error messages until the chunk's turn comes.
+   * @param file the file.
+   * @param chunk the chunk to be parsed.
+   * @param headerMap the position of each column by name.
+   * @return the events and error messages of the chunk.
+   */
+
+  private ParsedChunk parseChunk(CSVChunks file, CSVChunks.Chunk chunk,
+                                 Map<String, Integer> headerMap) {
+    ParsedChunk parsed = new ParsedChunk();
+    try {
+      CSVTokenizer tokenizer = new CSVTokenizer(file.open(chunk.start, chunk.end),
+              chunk.firstLine);
+      EventIterator events = new EventIterator(tokenizer, headerMap, parsed.errors::add);
+      while (events.hasNext()) {
+        parsed.events.add(events.next());
       }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return parsed;
+  }
+
+  /**
+   * The events and error messages of one chunk of a file.
+   */
+
+  private static class ParsedChunk {
+    final List<List> events = new ArrayList<>();
+    final List<String> errors = new ArrayList<>();
+  }
+
+  /**
+   * Iterator over the events of a CSV file. Lines that cannot be parsed are reported
+   * on the error stream and skipped, and the file is closed once the last line is read.
+   */
+
+  public class EventIterator implements Iterator<List>, AutoCloseable {
+    private final CSVTokenizer tokenizer;
+    private final int subjectColumn;
+    private final int startDateColumn;
+    private final int startTimeColumn;
+    private final int endDateColumn;
+    private final int endTimeColumn;
+    private final int descriptionColumn;
+    private final int locationColumn;
+    private final int privateColumn;
+    private final Consumer<String> errorLog;
+    private List<Object> pending;
+    private boolean finished;
+
+    private EventIterator(CSVTokenizer tokenizer, Map<String, Integer> headerMap,
+                          Consumer<String> errorLog) {
+      this.tokenizer = tokenizer;
+      this.errorLog = errorLog;
+      this.subjectColumn = headerMap.get("Subject");
+      this.startDateColumn = headerMap.get("Start Date");
+      this.startTimeColumn = headerMap.get("Start Time");
+      this.endDateColumn = headerMap.getOrDefault("End Date", -1);
+      this.endTimeColumn = headerMap.getOrDefault("End Time", -1);
+      this.descriptionColumn = headerMap.getOrDefault("Description", -1);
+      this.locationColumn = headerMap.getOrDefault("Location", -1);
+      this.privateColumn = headerMap.getOrDefault("Private", -1);
+    }
 
-      String line;
-      int lineIndex = 1;
-      while ((line = reader.readLine()) != null) {
-        lineIndex++;
-        String[] tokens = line.split("\\s*,\\s*");
+    /**
+     * Checks if another event can be read, reading ahead past lines that cannot be parsed.
+     * @return true if there is another event.
+     */
 
+    @Override
+    public boolean hasNext() {
+      while (pending == null && !finished) {
+        List<String> tokens;
         try {
-          List<Object> eventDetails = new ArrayList<>();
-
-          String subject = unquote(tokens[headerMap.get("Subject")]);
-          eventDetails.add(subject);
-
-          String startDateStr = unquote(tokens[headerMap.get("Start Date")]);
-          String startTimeStr = unquote(tokens[headerMap.get("Start Time")]);
-          LocalDate startDate = parseDate(startDateStr, lineIndex);
-          LocalTime startTime = parseTime(startTimeStr, lineIndex);
-          eventDetails.add(startDate);
-          eventDetails.add(startTime);
-
-          LocalDate endDate = null;
-          LocalTime endTime = null;
-          if (headerMap.containsKey("End Date")) {
-            String rawEndDate = unquote(tokens[headerMap.get("End Date")]);
-            endDate = parseOptionalDate(rawEndDate, lineIndex);
-          }
-          if (headerMap.containsKey("End Time")) {
-            String rawEndTime = unquote(tokens[headerMap.get("End Time")]);
-            endTime = parseOptionalTime(rawEndTime, lineIndex);
-          }
-          if (endDate == null) {
-            endDate = startDate.plusDays(1);
-          }
-          if (endTime == null) {
-            endTime = LocalTime.of(0, 0);
-          }
-          eventDetails.add(endDate);
-          eventDetails.add(endTime);
-
-          String description = "";
-          if (headerMap.containsKey("Description")) {
-            description = unquote(tokens[headerMap.get("Description")]);
-          }
-          eventDetails.add(description);
-
-          String location = "";
-          if (headerMap.containsKey("Location")) {
-            location = unquote(tokens[headerMap.get("Location")]);
-          }
-          eventDetails.add(location);
-
-          boolean isPublic = false;
-          if (headerMap.containsKey("Private")) {
-            String privateValue = unquote(tokens[headerMap.get("Private")]);
-            if (privateValue != null && !privateValue.trim().isEmpty()) {
-              isPublic = !Boolean.parseBoolean(privateValue.trim());
-            }
-          }
-          eventDetails.add(isPublic);
-
-          importedEvents.add(eventDetails);
+          tokens = tokenizer.next();
+        }
+        catch (IOException e) {
+          close();
+          throw new InvalidCommandException("Error reading CSV file");
+        }
+        if (tokens == null) {
+          close();
+          break;
+        }
+
+        int lineIndex = tokenizer.recordLine();
+        try {
+          pending = parseEvent(tokens, lineIndex);
         }
         catch (Exception e) {
-          System.err.println("Error parsing line " + lineIndex + ": " + e.getMessage());
+          errorLog.accept("Error parsing line " + lineIndex + ": " + e.getMessage());
         }
       }
+      return pending != null;
+    }
+
+    /**
+     * Returns the next event.
+     * @return subject, start date, start time, end date, end time, description,
+     *         location and whether the event is public.
+     */
+
+    @Override
+    public List next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      List<Object> event = pending;
+      pending = null;
+      return event;
+    }
+
+    /**
+     * Closes the file. Closing twice has no effect.
+     */
+
+    @Override
+    public void close() {
+      if (!finished) {
+        finished = true;
+        closeQuietly(tokenizer);
+      }
+    }
+
+    /**
+     * Turns the fields of one line into the event details.
+     * @param tokens the fields of the line.
+     * @param lineIndex the line number, for error messages.
+     * @return the event details.
+     */
+
+    private List<Object> parseEvent(List<String> tokens, int lineIndex) {
+      List<Object> eventDetails = new ArrayList<>(8);
+
+      String subject = unquote(column(tokens, subjectColumn));
+      eventDetails.add(subject);
+
+      LocalDate startDate = parseDate(unquote(column(tokens, startDateColumn)), lineIndex);
+      LocalTime startTime = parseTime(unquote(column(tokens, startTimeColumn)), lineIndex);
+      eventDetails.add(startDate);
+      eventDetails.add(startTime);
+
+      LocalDate endDate = null;
+      LocalTime endTime = null;
+      if (endDateColumn >= 0) {
+        endDate = parseOptionalDate(unquote(column(tokens, endDateColumn)), lineIndex);
+      }
+      if (endTimeColumn >= 0) {
+        endTime = parseOptionalTime(unquote(column(tokens, endTimeColumn)), lineIndex);
+      }
+      if (endDate == null) {
+        endDate = startDate.plusDays(1);
+      }
+      if (endTime == null) {
+        endTime = LocalTime.of(0, 0);
+      }
+      eventDetails.add(endDate);
+      eventDetails.add(endTime);
+
+      String description = "";
+      if (descriptionColumn >= 0) {
+        description = unquote(column(tokens, descriptionColumn));
+      }
+      eventDetails.add(description);
+
+      String location = "";
+      if (locationColumn >= 0) {
+        location = unquote(column(tokens, locationColumn));
+      }
+      eventDetails.add(location);
+
+      boolean isPublic = false;
+      if (privateColumn >= 0) {
+        String privateValue = unquote(column(tokens, privateColumn));
+        if (privateValue != null && !privateValue.trim().isEmpty()) {
+          isPublic = !Boolean.parseBoolean(privateValue.trim());
+        }
+      }
+      eventDetails.add(isPublic);
+      return eventDetails;
+    }
+
+    /**
+     * Returns one field of a line.
+     * @param tokens the fields of the line.
+     * @param column the position of the field.
+     * @return the field.
+     */
+
+    private String column(List<String> tokens, int column) {
+      if (column >= tokens.size()) {
+        throw new InvalidCommandException("Missing value in column " + (column + 1));
+      }
+      return tokens.get(column);
+    }
+  }
+
+  /**
+   * Closes a tokenizer, ignoring failures since nothing more is read from it.
+   * @param tokenizer the tokenizer to be closed.
+   */
+
+  private static void closeQuietly(CSVTokenizer tokenizer) {
+    try {
+      tokenizer.close();
     }
     catch (IOException e) {
-      throw new InvalidCommandException("Error reading CSV file");
+      // nothing left to read
     }
-    return importedEvents;
   }
 
   /**
-   * Removes surrounding quotes if present.
+   * Removes surrounding quotes if present. Inside a quoted value, a doubled quote
+   * stands for one quote.
    * @param s The string to be stripped of quotes.
    * @return Trimmed string.
    */
 
   private String unquote(String s) {
     if (s == null) return null;
-    return s.replaceAll("^\"|\"$", "");
+    int start = s.startsWith("\"") ? 1 : 0;
+    int end = s.length() > start && s.endsWith("\"") ? s.length() - 1 : s.length();
+    String value = s.substring(start, end);
+    if (start == 1 && end < s.length() && value.indexOf('"') >= 0) {
+      value = value.replace("\"\"", "\"");
+    }
+    return value;
   }
 
   /**
    * Parses a required date using the primary formatter first and then an alternate formatter.
+   * The common layouts are read without the formatters, and recently parsed dates are
+   * looked up in a small cache first, since imported files repeat the same dates.
+   * @param value The string value of the date.
+   * @param lineIndex The line at which the date is present.
+   * @return Parsed value.
    */
 
+  private LocalDate parseDate(String value, int lineIndex) {
+    int slot = value.hashCode() & (recentDates.length - 1);
+    RecentDate recent = recentDates[slot];
+    if (recent != null && recent.text.equals(value)) {
+      return recent.date;
+    }
+
+    LocalDate date = DateTimeParsers.parseUsDate(value);
+    if (date == null) {
+      date = parseDateWithFormatters(value, lineIndex);
+    }
+    recentDates[slot] = new RecentDate(value, date);
+    return date;
+  }
+
   /**
-   * Parses a required date using the primary formatter first and then an alternate formatter.
+   * Parses a date with the primary formatter first and then the alternate formatter.
    * @param value The string value of the date.
    * @param lineIndex The line at which the date is present.
    * @return Parsed value.
    */
 
-  private LocalDate parseDate(String value, int lineIndex) {
+  private LocalDate parseDateWithFormatters(String value, int lineIndex) {
     try {
       return LocalDate.parse(value, primaryDateFormatter);
     }
@@ -186,6 +470,10 @@ public class CSVImporter {
    */
 
   private LocalTime parseTime(String value, int lineIndex) {
+    LocalTime time = DateTimeParsers.parseClockTime(value);
+    if (time != null) {
+      return time;
+    }
     try {
       return LocalTime.parse(value, timeFormatter);
     } catch (DateTimeParseException e) {
@@ -0,0 +1,177 @@
+package utilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits CSV text into records and fields in a single pass over a reused character buffer.
+ * Commas and line breaks inside double quotes belong to the field, and whitespace around a
+ * field is dropped. Fields keep their quotes; removing them is left to the caller.
+ * Blank lines are skipped.
+ */
+
+class CSVTokenizer implements Closeable {
+
+  private final Reader reader;
+  private final char[] buffer = new char[1 << 16];
+  private int position;
+  private int limit;
+  private int pushedBack = -2;
+  private final StringBuilder field = new StringBuilder();
+  private final List<String> fields = new ArrayList<>();
+  private int line = 1;
+  private int recordLine;
+
+  /**
+   * Constructs a tokenizer over a reader. The reader is read in large blocks, so it
+   * does not need to be buffered.
+   * @param reader the CSV text.
+   */
+
+  CSVTokenizer(Reader reader) {
+    this(reader, 1);
+  }
+
+  /**
+   * Constructs a tokenizer over a part of a file that starts on a given line, so the
+   * reported line numbers are those of the whole file.
+   * @param reader the CSV text, starting at the beginning of a record.
+   * @param firstLine the line number of the first character.
+   */
+
+  CSVTokenizer(Reader reader, int firstLine) {
+    this.reader = reader;
+    this.line = firstLine;
+  }
+
+  /**
+   * Reads the next record.
+   * @return the fields of the record, a list that is reused by the next call,
+   *         or null at the end of the input.
+   * @throws IOException if the input cannot be read.
+   */
+
+  List<String> next() throws IOException {
+    int c = read();
+    while (c == '\n' || c == '\r') {
+      endLine(c);
+      c = read();
+    }
+    if (c == -1) {
+      return null;
+    }
+
+    recordLine = line;
+    fields.clear();
+    while (true) {
+      field.setLength(0);
+      boolean quoted = false;
+      int previous = -1;
+      while (c != -1 && (quoted || (c != ',' && c != '\n' && c != '\r'))) {
+        if (c == '"') {
+          quoted = !quoted;
+        }
+        else if (c == '\r' || (c == '\n' && previous != '\r')) {
+          line++;
+        }
+        field.append((char) c);
+        previous = c;
+        c = read();
+      }
+      fields.add(trimmed());
+
+      if (c == ',') {
+        c = read();
+      }
+      else {
+        if (c != -1) {
+          endLine(c);
+        }
+        return fields;
+      }
+    }
+  }
+
+  /**
+   * Returns the line number the last record started on, counting from 1.
+   * @return the line number.
+   */
+
+  int recordLine() {
+    return recordLine;
+  }
+
+  /**
+   * Returns the line number of the next character to be read.
+   * @return the line number.
+   */
+
+  int line() {
+    return line;
+  }
+
+  /**
+   * Closes the underlying reader.
+   * @throws IOException if closing fails.
+   */
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  /**
+   * Returns the field buffer without surrounding whitespace.
+   */
+
+  private String trimmed() {
+    int start = 0;
+    int end = field.length();
+    while (start < end && Character.isWhitespace(field.charAt(start))) {
+      start++;
+    }
+    while (end > start && Character.isWhitespace(field.charAt(end - 1))) {
+      end--;
+    }
+    return field.substring(start, end);
+  }
+
+  /**
+   * Consumes a line break, treating a carriage return followed by a line feed as one.
+   */
+
+  private void endLine(int c) throws IOException {
+    if (c == '\r') {
+      int following = read();
+      if (following != '\n') {
+        pushedBack = following;
+      }
+    }
+    line++;
+  }
+
+  /**
+   * Reads one character, refilling the buffer when it runs out.
+   * @return the character, or -1 at the end of the input.
+   */
+
+  private int read() throws IOException {
+    if (pushedBack != -2) {
+      int c = pushedBack;
+      pushedBack = -2;
+      return c;
+    }
+    if (position == limit) {
+      limit = reader.read(buffer, 0, buffer.length);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++];
+  }
+}
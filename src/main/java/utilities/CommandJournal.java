@@ -0,0 +1,416 @@
+package utilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of commands. Each command is stored as the length of its text, a
+ * checksum, a sequence number and the text in UTF-8; the checksum covers the sequence
+ * number and the text.
+ *
+ * <p>Commands are written and forced to disk by a background thread in groups: one write
+ * and one fsync cover every command appended since the previous group. With a sync
+ * interval of one command, {@link #append(String)} waits until its command is on disk,
+ * and commands appended at the same time share the fsync. With a longer interval it
+ * returns at once, and the command reaches the disk once that many commands are waiting
+ * or the maximum delay has passed, whichever is first.</p>
+ *
+ * <p>A crash can leave a partly written command at the end of the file. It is dropped
+ * when the file is opened again, along with anything after it.</p>
+ */
+
+public class CommandJournal implements Closeable {
+
+  private static final int HEADER_SIZE = 16;
+  private static final int MAX_COMMAND_SIZE = 1 << 24;
+
+  private final FileChannel channel;
+  private final int syncEvery;
+  private final long maxDelayNanos;
+  private final long baseSequence;
+  private final Thread writer;
+  private final Object lock = new Object();
+  private final CRC32 checksum = new CRC32();
+
+  private byte[] pending = new byte[1 << 12];
+  private byte[] spare = new byte[1 << 12];
+  private int pendingLength;
+  private int pendingCount;
+  private long pendingSince;
+  private long lastSequence;
+  private long durableSequence;
+  private long fileSize;
+  private int waiting;
+  private boolean writing;
+  private boolean closing;
+  private boolean closed;
+  private IOException failure;
+
+  /**
+   * Opens a journal file, creating it if needed, and drops a partly written command at its
+   * end.
+   * @param file the journal file.
+   * @param baseSequence the sequence number of the last command that is already part of the
+   *                     saved state; {@link #replay(Consumer)} skips commands up to it, and
+   *                     new commands are numbered after it.
+   * @param syncEvery the number of commands per fsync; 1 makes every append wait for its
+   *                  fsync.
+   * @param maxDelayMillis the longest time a command waits before it is written.
+   * @throws IOException if the file cannot be opened or read.
+   */
+
+  public CommandJournal(Path file, long baseSequence, int syncEvery, long maxDelayMillis)
+          throws IOException {
+    if (syncEvery < 1 || maxDelayMillis < 0) {
+      throw new IllegalArgumentException("Invalid journal sync settings");
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE);
+    this.syncEvery = syncEvery;
+    this.maxDelayNanos = maxDelayMillis * 1_000_000L;
+    this.baseSequence = baseSequence;
+
+    try {
+      long[] end = scan(null);
+      if (end[0] < channel.size()) {
+        channel.truncate(end[0]);
+        channel.force(true);
+      }
+      fileSize = end[0];
+      lastSequence = Math.max(baseSequence, end[1]);
+      durableSequence = lastSequence;
+    }
+    catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    writer = new Thread(this::writeLoop, "command-journal");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Hands the commands after the base sequence to a consumer, in the order they were
+   * appended.
+   * @param commands receives each command.
+   * @throws IOException if the file cannot be read.
+   */
+
+  public void replay(Consumer<String> commands) throws IOException {
+    synchronized (lock) {
+      scan(commands);
+    }
+  }
+
+  /**
+   * Appends a command. Depending on the sync interval, waits until it is on disk.
+   * @param command the command.
+   * @return the sequence number of the command.
+   * @throws IOException if the journal could not be written, now or earlier.
+   */
+
+  public long append(String command) throws IOException {
+    byte[] text = command.getBytes(StandardCharsets.UTF_8);
+    long sequence;
+    synchronized (lock) {
+      checkOpen();
+      sequence = ++lastSequence;
+      ensureCapacity(HEADER_SIZE + text.length);
+      ByteBuffer record = ByteBuffer.wrap(pending, pendingLength, HEADER_SIZE + text.length);
+      record.putInt(text.length).putInt(0).putLong(sequence).put(text);
+      checksum.reset();
+      checksum.update(pending, pendingLength + 8, HEADER_SIZE - 8 + text.length);
+      record.putInt(pendingLength + 4, (int) checksum.getValue());
+      pendingLength += HEADER_SIZE + text.length;
+
+      if (pendingCount++ == 0) {
+        pendingSince = System.nanoTime();
+        lock.notifyAll();
+      }
+      else if (pendingCount == syncEvery) {
+        lock.notifyAll();
+      }
+      if (syncEvery == 1) {
+        awaitDurable(sequence);
+      }
+    }
+    return sequence;
+  }
+
+  /**
+   * Waits until every appended command is on disk.
+   * @throws IOException if the journal could not be written.
+   */
+
+  public void sync() throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      awaitDurable(lastSequence);
+    }
+  }
+
+  /**
+   * Drops every command, written or waiting, once the state they lead to has been saved.
+   * Numbering carries on from the last sequence number.
+   * @throws IOException if the file cannot be truncated.
+   */
+
+  public void truncate() throws IOException {
+    synchronized (lock) {
+      checkOpen();
+      pendingLength = 0;
+      pendingCount = 0;
+      while (writing) {
+        waitForWriter();
+      }
+      channel.truncate(0);
+      channel.force(true);
+      fileSize = 0;
+      durableSequence = lastSequence;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * Returns the sequence number of the last appended command, or the base sequence if none
+   * has been appended.
+   * @return the sequence number.
+   */
+
+  public long lastSequence() {
+    synchronized (lock) {
+      return lastSequence;
+    }
+  }
+
+  /**
+   * Writes the waiting commands, stops the background thread and closes the file.
+   * @throws IOException if the waiting commands could not be written.
+   */
+
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      closing = true;
+      lock.notifyAll();
+    }
+    try {
+      writer.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    finally {
+      channel.close();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Writes groups of commands until the journal is closed.
+   */
+
+  private void writeLoop() {
+    while (true) {
+      byte[] batch;
+      int length;
+      long sequence;
+      long position;
+      synchronized (lock) {
+        while (!closing && !groupReady()) {
+          try {
+            if (pendingCount == 0) {
+              lock.wait();
+            }
+            else {
+              long remaining = pendingSince + maxDelayNanos - System.nanoTime();
+              if (remaining > 0) {
+                lock.wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+              }
+            }
+          }
+          catch (InterruptedException e) {
+            closing = true;
+          }
+        }
+        if (pendingCount == 0) {
+          return;
+        }
+        batch = pending;
+        length = pendingLength;
+        sequence = lastSequence;
+        position = fileSize;
+        pending = spare;
+        spare = batch;
+        pendingLength = 0;
+        pendingCount = 0;
+        writing = true;
+      }
+
+      IOException error = null;
+      try {
+        ByteBuffer bytes = ByteBuffer.wrap(batch, 0, length);
+        while (bytes.hasRemaining()) {
+          channel.write(bytes, position + bytes.position());
+        }
+        channel.force(false);
+      }
+      catch (IOException e) {
+        error = e;
+      }
+
+      synchronized (lock) {
+        writing = false;
+        if (error != null) {
+          failure = error;
+          closing = true;
+        }
+        else {
+          fileSize = position + length;
+          durableSequence = Math.max(durableSequence, sequence);
+        }
+        lock.notifyAll();
+        if (error != null) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Checks if the waiting commands should be written now. Called with the lock held.
+   */
+
+  private boolean groupReady() {
+    return pendingCount > 0 && (pendingCount >= syncEvery || waiting > 0
+            || System.nanoTime() - pendingSince >= maxDelayNanos);
+  }
+
+  /**
+   * Waits until the command with a sequence number is on disk. Called with the lock held.
+   */
+
+  private void awaitDurable(long sequence) throws IOException {
+    waiting++;
+    lock.notifyAll();
+    try {
+      while (durableSequence < sequence && failure == null) {
+        waitForWriter();
+      }
+    }
+    finally {
+      waiting--;
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Waits for the background thread to signal. Called with the lock held.
+   */
+
+  private void waitForWriter() throws IOException {
+    try {
+      lock.wait();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing the journal");
+    }
+  }
+
+  /**
+   * Fails if the journal is closed or could not be written.
+   */
+
+  private void checkOpen() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (closing) {
+      throw new IOException("Journal is closed");
+    }
+  }
+
+  /**
+   * Makes room for a record in the waiting commands.
+   */
+
+  private void ensureCapacity(int recordSize) {
+    if (pendingLength + recordSize > pending.length) {
+      byte[] larger = new byte[Math.max(pendingLength + recordSize, 2 * pending.length)];
+      System.arraycopy(pending, 0, larger, 0, pendingLength);
+      pending = larger;
+    }
+  }
+
+  /**
+   * Reads the complete records of the file from the start, handing the commands after the
+   * base sequence to a consumer.
+   * @return the end of the last complete record and its sequence number.
+   */
+
+  private long[] scan(Consumer<String> commands) throws IOException {
+    long size = channel.size();
+    long position = 0;
+    long sequence = 0;
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    CRC32 crc = new CRC32();
+    while (position + HEADER_SIZE <= size) {
+      header.clear();
+      readFully(header, position);
+      header.flip();
+      int length = header.getInt();
+      int expected = header.getInt();
+      long recordSequence = header.getLong();
+      if (length < 0 || length > MAX_COMMAND_SIZE
+              || position + HEADER_SIZE + length > size) {
+        break;
+      }
+
+      ByteBuffer text = ByteBuffer.allocate(length);
+      readFully(text, position + HEADER_SIZE);
+      crc.reset();
+      crc.update(header.array(), 8, HEADER_SIZE - 8);
+      crc.update(text.array(), 0, length);
+      if ((int) crc.getValue() != expected || recordSequence <= sequence) {
+        break;
+      }
+
+      if (commands != null && recordSequence > baseSequence) {
+        commands.accept(new String(text.array(), StandardCharsets.UTF_8));
+      }
+      sequence = recordSequence;
+      position += HEADER_SIZE + length;
+    }
+    return new long[] {position, sequence};
+  }
+
+  /**
+   * Fills a buffer from a position in the file.
+   */
+
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Unexpected end of journal");
+      }
+    }
+  }
+}
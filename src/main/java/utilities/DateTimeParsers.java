@@ -0,0 +1,158 @@
+package utilities;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Hand-written parsers for the fixed date and time layouts used by commands and imported
+ * files. Each parser reads the characters at their known positions and returns null when
+ * the text does not have exactly that layout or names a day the month does not have; the
+ * caller then falls back to its {@link java.time.format.DateTimeFormatter}, which handles
+ * every other input and reports the errors. Whenever a parser returns a value, it is the
+ * value the formatter would have returned.
+ */
+
+public final class DateTimeParsers {
+
+  private DateTimeParsers() {
+  }
+
+  /**
+   * Parses a date written as MM/dd/yyyy, or else as M/d/yy in the years 2000 to 2099.
+   * @param text the date.
+   * @return the date, or null if the text does not have one of the layouts.
+   */
+
+  public static LocalDate parseUsDate(String text) {
+    if (text.length() == 10) {
+      if (text.charAt(2) != '/' || text.charAt(5) != '/') {
+        return null;
+      }
+      return date(digits(text, 6, 10), digits(text, 0, 2), digits(text, 3, 5));
+    }
+
+    int firstSlash = text.indexOf('/');
+    int secondSlash = text.indexOf('/', firstSlash + 1);
+    if (firstSlash < 1 || firstSlash > 2 || secondSlash - firstSlash < 2
+            || secondSlash - firstSlash > 3 || text.length() != secondSlash + 3) {
+      return null;
+    }
+    int year = digits(text, secondSlash + 1, text.length());
+    return year < 0 ? null : date(2000 + year, digits(text, 0, firstSlash),
+            digits(text, firstSlash + 1, secondSlash));
+  }
+
+  /**
+   * Parses a time written as hh:mm a, such as 09:30 AM.
+   * @param text the time.
+   * @return the time, or null if the text does not have the layout.
+   */
+
+  public static LocalTime parseClockTime(String text) {
+    if (text.length() != 8 || text.charAt(2) != ':' || text.charAt(5) != ' '
+            || text.charAt(7) != 'M') {
+      return null;
+    }
+    int hour = digits(text, 0, 2);
+    int minute = digits(text, 3, 5);
+    char marker = text.charAt(6);
+    if (hour < 1 || hour > 12 || minute < 0 || minute > 59
+            || (marker != 'A' && marker != 'P')) {
+      return null;
+    }
+    return LocalTime.of(hour % 12 + (marker == 'P' ? 12 : 0), minute);
+  }
+
+  /**
+   * Parses a date written as yyyy-MM-dd.
+   * @param text the date.
+   * @return the date, or null if the text does not have the layout.
+   */
+
+  public static LocalDate parseIsoDate(String text) {
+    return parseIsoDate(text, 0, text.length());
+  }
+
+  /**
+   * Parses a date written as yyyy-MM-dd between two positions of a text, without copying
+   * it out.
+   * @param text the text.
+   * @param start the position of the first character of the date.
+   * @param end the position after the last character of the date.
+   * @return the date, or null if the characters do not have the layout.
+   */
+
+  public static LocalDate parseIsoDate(CharSequence text, int start, int end) {
+    if (end - start != 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+      return null;
+    }
+    return date(digits(text, start, start + 4), digits(text, start + 5, start + 7),
+            digits(text, start + 8, start + 10));
+  }
+
+  /**
+   * Parses a date and time written as yyyy-MM-dd'T'HH:mm.
+   * @param text the date and time.
+   * @return the date and time, or null if the text does not have the layout.
+   */
+
+  public static LocalDateTime parseIsoDateTime(String text) {
+    return parseIsoDateTime(text, 0, text.length());
+  }
+
+  /**
+   * Parses a date and time written as yyyy-MM-dd'T'HH:mm between two positions of a text,
+   * without copying it out.
+   * @param text the text.
+   * @param start the position of the first character of the date.
+   * @param end the position after the last character of the time.
+   * @return the date and time, or null if the characters do not have the layout.
+   */
+
+  public static LocalDateTime parseIsoDateTime(CharSequence text, int start, int end) {
+    if (end - start != 16 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-'
+            || text.charAt(start + 10) != 'T' || text.charAt(start + 13) != ':') {
+      return null;
+    }
+    LocalDate date = date(digits(text, start, start + 4), digits(text, start + 5, start + 7),
+            digits(text, start + 8, start + 10));
+    int hour = digits(text, start + 11, start + 13);
+    int minute = digits(text, start + 14, start + 16);
+    if (date == null || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+      return null;
+    }
+    return LocalDateTime.of(date, LocalTime.of(hour, minute));
+  }
+
+  /**
+   * Builds a date, or returns null if any part is missing or the day is not in the month.
+   */
+
+  private static LocalDate date(int year, int month, int day) {
+    if (year < 1 || month < 1 || month > 12 || day < 1) {
+      return null;
+    }
+    boolean leap = (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    int length = month == 2 ? (leap ? 29 : 28)
+            : (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    return day > length ? null : LocalDate.of(year, month, day);
+  }
+
+  /**
+   * Reads the ASCII digits between two positions as a number.
+   * @return the number, or -1 if a character is not a digit.
+   */
+
+  private static int digits(CharSequence text, int start, int end) {
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+}
@@ -0,0 +1,237 @@
+package view;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Scanner;
+
+/**
+ * This class represents a console user interface whose output is written on a background
+ * thread. Messages are appended to a ring buffer and the command that displayed them goes
+ * on at once; the writer thread drains whatever has collected in one write, so a burst of
+ * messages costs a few writes rather than one each. Output is complete once the view is
+ * flushed, which also happens before input is read. In quiet mode acknowledgements are
+ * dropped and only results and errors are shown.
+ */
+
+public class BufferedConsoleView extends UserView {
+
+  /**
+   * Number of characters the ring buffer holds.
+   */
+
+  static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private final Object lock = new Object();
+  private final char[] ring;
+  private final Writer out;
+  private final Scanner scanner;
+  private final boolean quiet;
+  private int head;
+  private int size;
+  private boolean writing;
+  private IOException failure;
+
+  /**
+   * Constructs a view over the console that shows acknowledgements.
+   */
+
+  public BufferedConsoleView() {
+    this(false);
+  }
+
+  /**
+   * Constructs a view over the console.
+   * @param quiet true to drop acknowledgements.
+   */
+
+  public BufferedConsoleView(boolean quiet) {
+    this(System.in, System.out, quiet);
+  }
+
+  /**
+   * Constructs a view reading input from one stream and writing messages to another.
+   * @param in the stream input is read from.
+   * @param out the stream messages are written to.
+   * @param quiet true to drop acknowledgements.
+   */
+
+  public BufferedConsoleView(InputStream in, OutputStream out, boolean quiet) {
+    this(in, out, quiet, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructs a view with a ring buffer of a given size.
+   * @param in the stream input is read from.
+   * @param out the stream messages are written to.
+   * @param quiet true to drop acknowledgements.
+   * @param capacity the number of characters the ring buffer holds.
+   */
+
+  BufferedConsoleView(InputStream in, OutputStream out, boolean quiet, int capacity) {
+    this.ring = new char[capacity];
+    this.out = new OutputStreamWriter(out);
+    this.scanner = new Scanner(in);
+    this.quiet = quiet;
+    Thread writer = new Thread(this::writeLoop, "console-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Appends a message to the output, as a line. Waits only if the ring buffer is full.
+   * @param message the message to be displayed.
+   */
+
+  @Override
+  public void displayMessage(String message) {
+    synchronized (lock) {
+      append(String.valueOf(message));
+      append(System.lineSeparator());
+    }
+  }
+
+  /**
+   * Appends an acknowledgement to the output, unless the view is quiet.
+   * @param message the acknowledgement.
+   */
+
+  @Override
+  public void displayAcknowledgement(String message) {
+    if (!quiet) {
+      displayMessage(message);
+    }
+  }
+
+  /**
+   * Writes out the pending output, then reads a line of input.
+   * @return user input as string.
+   */
+
+  @Override
+  public String getInput() {
+    flush();
+    return scanner.nextLine();
+  }
+
+  /**
+   * Waits until every message appended so far has been written out.
+   */
+
+  @Override
+  public void flush() {
+    synchronized (lock) {
+      while (size > 0 || writing) {
+        checkFailure();
+        await();
+      }
+      checkFailure();
+    }
+  }
+
+  /**
+   * Copies text into the ring buffer, waiting for the writer whenever it is full. Called
+   * with the lock held.
+   */
+
+  private void append(String text) {
+    int offset = 0;
+    while (offset < text.length()) {
+      while (size == ring.length) {
+        checkFailure();
+        await();
+      }
+      int tail = (head + size) % ring.length;
+      int count = Math.min(text.length() - offset,
+              Math.min(ring.length - size, ring.length - tail));
+      text.getChars(offset, offset + count, ring, tail);
+      if (size == 0) {
+        lock.notifyAll();
+      }
+      size += count;
+      offset += count;
+    }
+  }
+
+  /**
+   * Writes out the ring buffer as it fills, until writing fails. The part being written is
+   * not released to the appenders until it is out; the stream is flushed whenever the
+   * buffer has been drained.
+   */
+
+  private void writeLoop() {
+    while (true) {
+      int start;
+      int count;
+      synchronized (lock) {
+        while (size == 0) {
+          try {
+            lock.wait();
+          }
+          catch (InterruptedException e) {
+            return;
+          }
+        }
+        start = head;
+        count = Math.min(size, ring.length - head);
+        writing = true;
+      }
+
+      IOException error = null;
+      try {
+        out.write(ring, start, count);
+        boolean drained;
+        synchronized (lock) {
+          drained = size == count;
+        }
+        if (drained) {
+          out.flush();
+        }
+      }
+      catch (IOException e) {
+        error = e;
+      }
+
+      synchronized (lock) {
+        writing = false;
+        head = (head + count) % ring.length;
+        size -= count;
+        failure = error;
+        lock.notifyAll();
+        if (error != null) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits for the writer to signal. Called with the lock held.
+   */
+
+  private void await() {
+    lock.notifyAll();
+    try {
+      lock.wait();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedIOException(
+              new InterruptedIOException("Interrupted while writing to the console"));
+    }
+  }
+
+  /**
+   * Fails if the output could not be written. Called with the lock held.
+   */
+
+  private void checkFailure() {
+    if (failure != null) {
+      throw new UncheckedIOException(failure);
+    }
+  }
+}
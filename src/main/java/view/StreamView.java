@@ -0,0 +1,83 @@
+package view;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class represents a user interface over a pair of streams, in UTF-8. Messages are
+ * collected in a buffer and written out when it fills, when the view is flushed or when
+ * input is read and none is waiting, so a run of commands sent together does not pay for
+ * a write per message.
+ */
+
+public class StreamView extends UserView {
+  private final BufferedReader in;
+  private final BufferedWriter out;
+
+  /**
+   * Constructs a view reading input from one stream and writing messages to another.
+   * @param in the stream input is read from.
+   * @param out the stream messages are written to.
+   */
+
+  public StreamView(InputStream in, OutputStream out) {
+    this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+  }
+
+  /**
+   * Adds a message to the buffer, as a line.
+   * @param message the message to be displayed.
+   */
+
+  @Override
+  public void displayMessage(String message) {
+    try {
+      out.write(String.valueOf(message));
+      out.newLine();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads a line of input. The buffered messages are written out first, unless more input
+   * is already waiting.
+   * @return the line, or null at the end of the input.
+   */
+
+  @Override
+  public String getInput() {
+    try {
+      if (!in.ready()) {
+        out.flush();
+      }
+      return in.readLine();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes out the buffered messages.
+   */
+
+  @Override
+  public void flush() {
+    try {
+      out.flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -19,4 +19,22 @@ public abstract class UserView {
    */
 
   public abstract String getInput();
+
+  /**
+   * Displays the acknowledgement of a command that succeeded. Views that are quiet may
+   * drop it; by default it is displayed as any other message.
+   * @param message the acknowledgement.
+   */
+
+  public void displayAcknowledgement(String message) {
+    displayMessage(message);
+  }
+
+  /**
+   * Writes out the messages the view still holds. Views that display each message at once
+   * hold none.
+   */
+
+  public void flush() {
+  }
 }
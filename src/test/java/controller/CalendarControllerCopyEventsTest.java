@@ -380,9 +380,9 @@ public class CalendarControllerCopyEventsTest {
             + "2025-03-12T01:00 repeats MWF for 3 times");
     controller.processCommand("create event MeetingTwo from 2025-03-12T01:00 to 2025-03-12T02:00");
     Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
+                    + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ], "
                     + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
-                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
-                    + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ]]",
+                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
     controller.processCommand("create calendar --name Calendar2 --timezone US/Pacific");
@@ -409,9 +409,9 @@ public class CalendarControllerCopyEventsTest {
     controller.processCommand("create event MeetingFour on 2025-03-18T00:00");
     Assert.assertEquals("[[MeetingZero, 2025-03-10T00:00, 2025-03-11T00:00, ], "
                     + "[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
+                    + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ], "
                     + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
                     + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
-                    + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ], "
                     + "[MeetingThree, 2025-03-17T01:00, 2025-03-18T00:00, ], "
                     + "[MeetingFour, 2025-03-18T00:00, 2025-03-19T00:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 10, 00, 00),
@@ -427,9 +427,9 @@ public class CalendarControllerCopyEventsTest {
             + "2025-03-12 --target Calendar2 to 2025-09-01");
     controller.processCommand("use calendar --name Calendar2");
     Assert.assertEquals("[[MeetingOne, 2025-05-31T21:00, 2025-05-31T22:00, ], "
+                    + "[MeetingTwo, 2025-05-31T22:00, 2025-05-31T23:00, ], "
                     + "[MeetingOne, 2025-06-02T21:00, 2025-06-02T22:00, ], "
                     + "[MeetingOne, 2025-06-05T21:00, 2025-06-05T22:00, ], "
-                    + "[MeetingTwo, 2025-05-31T22:00, 2025-05-31T23:00, ], "
                     + "[MeetingThree, 2025-06-05T22:00, 2025-06-06T21:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 5, 30, 00, 00),
                     LocalDateTime.of(2025, 6, 20, 00, 00)).toString());
@@ -443,4 +443,37 @@ public class CalendarControllerCopyEventsTest {
             controller.model.getEventsBetween(LocalDateTime.of(2025, 8, 30, 00, 00),
                     LocalDateTime.of(2025, 9, 20, 00, 00)).toString());
   }
+
+  /**
+   * Tests that a copy reports each event as copied or skipped, with its times in the
+   * target calendar's timezone, and that skipped events leave the target unchanged.
+   */
+
+  @Test
+  public void testCopyEventsReportsCopiedAndSkipped() {
+    controller.processCommand("create calendar --name SourceCal --timezone America/New_York");
+    controller.processCommand("create calendar --name TargetCal --timezone US/Pacific");
+    controller.processCommand("use calendar --name TargetCal");
+    controller.processCommand("create event Busy from 2025-04-03T06:00 to 2025-04-03T07:00");
+    controller.processCommand("use calendar --name SourceCal");
+    controller.processCommand("create event Standup from 2025-04-01T09:00 to 2025-04-01T09:30");
+    controller.processCommand("create event Review from 2025-04-01T13:00 to 2025-04-01T14:00");
+    controller.processCommand("create event Late from 2025-04-02T09:00 to 2025-04-02T10:00");
+
+    Assert.assertEquals("[[Standup, 2025-04-03T06:00, 2025-04-03T06:30, , false], "
+                    + "[Review, 2025-04-03T10:00, 2025-04-03T11:00, , true]]",
+            controller.model.copyEvents(LocalDate.of(2025, 4, 1), "TargetCal",
+                    LocalDate.of(2025, 4, 3)).toString());
+    Assert.assertEquals("[[Late, 2025-04-10T09:00, 2025-04-10T10:00, , true]]",
+            controller.model.copyEvents("Late", LocalDateTime.of(2025, 4, 2, 9, 0),
+                    "SourceCal", LocalDateTime.of(2025, 4, 10, 9, 0)).toString());
+    Assert.assertEquals("[]",
+            controller.model.copyEvents("Missing", LocalDateTime.of(2025, 4, 2, 9, 0),
+                    "TargetCal", LocalDateTime.of(2025, 4, 10, 9, 0)).toString());
+
+    controller.processCommand("use calendar --name TargetCal");
+    Assert.assertEquals("[[Busy, 2025-04-03T06:00, 2025-04-03T07:00, ], "
+                    + "[Review, 2025-04-03T10:00, 2025-04-03T11:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 4, 3)).toString());
+  }
 }
@@ -1,12 +1,25 @@
 package controller;
 
+import exception.EventConflictException;
 import exception.InvalidCommandException;
+import model.CalendarSession;
+import model.SingleEvent;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import view.UserView;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Tests for creating, editing and using calendar.
@@ -467,4 +480,345 @@ public class CalendarControllerCreateEditUseCalendarTest {
     Assert.assertEquals("[[WorkMeeting, 2025-03-10T10:00, 2025-03-10T11:00, ]]",
             controller.model.getEventsOn(java.time.LocalDate.of(2025, 3, 10)).toString());
   }
+
+  /**
+   * Tests that events created after a timezone change are placed in the new timezone, that
+   * day queries follow the new timezone and that changing back restores the original times.
+   */
+
+  @Test
+  public void testEditCalendarTimezoneRoundTrip() {
+    controller.processCommand("create calendar --name WorkCal --timezone America/New_York");
+    controller.processCommand("use calendar --name WorkCal");
+    controller.processCommand("create event Late from 2025-03-27T22:00 to 2025-03-27T23:00");
+    controller.processCommand("edit calendar --name WorkCal --property timezone Asia/Kolkata");
+    Assert.assertEquals("[]", controller.model.getEventsOn(LocalDate.of(2025, 3, 27)).toString());
+    Assert.assertEquals("[[Late, 2025-03-28T07:30, 2025-03-28T08:30, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 28)).toString());
+    Assert.assertTrue(controller.model.isBusy(LocalDateTime.of(2025, 3, 28, 8, 0)));
+
+    controller.processCommand("create event Early from 2025-03-28T09:00 to 2025-03-28T10:00");
+    controller.processCommand("edit event startDateTime Late from 2025-03-28T07:30 "
+            + "to 2025-03-28T08:30 with 2025-03-28T08:00");
+    controller.processCommand("edit calendar --name WorkCal --property timezone America/New_York");
+    Assert.assertEquals("[[Late, 2025-03-27T22:30, 2025-03-27T23:00, ], "
+                    + "[Early, 2025-03-27T23:30, 2025-03-28T00:30, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 27)).toString());
+  }
+
+  /**
+   * Tests that queries, event creation and copies to another calendar can run on several
+   * threads at once without losing or corrupting events.
+   * @throws Exception if a thread fails.
+   */
+
+  @Test(timeout = 60000)
+  public void testConcurrentQueriesWritesAndCopies() throws Exception {
+    controller.processCommand("create calendar --name Work --timezone America/New_York");
+    controller.processCommand("create calendar --name Backup --timezone Europe/London");
+    controller.processCommand("use calendar --name Work");
+    LocalDate first = LocalDate.of(2025, 1, 1);
+    for (int day = 0; day < 100; day++) {
+      controller.model.createSingleEvent(new SingleEvent("Standup",
+              first.plusDays(day).atTime(9, 0), first.plusDays(day).atTime(9, 30),
+              "", "", true));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> tasks = new ArrayList<>();
+    tasks.add(pool.submit(() -> {
+      for (int day = 0; day < 100; day++) {
+        controller.model.createSingleEvent(new SingleEvent("Review",
+                first.plusDays(day).atTime(15, 0), first.plusDays(day).atTime(16, 0),
+                "", "", true));
+      }
+    }));
+    tasks.add(pool.submit(() -> {
+      for (int day = 0; day < 100; day++) {
+        controller.model.copyEvents("Standup", first.plusDays(day).atTime(9, 0),
+                "Backup", first.plusDays(day).atTime(9, 0));
+      }
+    }));
+    for (int reader = 0; reader < 2; reader++) {
+      tasks.add(pool.submit(() -> {
+        for (int day = 0; day < 100; day++) {
+          int size = controller.model.getEventsOn(first.plusDays(day)).size();
+          Assert.assertTrue(size == 1 || size == 2);
+          Assert.assertTrue(controller.model.isBusy(first.plusDays(day).atTime(9, 15)));
+          Assert.assertTrue(controller.model.exportCalendar().size() >= 100);
+        }
+        return null;
+      }));
+    }
+    for (Future<?> task : tasks) {
+      task.get();
+    }
+    pool.shutdown();
+
+    Assert.assertEquals(200, controller.model.exportCalendar().size());
+    controller.processCommand("use calendar --name Backup");
+    Assert.assertEquals(100, controller.model.exportCalendar().size());
+    Assert.assertEquals("[[Standup, 2025-01-01T14:00, 2025-01-01T14:30, ]]",
+            controller.model.getEventsOn(first).toString());
+  }
+
+  /**
+   * Tests that an event rejected for a conflict keeps the times it was handed in with, so
+   * it can be created as it is in another calendar.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testRejectedEventKeepsItsTimes() throws Exception {
+    controller.processCommand("create calendar --name Work --timezone America/New_York");
+    controller.processCommand("create calendar --name Spare --timezone America/New_York");
+    controller.processCommand("use calendar --name Work");
+    controller.processCommand("create event Standup from 2025-03-12T09:00 to 2025-03-12T09:30");
+    SingleEvent clash = new SingleEvent("Clash", LocalDateTime.of(2025, 3, 12, 9, 15),
+            LocalDateTime.of(2025, 3, 12, 9, 45), "", "", true);
+    SingleEvent retro = new SingleEvent("Retro", LocalDateTime.of(2025, 3, 12, 9, 20),
+            LocalDateTime.of(2025, 3, 12, 9, 50), "", "", true);
+    SingleEvent lunch = new SingleEvent("Lunch", LocalDateTime.of(2025, 3, 12, 12, 0),
+            LocalDateTime.of(2025, 3, 12, 13, 0), "", "", true);
+    try {
+      controller.model.createSingleEvent(clash);
+      Assert.fail("Expected a conflict");
+    }
+    catch (EventConflictException e) {
+      // expected
+    }
+    Assert.assertEquals(List.of(retro), controller.model.createSingleEvents(List.of(lunch,
+            retro)));
+
+    controller.processCommand("use calendar --name Spare");
+    controller.model.createSingleEvent(clash);
+    Assert.assertEquals("[[Clash, 2025-03-12T09:15, 2025-03-12T09:45, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 12)).toString());
+    controller.processCommand("create calendar --name Other --timezone America/New_York");
+    controller.processCommand("use calendar --name Other");
+    Assert.assertEquals(List.of(), controller.model.createSingleEvents(List.of(retro)));
+    Assert.assertEquals("[[Retro, 2025-03-12T09:20, 2025-03-12T09:50, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 12)).toString());
+  }
+
+  /**
+   * Tests that a visitor may change the calendar it visits, and that it keeps seeing the
+   * calendar as it was when the visit started.
+   */
+
+  @Test(timeout = 60000)
+  public void testVisitorChangesCalendarItVisits() throws Exception {
+    controller.processCommand("create event MeetingOne from 2025-03-12T00:00 to "
+            + "2025-03-12T01:00 repeats MFW until 2025-03-18T00:00");
+    controller.processCommand("create event Lunch from 2025-03-12T12:00 to 2025-03-12T13:00");
+
+    List<String> seen = new ArrayList<>();
+    controller.model.forEachEvent((subject, start, end, description, location, isPublic) -> {
+      seen.add(subject + " " + start);
+      try {
+        if (subject.equals("Lunch")) {
+          controller.model.editEvents("subject", "MeetingOne", "MeetingTwo");
+          controller.model.createSingleEvent(new SingleEvent("Dinner",
+                  LocalDateTime.of(2025, 3, 12, 19, 0), LocalDateTime.of(2025, 3, 12, 20, 0),
+                  "", "", true));
+        }
+      }
+      catch (Exception e) {
+        throw new AssertionError(e);
+      }
+    });
+
+    Assert.assertEquals("[MeetingOne 2025-03-12T00:00, MeetingOne 2025-03-14T00:00, "
+            + "MeetingOne 2025-03-17T00:00, Lunch 2025-03-12T12:00]", seen.toString());
+    Assert.assertEquals("[[MeetingTwo, 2025-03-12T00:00, 2025-03-12T01:00, ], "
+                    + "[Lunch, 2025-03-12T12:00, 2025-03-12T13:00, ], "
+                    + "[Dinner, 2025-03-12T19:00, 2025-03-12T20:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 12)).toString());
+  }
+
+  /**
+   * Tests that each session keeps its own active calendar.
+   */
+
+  @Test
+  public void testSessionsSwitchCalendarsIndependently() {
+    controller.processCommand("create calendar --name Work --timezone Europe/London");
+    CalendarSession other = controller.openSession();
+    controller.processCommand("use calendar --name Work", other);
+    controller.processCommand("create event Standup from 2025-03-10T09:00 to 2025-03-10T09:30",
+            other);
+    controller.processCommand("create event Lunch from 2025-03-10T12:00 to 2025-03-10T13:00");
+
+    Assert.assertEquals("Default", controller.getActiveCalendarName());
+    Assert.assertEquals("Work", other.getActiveCalendarName());
+    Assert.assertEquals("[[Lunch, 2025-03-10T12:00, 2025-03-10T13:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 10)).toString());
+    Assert.assertEquals("[[Standup, 2025-03-10T09:00, 2025-03-10T09:30, ]]",
+            other.getEventsOn(LocalDate.of(2025, 3, 10)).toString());
+
+    controller.processCommand("edit calendar --name Work --property name Office");
+    Assert.assertEquals("Office", other.getActiveCalendarName());
+    Assert.assertEquals("Default", controller.openSession().getActiveCalendarName());
+  }
+
+  /**
+   * Tests that find free merges the busy times of calendars in different timezones, with
+   * events that overlap, start before the window or come from a recurring rule, and gives
+   * the free times in the active calendar's timezone.
+   */
+
+  @Test
+  public void testFindFreeAcrossTimezones() {
+    controller.processCommand("create calendar --name NewYork --timezone America/New_York");
+    controller.processCommand("create calendar --name London --timezone Europe/London");
+    controller.processCommand("use calendar --name NewYork");
+    controller.processCommand("create event Night from 2025-03-09T22:00 to 2025-03-10T08:30");
+    controller.processCommand("create event Standup from 2025-03-10T09:00 to 2025-03-10T09:30");
+    controller.processCommand("create event Lunch from 2025-03-10T12:00 to 2025-03-10T13:00");
+    controller.processCommand("use calendar --name London");
+    controller.processCommand("create event Review from 2025-03-10T14:00 to 2025-03-10T15:00");
+    controller.processCommand("create event Sync from 2025-03-10T16:00 to 2025-03-10T17:30 "
+            + "repeats MTWRF for 2 times");
+    controller.processCommand("use calendar --name NewYork");
+
+    List<List> slots = controller.model.findFreeSlots(List.of("NewYork", "London"),
+            LocalDateTime.of(2025, 3, 10, 8, 0), LocalDateTime.of(2025, 3, 10, 18, 0),
+            Duration.ofMinutes(45), 10);
+    Assert.assertEquals("[[2025-03-10T11:00, 2025-03-10T12:00], "
+            + "[2025-03-10T13:30, 2025-03-10T18:00]]", slots.toString());
+
+    slots = controller.model.findFreeSlots(List.of("NewYork", "London"),
+            LocalDateTime.of(2025, 3, 10, 8, 0), LocalDateTime.of(2025, 3, 10, 18, 0),
+            Duration.ofMinutes(30), 2);
+    Assert.assertEquals("[[2025-03-10T08:30, 2025-03-10T09:00], "
+            + "[2025-03-10T09:30, 2025-03-10T10:00]]", slots.toString());
+
+    List<String> shown = new ArrayList<>();
+    controller.view = new UserView() {
+      @Override
+      public void displayMessage(String message) {
+        shown.add(message);
+      }
+
+      @Override
+      public String getInput() {
+        return null;
+      }
+    };
+    controller.processCommand("find free --calendars \"London,NewYork\" from 2025-03-10T13:00 "
+            + "to 2025-03-10T14:00 --duration 30 --limit 1");
+    controller.processCommand("find free --calendars London from 2025-03-10T12:15 "
+            + "to 2025-03-10T13:15 --duration 61");
+    Assert.assertEquals(List.of("• 2025-03-10T13:30 - 2025-03-10T14:00",
+            "Command processed: find free --calendars \"London,NewYork\" from "
+                    + "2025-03-10T13:00 to 2025-03-10T14:00 --duration 30 --limit 1",
+            "No free time found",
+            "Command processed: find free --calendars London from 2025-03-10T12:15 "
+                    + "to 2025-03-10T13:15 --duration 61"), shown);
+  }
+
+  /**
+   * Tests that find free agrees with checking the status of every calendar minute by
+   * minute, in both storage modes.
+   */
+
+  @Test
+  public void testFindFreeMatchesStatusChecks() {
+    for (boolean compact : new boolean[] {false, true}) {
+      controller = new CalendarController(compact);
+      Random random = new Random(compact ? 7 : 3);
+      String[] names = {"Tokyo", "Berlin", "Denver"};
+      String[] zones = {"Asia/Tokyo", "Europe/Berlin", "America/Denver"};
+      for (int c = 0; c < names.length; c++) {
+        controller.processCommand("create calendar --name " + names[c] + " --timezone "
+                + zones[c]);
+        controller.processCommand("use calendar --name " + names[c]);
+        for (int i = 0; i < 40; i++) {
+          LocalDateTime start = LocalDateTime.of(2025, 3, 28, 0, 0)
+                  .plusMinutes(15L * random.nextInt(4 * 24 * 3));
+          try {
+            controller.processCommand("create event E" + i + " from " + start + " to "
+                    + start.plusMinutes(15L * (1 + random.nextInt(8))));
+          }
+          catch (EventConflictException e) {
+            // overlapping events are skipped
+          }
+        }
+      }
+      controller.processCommand("use calendar --name Berlin");
+
+      LocalDateTime from = LocalDateTime.of(2025, 3, 29, 0, 0);
+      LocalDateTime to = LocalDateTime.of(2025, 3, 31, 0, 0);
+      List<List> expected = new ArrayList<>();
+      CalendarSession[] sessions = new CalendarSession[names.length];
+      for (int c = 0; c < names.length; c++) {
+        sessions[c] = controller.openSession();
+        sessions[c].switchCalendar(names[c]);
+      }
+      LocalDateTime freeFrom = null;
+      for (LocalDateTime minute = from; minute.isBefore(to); minute = minute.plusMinutes(1)) {
+        Instant instant = minute.atZone(ZoneId.of("Europe/Berlin"))
+                .toInstant();
+        boolean busy = false;
+        for (int c = 0; c < names.length; c++) {
+          busy |= sessions[c].isBusy(LocalDateTime.ofInstant(instant,
+                  ZoneId.of(zones[c])));
+        }
+        if (busy && freeFrom != null) {
+          addIfLongEnough(expected, freeFrom, minute);
+          freeFrom = null;
+        }
+        else if (!busy && freeFrom == null) {
+          freeFrom = minute;
+        }
+      }
+      if (freeFrom != null) {
+        addIfLongEnough(expected, freeFrom, to);
+      }
+
+      Assert.assertEquals(expected, controller.model.findFreeSlots(List.of(names), from, to,
+              Duration.ofMinutes(45), 1000));
+    }
+  }
+
+  /**
+   * Adds a free time to a list if it lasts at least 45 minutes of Berlin wall clock, which
+   * equals real time away from the change of offset.
+   */
+
+  private static void addIfLongEnough(List<List> slots, LocalDateTime start,
+                                      LocalDateTime end) {
+    ZoneId berlin = ZoneId.of("Europe/Berlin");
+    if (Duration.between(start.atZone(berlin), end.atZone(berlin)).toMinutes() >= 45) {
+      slots.add(List.of(start, end));
+    }
+  }
+
+  /**
+   * Tests that find free rejects unknown calendars and invalid durations.
+   */
+
+  @Test
+  public void testFindFreeInvalid() {
+    String[] commands = {
+        "find free --calendars Default,Missing from 2025-03-10T08:00 to 2025-03-10T18:00 "
+            + "--duration 30",
+        "find free --calendars Default from 2025-03-10T08:00 to 2025-03-10T18:00 "
+            + "--duration 0",
+        "find free --calendars Default from 2025-03-10T18:00 to 2025-03-10T08:00 "
+            + "--duration 30",
+        "find free --calendars Default from 2025-03-10T08:00 to 2025-03-10T18:00 "
+            + "--duration 30 --limit x",
+        "find free Default"
+    };
+    for (String command : commands) {
+      try {
+        controller.processCommand(command);
+        Assert.fail("Expected InvalidCommandException for " + command);
+      }
+      catch (InvalidCommandException e) {
+        // expected
+      }
+    }
+  }
 }
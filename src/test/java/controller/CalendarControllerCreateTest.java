@@ -631,8 +631,8 @@ public class CalendarControllerCreateTest {
             + "2025-03-12T00:00 to 2025-03-12T01:00");
     controller.processCommand("create event --autoDecline MeetingTwo from "
             + "2025-03-11T23:00 to 2025-03-12T00:00");
-    Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
-                    + "[MeetingTwo, 2025-03-11T23:00, 2025-03-12T00:00, ]]",
+    Assert.assertEquals("[[MeetingTwo, 2025-03-11T23:00, 2025-03-12T00:00, ], "
+                    + "[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 11, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
   }
@@ -763,10 +763,10 @@ public class CalendarControllerCreateTest {
     controller.processCommand("create event MeetingTwo from 2025-03-12T01:00 to"
             + " 2025-03-12T02:00 repeats MFW until 2025-03-18T00:00");
     Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
-                    + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
-                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
                     + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ], "
+                    + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
                     + "[MeetingTwo, 2025-03-14T01:00, 2025-03-14T02:00, ], "
+                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
                     + "[MeetingTwo, 2025-03-17T01:00, 2025-03-17T02:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
@@ -782,9 +782,9 @@ public class CalendarControllerCreateTest {
             + "2025-03-12T01:00 repeats MFW until 2025-03-18T00:00");
     controller.processCommand("create event MeetingTwo on 2025-03-13 repeats TR until 2025-03-19");
     Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
+                    + "[MeetingTwo, 2025-03-13T00:00, 2025-03-14T00:00, ], "
                     + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
                     + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
-                    + "[MeetingTwo, 2025-03-13T00:00, 2025-03-14T00:00, ], "
                     + "[MeetingTwo, 2025-03-18T00:00, 2025-03-19T00:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
@@ -824,6 +824,38 @@ public class CalendarControllerCreateTest {
     }
   }
 
+  /**
+   * Invalid long recurring events that first share a weekday years after they start.
+   */
+
+  @Test (expected = EventConflictException.class)
+  public void testInvalidRecurringRecurringCommand3() {
+    try {
+      controller.processCommand("create event MeetingOne from 2025-03-10T10:00 "
+              + "to 2025-03-10T11:00 repeats M for 1000 times");
+      controller.processCommand("create event MeetingTwo from 2030-01-01T10:30 "
+              + "to 2030-01-01T11:30 repeats MT for 2 times");
+    } catch (Exception e) {
+      Assert.assertEquals("Event Conflict Occurred", e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Valid long recurring events that only touch on shared weekdays.
+   */
+
+  @Test
+  public void testValidRecurringRecurringCommand3() {
+    controller.processCommand("create event MeetingOne from 2025-03-10T10:00 "
+            + "to 2025-03-10T11:00 repeats M for 1000 times");
+    controller.processCommand("create event MeetingTwo from 2030-01-01T11:00 "
+            + "to 2030-01-01T12:00 repeats MT for 2 times");
+    Assert.assertEquals("[[MeetingOne, 2030-01-07T10:00, 2030-01-07T11:00, ], "
+                    + "[MeetingTwo, 2030-01-07T11:00, 2030-01-07T12:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2030, 1, 7)).toString());
+  }
+
   /**
    * Valid Recurring event followed by Single event with autoDecline.
    */
@@ -835,9 +867,9 @@ public class CalendarControllerCreateTest {
     controller.processCommand("create event --autoDecline MeetingTwo from "
             + "2025-03-12T01:00 to 2025-03-12T02:00");
     Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
+                    + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ], "
                     + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
-                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
-                    + "[MeetingTwo, 2025-03-12T01:00, 2025-03-12T02:00, ]]",
+                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
   }
@@ -865,4 +897,57 @@ public class CalendarControllerCreateTest {
     Assert.assertEquals("[[Meeting1, 2025-03-10, 10:00, 2025-03-11, 00:00, , , true]]",
             controller.model.exportCalendar().toString());
   }
+
+  /**
+   * Compact storage answers queries and detects conflicts like the object storage.
+   */
+
+  @Test
+  public void testCompactStorageCreate() {
+    CalendarController compact = new CalendarController(true);
+    for (int day = 10; day < 20; day++) {
+      for (int hour = 0; hour < 24; hour++) {
+        compact.processCommand(String.format("create event Slot from 2025-03-%02dT%02d:00 "
+                + "to 2025-03-%02dT%02d:30", day, hour, day, hour));
+      }
+    }
+    compact.processCommand("create event Weekly from 2025-03-10T09:30 to 2025-03-10T10:00 "
+            + "repeats M for 3 times");
+    Assert.assertEquals("[[Slot, 2025-03-12T09:00, 2025-03-12T09:30, ], "
+                    + "[Slot, 2025-03-12T10:00, 2025-03-12T10:30, ]]",
+            compact.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 9, 0),
+                    LocalDateTime.of(2025, 3, 12, 10, 30)).toString());
+    Assert.assertEquals(24, compact.model.getEventsOn(LocalDate.of(2025, 3, 15)).size());
+    Assert.assertTrue(compact.model.isBusy(LocalDateTime.of(2025, 3, 15, 5, 15)));
+    Assert.assertFalse(compact.model.isBusy(LocalDateTime.of(2025, 3, 15, 5, 45)));
+    try {
+      compact.processCommand("create event --autoDecline Clash from 2025-03-18T07:15 "
+              + "to 2025-03-18T07:45");
+      Assert.fail();
+    } catch (EventConflictException e) {
+      Assert.assertEquals("Event Conflict Occurred", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests that command words are matched in any case and quoted subjects keep their spaces,
+   * while import stays lower case only.
+   */
+
+  @Test
+  public void testCommandWordsAnyCaseAndQuotedSubject() {
+    controller.processCommand("CREATE Event 'Team sync' from 2025-03-12T10:00 "
+            + "to 2025-03-12T11:00");
+    controller.processCommand("Edit Event location \"Team sync\" from 2025-03-12T10:00 "
+            + "to 2025-03-12T11:00 with Room");
+    Assert.assertEquals("[[Team sync, 2025-03-12T10:00, 2025-03-12T11:00, Room]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 12)).toString());
+    try {
+      controller.processCommand("Import cal events.csv");
+      Assert.fail("Expected an invalid command");
+    }
+    catch (InvalidCommandException e) {
+      Assert.assertEquals("Invalid command", e.getMessage());
+    }
+  }
 }
@@ -1,5 +1,6 @@
 package controller;
 
+import exception.EventConflictException;
 import exception.InvalidCommandException;
 
 import org.junit.Assert;
@@ -182,19 +183,19 @@ public class CalendarControllerEditTest {
     controller.processCommand("create event MeetingOne from 2025-03-12T01:00 to 2025-03-12T02:00");
     controller.processCommand("create event MeetingOne from 2025-03-12T02:00 to 2025-03-12T03:00");
     Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
-                    + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
-                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ], "
                     + "[MeetingOne, 2025-03-12T01:00, 2025-03-12T02:00, ], "
-                    + "[MeetingOne, 2025-03-12T02:00, 2025-03-12T03:00, ]]",
+                    + "[MeetingOne, 2025-03-12T02:00, 2025-03-12T03:00, ], "
+                    + "[MeetingOne, 2025-03-14T00:00, 2025-03-14T01:00, ], "
+                    + "[MeetingOne, 2025-03-17T00:00, 2025-03-17T01:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
     controller.processCommand("edit events subject MeetingOne from "
             + "2025-03-13T00:00 with MeetingTwo");
     Assert.assertEquals("[[MeetingOne, 2025-03-12T00:00, 2025-03-12T01:00, ], "
-                    + "[MeetingTwo, 2025-03-14T00:00, 2025-03-14T01:00, ], "
-                    + "[MeetingTwo, 2025-03-17T00:00, 2025-03-17T01:00, ], "
                     + "[MeetingOne, 2025-03-12T01:00, 2025-03-12T02:00, ], "
-                    + "[MeetingOne, 2025-03-12T02:00, 2025-03-12T03:00, ]]",
+                    + "[MeetingOne, 2025-03-12T02:00, 2025-03-12T03:00, ], "
+                    + "[MeetingTwo, 2025-03-14T00:00, 2025-03-14T01:00, ], "
+                    + "[MeetingTwo, 2025-03-17T00:00, 2025-03-17T01:00, ]]",
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
   }
@@ -547,4 +548,112 @@ public class CalendarControllerEditTest {
             controller.model.getEventsBetween(LocalDateTime.of(2025, 3, 12, 00, 00),
                     LocalDateTime.of(2025, 3, 20, 00, 00)).toString());
   }
+
+  /**
+   * Conflict checks after an edit use the edited times, not the original ones.
+   */
+
+  @Test
+  public void testValidEditCommand17() {
+    controller.processCommand("create event MeetingOne from 2025-03-12T09:00 to 2025-03-12T10:00");
+    controller.processCommand("edit event startDateTime MeetingOne from 2025-03-12T09:00 "
+            + "to 2025-03-12T10:00 with 2025-03-12T08:00");
+    controller.processCommand("edit event endDateTime MeetingOne from 2025-03-12T08:00 "
+            + "to 2025-03-12T10:00 with 2025-03-12T08:30");
+    controller.processCommand("create event MeetingTwo from 2025-03-12T09:00 to 2025-03-12T10:00");
+    Assert.assertEquals("[[MeetingOne, 2025-03-12T08:00, 2025-03-12T08:30, ], "
+                    + "[MeetingTwo, 2025-03-12T09:00, 2025-03-12T10:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 03, 12)).toString());
+    try {
+      controller.processCommand("create event MeetingThree from 2025-03-12T08:15 "
+              + "to 2025-03-12T08:45");
+      Assert.fail("Expected a conflict with the edited event");
+    }
+    catch (EventConflictException e) {
+      Assert.assertEquals("Event Conflict Occurred", e.getMessage());
+    }
+  }
+
+  /**
+   * Moving a single event to another day moves it between day lookups.
+   */
+
+  @Test
+  public void testValidEditCommand18() {
+    controller.processCommand("create event MeetingOne from 2025-03-12T09:00 to 2025-03-12T10:00");
+    controller.processCommand("edit event startDateTime MeetingOne from 2025-03-12T09:00 "
+            + "to 2025-03-12T10:00 with 2025-03-11T09:00");
+    Assert.assertEquals("[]",
+            controller.model.getEventsOn(LocalDate.of(2025, 03, 12)).toString());
+    Assert.assertEquals("[[MeetingOne, 2025-03-11T09:00, 2025-03-12T10:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 03, 11)).toString());
+  }
+
+  /**
+   * Editing a long recurring event from a date onwards only changes the later occurrences.
+   */
+
+  @Test
+  public void testValidEditCommand19() {
+    controller.processCommand("create event Standup from 2025-01-01T09:00 to 2025-01-01T09:15 "
+            + "repeats MTWRF for 5000 times");
+    controller.processCommand("edit events location Standup from 2030-06-03T00:00 with Lobby");
+    Assert.assertEquals("[[Standup, 2030-05-31T09:00, 2030-05-31T09:15, ]]",
+            controller.model.getEventsOn(LocalDate.of(2030, 5, 31)).toString());
+    Assert.assertEquals("[[Standup, 2030-06-03T09:00, 2030-06-03T09:15, Lobby]]",
+            controller.model.getEventsOn(LocalDate.of(2030, 6, 3)).toString());
+    controller.processCommand("edit event endDateTime Standup from 2030-06-04T09:00 "
+            + "to 2030-06-04T09:15 with 2030-06-04T09:45");
+    Assert.assertEquals("[[Standup, 2030-06-04T09:00, 2030-06-04T09:45, Lobby]]",
+            controller.model.getEventsOn(LocalDate.of(2030, 6, 4)).toString());
+    Assert.assertEquals("[[Standup, 2030-06-05T09:00, 2030-06-05T09:15, Lobby]]",
+            controller.model.getEventsOn(LocalDate.of(2030, 6, 5)).toString());
+    Assert.assertTrue(controller.model.isBusy(LocalDateTime.of(2030, 6, 4, 9, 30)));
+    Assert.assertFalse(controller.model.isBusy(LocalDateTime.of(2030, 6, 5, 9, 30)));
+  }
+
+  /**
+   * Editing by name after a rename only reaches events that carry the new name.
+   */
+
+  @Test
+  public void testValidEditCommand20() {
+    controller.processCommand("create event Review from 2025-03-10T10:00 to 2025-03-10T11:00");
+    controller.processCommand("create event Review from 2025-03-12T10:00 to 2025-03-12T11:00");
+    controller.processCommand("create event Review from 2025-03-10T14:00 to 2025-03-10T15:00 "
+            + "repeats MW for 4 times");
+    controller.processCommand("edit events subject Review from 2025-03-11T00:00 with Audit");
+    controller.processCommand("edit events location Audit Room");
+    controller.processCommand("edit event location Review from 2025-03-10T10:00 "
+            + "to 2025-03-10T11:00 with Desk");
+    Assert.assertEquals("[[Review, 2025-03-10T10:00, 2025-03-10T11:00, Desk], "
+                    + "[Review, 2025-03-10T14:00, 2025-03-10T15:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 10)).toString());
+    Assert.assertEquals("[[Audit, 2025-03-12T10:00, 2025-03-12T11:00, Room], "
+                    + "[Audit, 2025-03-12T14:00, 2025-03-12T15:00, Room]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 12)).toString());
+    Assert.assertEquals("[[Audit, 2025-03-19T14:00, 2025-03-19T15:00, Room]]",
+            controller.model.getEventsOn(LocalDate.of(2025, 3, 19)).toString());
+  }
+
+  /**
+   * Editing events kept in compact storage changes them the same way.
+   */
+
+  @Test
+  public void testCompactStorageEdit() {
+    CalendarController compact = new CalendarController(true);
+    compact.processCommand("create event Review from 2025-03-10T10:00 to 2025-03-10T11:00");
+    compact.processCommand("create event Review from 2025-03-12T10:00 to 2025-03-12T11:00");
+    compact.processCommand("create event Other from 2025-03-12T12:00 to 2025-03-12T13:00");
+    compact.processCommand("edit events location Review from 2025-03-11T00:00 with Room");
+    compact.processCommand("edit event endDateTime Other from 2025-03-12T12:00 "
+            + "to 2025-03-12T13:00 with 2025-03-12T12:30");
+    Assert.assertEquals("[[Review, 2025-03-10T10:00, 2025-03-10T11:00, ]]",
+            compact.model.getEventsOn(LocalDate.of(2025, 3, 10)).toString());
+    Assert.assertEquals("[[Review, 2025-03-12T10:00, 2025-03-12T11:00, Room], "
+                    + "[Other, 2025-03-12T12:00, 2025-03-12T12:30, ]]",
+            compact.model.getEventsOn(LocalDate.of(2025, 3, 12)).toString());
+    Assert.assertFalse(compact.model.isBusy(LocalDateTime.of(2025, 3, 12, 12, 45)));
+  }
 }
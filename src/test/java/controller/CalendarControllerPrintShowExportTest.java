@@ -2,7 +2,10 @@ package controller;
 
 import exception.EventConflictException;
 import exception.InvalidCommandException;
+import model.CalendarSession;
 import utilities.CSVImporter;
+import view.BufferedConsoleView;
+import view.ConsoleView;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -10,16 +13,24 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.awt.*;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Path;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -32,6 +43,7 @@ import static org.junit.Assert.assertTrue;
 public class CalendarControllerPrintShowExportTest {
   private CalendarController controller;
   private Path tempFile;
+  private Path tempDirectory;
 
   /**
    * Initialize the calendar controller.
@@ -44,9 +56,18 @@ public class CalendarControllerPrintShowExportTest {
 
   @After
   public void tearDown() throws IOException {
+    controller.closeJournal();
     if (tempFile != null && Files.exists(tempFile)) {
       Files.deleteIfExists(tempFile);
     }
+    if (tempDirectory != null) {
+      try (Stream<Path> files = Files.list(tempDirectory)) {
+        for (Path file : files.collect(Collectors.toList())) {
+          Files.deleteIfExists(file);
+        }
+      }
+      Files.deleteIfExists(tempDirectory);
+    }
   }
 
   /**
@@ -504,6 +525,22 @@ public class CalendarControllerPrintShowExportTest {
     }
   }
 
+  @Test
+  public void testImportOverlappingRowsKeepsEarlierRow() throws Exception {
+    String header = "Subject, Start Date, Start Time, End Date, End Time, Description, Location, Private";
+    String late = "\"Late\",03/15/2024,10:30 AM,03/15/2024,11:30 AM,\"\",\"\",\"false\"";
+    String early = "\"Early\",03/15/2024,09:00 AM,03/15/2024,10:45 AM,\"\",\"\",\"false\"";
+    String after = "\"After\",03/15/2024,11:30 AM,03/15/2024,12:00 PM,\"\",\"\",\"false\"";
+    String content = header + "\n" + late + "\n" + early + "\n" + after;
+    tempFile = Files.createTempFile("testImportOverlapping", ".csv");
+    Files.write(tempFile, content.getBytes());
+    controller.processCommand("import cal " + tempFile.toAbsolutePath().toString());
+    Assert.assertEquals("[[Late, 2024-03-15T10:30, 2024-03-15T11:30, ], "
+                    + "[After, 2024-03-15T11:30, 2024-03-15T12:00, ]]",
+            controller.model.getEventsOn(LocalDate.of(2024, 3, 15)).toString());
+    Files.deleteIfExists(tempFile);
+  }
+
   @Test
   public void testMissingDescriptionDefaultsToEmpty() throws Exception {
     String header = "Subject, Start Date, Start Time, End Date, End Time, Description, Location, Private";
@@ -666,5 +703,395 @@ public class CalendarControllerPrintShowExportTest {
     Assert.assertEquals(colorAsString,
             controller.getActiveCalendarColor().toString());
   }
-}
 
+  /**
+   * Printing streams the events through the visitor in chronological order.
+   */
+
+  @Test
+  public void testPrintEventsThroughVisitor() {
+    controller.processCommand("create event MeetingB from 2025-03-15T14:00 to 2025-03-15T16:00");
+    controller.processCommand("create event MeetingA from 2025-03-15T10:00 to 2025-03-15T12:00");
+    controller.processCommand("edit event location MeetingA from 2025-03-15T10:00 "
+            + "to 2025-03-15T12:00 with Lab");
+
+    StringBuilder visited = new StringBuilder();
+    controller.model.forEachEventOn(LocalDate.of(2025, 3, 15),
+        (subject, start, end, description, location, isPublic) -> {
+          visited.append(subject).append(' ').append(start).append(' ').append(location)
+                  .append(';');
+        });
+    Assert.assertEquals("MeetingA 2025-03-15T10:00 Lab;MeetingB 2025-03-15T14:00 ;",
+            visited.toString());
+
+    PrintStream original = System.out;
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(printed));
+    try {
+      controller.processCommand("print events from 2025-03-15T09:00 to 2025-03-15T17:00");
+    } finally {
+      System.setOut(original);
+    }
+    String output = printed.toString();
+    int first = output.indexOf("MeetingA (2025-03-15T10:00 - 2025-03-15T12:00) at Lab\n");
+    int second = output.indexOf("MeetingB (2025-03-15T14:00 - 2025-03-15T16:00)");
+    Assert.assertTrue(first >= 0 && second > first);
+  }
+
+  /**
+   * Saving a snapshot and loading it into a new controller restores every calendar,
+   * including recurring events with edited occurrences and the calendar in use.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testSaveAndLoadSnapshot() throws Exception {
+    tempFile = Files.createTempFile("snapshot", ".bin");
+    controller.processCommand("create event Review from 2025-03-10T10:00 to 2025-03-10T11:00");
+    controller.processCommand("edit event location Review from 2025-03-10T10:00 "
+            + "to 2025-03-10T11:00 with Office");
+    controller.processCommand("create event Standup from 2025-03-10T14:00 to 2025-03-10T15:00 "
+            + "repeats MW for 4 times");
+    controller.processCommand("edit event location Standup from 2025-03-12T14:00 "
+            + "to 2025-03-12T15:00 with Desk");
+    controller.processCommand("create calendar --name Travel --timezone Asia/Kolkata");
+    controller.processCommand("use calendar --name Travel");
+    controller.processCommand("create event Flight on 2025-04-01T00:00");
+    List<List> travelEvents = controller.model.exportCalendar();
+    controller.processCommand("use calendar --name Default");
+    List<List> defaultEvents = controller.model.exportCalendar();
+    Color defaultColor = controller.model.getActiveCalendarColor();
+    List<String> names = controller.model.getCalendarNames();
+    controller.processCommand("save cal " + tempFile.toAbsolutePath());
+
+    CalendarController restored = new CalendarController();
+    restored.processCommand("load cal " + tempFile.toAbsolutePath());
+
+    Assert.assertEquals(names, restored.model.getCalendarNames());
+    Assert.assertEquals("Default", restored.model.getActiveCalendarName());
+    Assert.assertEquals(defaultColor, restored.model.getActiveCalendarColor());
+    Assert.assertEquals(defaultEvents.toString(), restored.model.exportCalendar().toString());
+    Assert.assertTrue(restored.model.isBusy(LocalDateTime.of(2025, 3, 17, 14, 30)));
+    try {
+      restored.processCommand("create event Clash from 2025-03-19T14:30 to 2025-03-19T16:00");
+      Assert.fail("Expected a conflict with the restored series");
+    } catch (EventConflictException e) {
+      // expected
+    }
+
+    restored.processCommand("use calendar --name Travel");
+    Assert.assertEquals("Asia/Kolkata", restored.model.getActiveCalendarTimeZone());
+    Assert.assertEquals(travelEvents.toString(), restored.model.exportCalendar().toString());
+  }
+
+  /**
+   * Loading a file that is not a snapshot leaves the calendars unchanged.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testLoadInvalidSnapshot() throws Exception {
+    tempFile = Files.createTempFile("snapshot", ".bin");
+    Files.write(tempFile, "Subject, Start Date, Start Time\n".getBytes());
+    controller.processCommand("create event Review on 2025-03-10T00:00");
+    try {
+      controller.processCommand("load cal " + tempFile.toAbsolutePath());
+      Assert.fail("Expected an invalid snapshot");
+    } catch (InvalidCommandException e) {
+      Assert.assertEquals("Not a calendar snapshot.", e.getMessage());
+    }
+    Assert.assertEquals(1, controller.model.exportCalendar().size());
+  }
+
+  /**
+   * Changes made with a journal open are back after a restart, including the ones made
+   * after an import checkpoint, and commands that change nothing are not journaled.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testJournalRestoresCalendarsAfterRestart() throws Exception {
+    tempDirectory = Files.createTempDirectory("journal");
+    tempFile = Files.createTempFile("journalImport", ".csv");
+    Files.write(tempFile, ("Subject, Start Date, Start Time, End Date, End Time, Description, "
+            + "Location, Private\n\"Imported\",03/11/2025,09:00 AM,03/11/2025,10:00 AM,"
+            + "\"\",\"\",\"false\"").getBytes());
+
+    controller.openJournal(tempDirectory.toString(), 1);
+    controller.processCommand("create event Review from 2025-03-10T10:00 to 2025-03-10T11:00");
+    controller.processCommand("create calendar --name Travel --timezone Asia/Kolkata");
+    controller.processCommand("use calendar --name Travel");
+    controller.processCommand("import cal " + tempFile.toAbsolutePath());
+    controller.processCommand("create event Standup from 2025-03-10T14:00 "
+            + "to 2025-03-10T15:00 repeats MW for 4 times");
+    controller.processCommand("edit event location Standup from 2025-03-12T14:00 "
+            + "to 2025-03-12T15:00 with Desk");
+    controller.processCommand("print events on 2025-03-10");
+    try {
+      controller.processCommand("create event Clash from 2025-03-10T14:30 to 2025-03-10T16:00");
+      Assert.fail("Expected a conflict");
+    } catch (EventConflictException e) {
+      // expected
+    }
+    List<List> travelEvents = controller.model.exportCalendar();
+    controller.processCommand("use calendar --name Default");
+    controller.processCommand("edit calendar --name Default --property timezone Europe/London");
+    List<List> defaultEvents = controller.model.exportCalendar();
+    controller.closeJournal();
+
+    CalendarController restarted = new CalendarController();
+    restarted.openJournal(tempDirectory.toString(), 1);
+    try {
+      Assert.assertEquals("Default", restarted.model.getActiveCalendarName());
+      Assert.assertEquals("Europe/London", restarted.model.getActiveCalendarTimeZone());
+      Assert.assertEquals(defaultEvents.toString(), restarted.model.exportCalendar().toString());
+      restarted.processCommand("use calendar --name Travel");
+      Assert.assertEquals(travelEvents.toString(), restarted.model.exportCalendar().toString());
+      Assert.assertEquals(5, restarted.model.exportCalendar().size());
+    }
+    finally {
+      restarted.closeJournal();
+    }
+
+    CalendarController again = new CalendarController();
+    again.openJournal(tempDirectory.toString(), 1);
+    try {
+      Assert.assertEquals("Travel", again.model.getActiveCalendarName());
+    }
+    finally {
+      again.closeJournal();
+    }
+  }
+
+  /**
+   * Tests that commands of several sessions are journaled against the calendar each one
+   * ran on, whatever the other sessions use.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testJournalKeepsCalendarOfEachSession() throws Exception {
+    tempDirectory = Files.createTempDirectory("journal");
+    controller.openJournal(tempDirectory.toString(), 1);
+    controller.processCommand("create calendar --name Travel --timezone Asia/Kolkata");
+    CalendarSession traveller = controller.openSession();
+    controller.processCommand("use calendar --name Travel", traveller);
+    controller.processCommand("create event Flight from 2025-03-10T10:00 to 2025-03-10T11:00",
+            traveller);
+    controller.processCommand("create event Review from 2025-03-10T10:00 to 2025-03-10T11:00");
+    controller.processCommand("edit events location Flight Gate", traveller);
+    controller.closeJournal();
+
+    CalendarController restarted = new CalendarController();
+    restarted.openJournal(tempDirectory.toString(), 1);
+    try {
+      Assert.assertEquals("Default", restarted.getActiveCalendarName());
+      Assert.assertEquals("[[Review, 2025-03-10T10:00, 2025-03-10T11:00, ]]",
+              restarted.model.getEventsOn(LocalDate.of(2025, 3, 10)).toString());
+      restarted.processCommand("use calendar --name Travel");
+      Assert.assertEquals("[[Flight, 2025-03-10T10:00, 2025-03-10T11:00, Gate]]",
+              restarted.model.getEventsOn(LocalDate.of(2025, 3, 10)).toString());
+    }
+    finally {
+      restarted.closeJournal();
+    }
+  }
+
+  /**
+   * Tests that changes made at once by several sessions, with imports checkpointing the
+   * journal meanwhile, replay after a restart to the calendars they left.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testJournalReplaysConcurrentSessions() throws Exception {
+    tempDirectory = Files.createTempDirectory("journal");
+    List<Path> imports = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Path file = tempDirectory.resolve("import" + i + ".csv");
+      Files.write(file, ("Subject, Start Date, Start Time, End Date, End Time, Description, "
+              + "Location, Private\n\"Imported" + i + "\",03/11/2025,0" + (6 + i)
+              + ":30 AM,03/11/2025,0" + (7 + i) + ":30 AM,\"\",\"\",\"false\"").getBytes());
+      imports.add(file);
+    }
+    controller.view = new BufferedConsoleView(new ByteArrayInputStream(
+            new byte[0]), new ByteArrayOutputStream(), true);
+    controller.openJournal(tempDirectory.toString(), 1);
+    controller.processCommand("create calendar --name Shared --timezone Asia/Kolkata");
+
+    ExecutorService pool =
+            Executors.newFixedThreadPool(5);
+    CountDownLatch go = new CountDownLatch(1);
+    List<Future<?>> done = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int writer = t;
+      done.add(pool.submit(() -> {
+        CalendarSession session = controller.openSession();
+        go.await();
+        controller.processCommand("use calendar --name "
+                + (writer % 2 == 0 ? "Shared" : "Default"), session);
+        for (int i = 0; i < 30; i++) {
+          String hour = String.format("%02d", 6 + i % 12);
+          String name = "T" + writer + "E" + i;
+          try {
+            controller.processCommand("create event " + name + " from 2025-03-11T" + hour
+                    + ":00 to 2025-03-11T" + hour + ":45", session);
+            controller.processCommand("edit event location " + name + " from 2025-03-11T"
+                    + hour + ":00 to 2025-03-11T" + hour + ":45 with Room" + writer, session);
+          }
+          catch (RuntimeException e) {
+            // another session took the slot first
+          }
+        }
+        return null;
+      }));
+    }
+    done.add(pool.submit(() -> {
+      go.await();
+      for (Path file : imports) {
+        try {
+          controller.processCommand("import cal " + file.toAbsolutePath());
+        }
+        catch (RuntimeException e) {
+          // a session took the slot first
+        }
+      }
+      return null;
+    }));
+    go.countDown();
+    for (Future<?> writer : done) {
+      writer.get();
+    }
+    pool.shutdown();
+
+    List<List> defaultEvents = controller.model.exportCalendar();
+    controller.processCommand("use calendar --name Shared");
+    List<List> sharedEvents = controller.model.exportCalendar();
+    controller.closeJournal();
+    assertFalse(defaultEvents.isEmpty());
+    assertFalse(sharedEvents.isEmpty());
+
+    CalendarController restarted = new CalendarController();
+    restarted.openJournal(tempDirectory.toString(), 1);
+    try {
+      Assert.assertEquals(sharedEvents.toString(), restarted.model.exportCalendar().toString());
+      restarted.processCommand("use calendar --name Default");
+      Assert.assertEquals(defaultEvents.toString(), restarted.model.exportCalendar().toString());
+    }
+    finally {
+      restarted.closeJournal();
+    }
+  }
+
+  /**
+   * Tests that a change whose journal record cannot be written is kept without an error,
+   * and that later changes are refused until the journal is reopened.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testFailedJournalRefusesLaterChanges() throws Exception {
+    tempDirectory = Files.createTempDirectory("journal");
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    BufferedConsoleView output = new BufferedConsoleView(
+            new ByteArrayInputStream(new byte[0]), printed, false);
+    controller.view = output;
+    controller.openJournal(tempDirectory.toString(), 1);
+    controller.journal.close();
+
+    controller.processCommand("create event Review from 2025-03-10T10:00 to 2025-03-10T11:00");
+    Assert.assertEquals(1, controller.model.getEventsOn(LocalDate.of(2025, 3, 10)).size());
+    try {
+      controller.processCommand("create event Retro from 2025-03-10T12:00 "
+              + "to 2025-03-10T13:00");
+      Assert.fail("Expected the change to be refused");
+    }
+    catch (InvalidCommandException e) {
+      assertTrue(e.getMessage().startsWith("Journal could not be written"));
+    }
+    controller.processCommand("print events on 2025-03-10");
+    output.flush();
+    String shown = printed.toString();
+    assertTrue(shown.contains("Command processed: create event Review"));
+    assertTrue(shown.contains("the change was made"));
+    Assert.assertEquals(1, controller.model.getEventsOn(LocalDate.of(2025, 3, 10)).size());
+
+    controller.closeJournal();
+    controller.openJournal(tempDirectory.toString(), 1);
+    controller.processCommand("create event Retro from 2025-03-10T12:00 to 2025-03-10T13:00");
+    Assert.assertEquals(2, controller.model.getEventsOn(LocalDate.of(2025, 3, 10)).size());
+  }
+
+  /**
+   * Tests that a command file is run only if its last line, ignoring one line end, is
+   * exit and follows another line.
+   * @throws Exception if errored when writing the files.
+   */
+
+  @Test
+  public void testHeadlessFileMustEndWithExit() throws Exception {
+    tempFile = Files.createTempFile("commands", ".txt");
+    String[][] cases = {
+        {"create calendar --name A --timezone UTC\nexit", "true"},
+        {"create calendar --name A --timezone UTC\r\n  EXIT \r\n", "true"},
+        {"\rexit\n", "true"},
+        {"exit\n", "false"},
+        {"exit", "false"},
+        {"", "false"},
+        {"print events on 2025-03-10\nexit\n\n", "false"},
+        {"exit\nprint events on 2025-03-10", "false"}
+    };
+    for (String[] file : cases) {
+      Files.write(tempFile, file[0].getBytes("UTF-8"));
+      Assert.assertEquals(file[0], Boolean.parseBoolean(file[1]),
+              HeadlessRunner.endsWithExit(tempFile));
+    }
+  }
+
+  /**
+   * Tests that a headless run of a file that does not end with exit, or cannot be read,
+   * runs none of its commands.
+   * @throws Exception if errored when writing the file.
+   */
+
+  @Test
+  public void testHeadlessRunnerRejectsFile() throws Exception {
+    tempFile = Files.createTempFile("commands", ".txt");
+    Files.write(tempFile, "create calendar --name Work --timezone UTC\nuse calendar --name Work"
+            .getBytes("UTF-8"));
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    PrintStream original = System.out;
+    System.setOut(new PrintStream(printed));
+    try {
+      controller.view = new ConsoleView();
+      new HeadlessRunner(controller).run(tempFile.toString());
+      new HeadlessRunner(controller).run(tempFile.resolve("missing").toString());
+    }
+    finally {
+      System.setOut(original);
+    }
+    String output = printed.toString();
+    Assert.assertEquals(2, output.split("File does not contain exit command").length - 1);
+    assertTrue(output.contains("Invalid Path: "));
+    assertFalse(output.contains("Command processed"));
+    Assert.assertEquals("Default", controller.getActiveCalendarName());
+  }
+
+  /**
+   * Tests that a controller showing its messages in a quiet view leaves out the
+   * acknowledgements and keeps the results.
+   */
+
+  @Test
+  public void testQuietViewShowsOnlyResults() {
+    ByteArrayOutputStream printed = new ByteArrayOutputStream();
+    BufferedConsoleView quiet = new BufferedConsoleView(
+            new ByteArrayInputStream(new byte[0]), printed, true);
+    CalendarController batch = new CalendarController(false, quiet);
+    batch.processCommand("create event Standup from 2025-03-10T10:00 to 2025-03-10T10:15");
+    batch.processCommand("show status on 2025-03-10T10:05");
+    quiet.flush();
+
+    Assert.assertEquals("true" + System.lineSeparator(), printed.toString());
+  }
+}
@@ -0,0 +1,199 @@
+package controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.CalendarSession;
+import view.UserView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for serving commands over TCP.
+ */
+
+public class CalendarServerTest {
+  private CalendarController controller;
+  private CalendarServer server;
+
+  /**
+   * Starts a server on a free port.
+   * @throws IOException if the server cannot be started.
+   */
+
+  @Before
+  public void setUp() throws IOException {
+    controller = new CalendarController();
+    server = new CalendarServer(controller, 0);
+    server.start();
+  }
+
+  /**
+   * Stops the server.
+   * @throws IOException if the server cannot be stopped.
+   */
+
+  @After
+  public void tearDown() throws IOException {
+    server.close();
+  }
+
+  /**
+   * Tests that commands sent together are answered in order, each answer ending with an
+   * empty line, and that each connection keeps its own active calendar.
+   * @throws IOException if the connection fails.
+   */
+
+  @Test
+  public void testPipelinedCommandsInSessionPerConnection() throws IOException {
+    try (Socket travel = new Socket("localhost", server.getPort());
+         Socket office = new Socket("localhost", server.getPort())) {
+      send(travel, "create calendar --name Travel --timezone Asia/Kolkata",
+              "use calendar --name Travel",
+              "create event Flight from 2025-03-10T10:00 to 2025-03-10T11:00",
+              "show status on 2025-03-10T10:30",
+              "show status on 2025-03-10",
+              "print events on 2025-03-10");
+      BufferedReader travelAnswers = reader(travel);
+      assertEquals(List.of("Command processed: create calendar --name Travel "
+              + "--timezone Asia/Kolkata"), answer(travelAnswers));
+      assertEquals(List.of("Command processed: use calendar --name Travel"),
+              answer(travelAnswers));
+      assertEquals(List.of("Command processed: create event Flight from 2025-03-10T10:00 "
+              + "to 2025-03-10T11:00"), answer(travelAnswers));
+      assertEquals(List.of("true", "Command processed: show status on 2025-03-10T10:30"),
+              answer(travelAnswers));
+      assertEquals(List.of("false", "Command processed: show status on 2025-03-10"),
+              answer(travelAnswers));
+      assertEquals(2, answer(travelAnswers).size());
+
+      send(office, "show status on 2025-03-10T10:30", "bogus");
+      BufferedReader officeAnswers = reader(office);
+      assertEquals(List.of("false", "Command processed: show status on 2025-03-10T10:30"),
+              answer(officeAnswers));
+      assertEquals(List.of("Invalid command"), answer(officeAnswers));
+    }
+
+    assertEquals("Default", controller.getActiveCalendarName());
+    assertEquals(0, controller.model.getEventsOn(LocalDate.of(2025, 3, 10)).size());
+  }
+
+  /**
+   * Tests that exit closes the connection, not the application.
+   * @throws IOException if the connection fails.
+   */
+
+  @Test
+  public void testExitClosesConnection() throws IOException {
+    try (Socket client = new Socket("localhost", server.getPort())) {
+      send(client, "exit");
+      BufferedReader answers = reader(client);
+      assertEquals(List.of("Connection closed."), answer(answers));
+      assertNull(answers.readLine());
+    }
+    try (Socket client = new Socket("localhost", server.getPort())) {
+      send(client, "show status on 2025-03-10T10:30");
+      assertEquals(List.of("false", "Command processed: show status on 2025-03-10T10:30"),
+              answer(reader(client)));
+    }
+  }
+
+  /**
+   * Tests that the server listens on the loopback address by default, that local clients
+   * may use the file commands, and that save, load, export and import are the commands
+   * refused to remote clients.
+   * @throws IOException if the connection fails.
+   */
+
+  @Test
+  public void testLoopbackByDefaultAndFileCommands() throws IOException {
+    try (Socket client = new Socket(java.net.InetAddress.getLoopbackAddress(),
+            server.getPort())) {
+      assertTrue(client.getInetAddress().isLoopbackAddress());
+      send(client, "export cal");
+      assertEquals(List.of("Invalid command"), answer(reader(client)));
+    }
+    for (CommandVerb verb : CommandVerb.values()) {
+      assertEquals(verb.name(), verb.name().startsWith("SAVE")
+              || verb.name().startsWith("LOAD") || verb.name().startsWith("EXPORT")
+              || verb.name().startsWith("IMPORT"), CalendarServer.readsOrWritesFiles(verb));
+    }
+    assertFalse(CalendarServer.readsOrWritesFiles(null));
+  }
+
+  /**
+   * Tests that a command failing with no message is answered with null and leaves the
+   * connection open.
+   * @throws IOException if the connection fails.
+   */
+
+  @Test
+  public void testErrorWithoutMessageKeepsConnection() throws IOException {
+    CalendarController failing = new CalendarController() {
+      @Override
+      void processParsed(String command, CommandVerb verb, CommandTokens tokens,
+                         CalendarSession session, UserView view) {
+        if (command.equals("fail")) {
+          throw new IllegalStateException();
+        }
+        super.processParsed(command, verb, tokens, session, view);
+      }
+    };
+    try (CalendarServer failingServer = new CalendarServer(failing, 0)) {
+      failingServer.start();
+      try (Socket client = new Socket("localhost", failingServer.getPort())) {
+        send(client, "fail", "show status on 2025-03-10T10:30");
+        BufferedReader answers = reader(client);
+        assertEquals(List.of("null"), answer(answers));
+        assertEquals(List.of("false", "Command processed: show status on 2025-03-10T10:30"),
+                answer(answers));
+      }
+    }
+  }
+
+  /**
+   * Sends commands in one write, without waiting for answers.
+   */
+
+  private static void send(Socket socket, String... commands) throws IOException {
+    OutputStream out = socket.getOutputStream();
+    out.write((String.join("\n", commands) + "\n").getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  /**
+   * Reads the answers of a connection as lines.
+   */
+
+  private static BufferedReader reader(Socket socket) throws IOException {
+    return new BufferedReader(new InputStreamReader(socket.getInputStream(),
+            StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the lines of one answer, up to the empty line that ends it.
+   */
+
+  private static List<String> answer(BufferedReader answers) throws IOException {
+    List<String> lines = new ArrayList<>();
+    String line;
+    while ((line = answers.readLine()) != null && !line.isEmpty()) {
+      lines.add(line);
+    }
+    return lines;
+  }
+}
@@ -0,0 +1,181 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Load generator for server mode. Not run by the tests; after {@code mvn test-compile}, run
+ * it with {@code java -cp target/classes:target/test-classes controller.ServerLoadGenerator
+ * [clients] [commands] [depth] [host port]}. Each client opens a connection, creates and
+ * uses a calendar of its own, then sends its commands, a mix of creating events, checking
+ * status and printing a day, in windows of {@code depth} pipelined commands. Without a host
+ * and port a server is started in this process on a free port. Prints the throughput and
+ * the latency percentiles of the commands.
+ */
+
+public class ServerLoadGenerator {
+
+  /**
+   * Runs the load.
+   * @param args clients, commands per client, pipeline depth, then optionally host and port.
+   * @throws Exception if the server cannot be started or a client fails.
+   */
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int commands = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    int depth = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+    CalendarServer local = null;
+    String host = "localhost";
+    int port;
+    if (args.length > 4) {
+      host = args[3];
+      port = Integer.parseInt(args[4]);
+    }
+    else {
+      local = new CalendarServer(new CalendarController(), 0);
+      local.start();
+      port = local.getPort();
+    }
+
+    ExecutorService pool = CalendarServer.newConnectionExecutor();
+    CountDownLatch connected = new CountDownLatch(clients);
+    CountDownLatch go = new CountDownLatch(1);
+    List<Future<long[]>> results = new ArrayList<>();
+    for (int i = 0; i < clients; i++) {
+      int client = i;
+      String serverHost = host;
+      results.add(pool.submit(() -> runClient(serverHost, port, client, commands, depth,
+              connected, go)));
+    }
+    connected.await();
+    long start = System.nanoTime();
+    go.countDown();
+
+    long[] latencies = new long[clients * commands];
+    int filled = 0;
+    for (Future<long[]> result : results) {
+      long[] clientLatencies = result.get();
+      System.arraycopy(clientLatencies, 0, latencies, filled, clientLatencies.length);
+      filled += clientLatencies.length;
+    }
+    long elapsed = System.nanoTime() - start;
+    pool.shutdown();
+    if (local != null) {
+      local.close();
+    }
+
+    Arrays.sort(latencies, 0, filled);
+    System.out.printf("%d clients x %d commands, depth %d: %.0f commands/s%n", clients,
+            commands, depth, filled / (elapsed / 1e9));
+    System.out.printf("latency us: p50 %d, p90 %d, p99 %d, max %d%n",
+            percentile(latencies, filled, 0.50), percentile(latencies, filled, 0.90),
+            percentile(latencies, filled, 0.99), percentile(latencies, filled, 1.0));
+  }
+
+  /**
+   * Runs one client and measures, for each command, the time from sending its window to
+   * reading its answer.
+   * @return the latency of each command in nanoseconds.
+   */
+
+  private static long[] runClient(String host, int port, int client, int commands, int depth,
+                                  CountDownLatch connected, CountDownLatch go)
+          throws IOException, InterruptedException {
+    try (Socket socket = new Socket(host, port)) {
+      socket.setTcpNoDelay(true);
+      OutputStream out = socket.getOutputStream();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+              StandardCharsets.UTF_8));
+      String calendar = "load-" + client;
+      send(out, List.of("create calendar --name " + calendar + " --timezone UTC",
+              "use calendar --name " + calendar));
+      readAnswer(in);
+      readAnswer(in);
+      connected.countDown();
+      go.await();
+
+      long[] latencies = new long[commands];
+      for (int first = 0; first < commands; first += depth) {
+        int last = Math.min(first + depth, commands);
+        List<String> window = new ArrayList<>();
+        for (int k = first; k < last; k++) {
+          window.add(command(k));
+        }
+        long sent = System.nanoTime();
+        send(out, window);
+        for (int k = first; k < last; k++) {
+          readAnswer(in);
+          latencies[k] = System.nanoTime() - sent;
+        }
+      }
+      send(out, List.of("exit"));
+      readAnswer(in);
+      return latencies;
+    }
+  }
+
+  /**
+   * Returns the command a client sends at a position: half create events in slots of their
+   * own, the others check the status in a slot or print the day of one.
+   */
+
+  private static String command(int k) {
+    int day = 1 + k / 48 % 28;
+    int month = 1 + k / (48 * 28) % 12;
+    String date = String.format("2025-%02d-%02d", month, day);
+    String time = String.format("%02d:%02d", k % 48 / 2, k % 2 * 30);
+    switch (k % 10) {
+      case 0: case 1: case 2: case 3: case 4:
+        return "create event Load" + k + " from " + date + "T" + time + " to " + date + "T"
+                + time.substring(0, 3) + (k % 2 == 0 ? "20" : "50");
+      case 5: case 6: case 7:
+        return "show status on " + date + "T" + time;
+      default:
+        return "print events on " + date;
+    }
+  }
+
+  /**
+   * Writes commands in one write.
+   */
+
+  private static void send(OutputStream out, List<String> commands) throws IOException {
+    out.write((String.join("\n", commands) + "\n").getBytes(StandardCharsets.UTF_8));
+    out.flush();
+  }
+
+  /**
+   * Reads one answer, up to the empty line that ends it.
+   */
+
+  private static void readAnswer(BufferedReader in) throws IOException {
+    String line;
+    while ((line = in.readLine()) != null && !line.isEmpty()) {
+      // the content of the answer is not checked
+    }
+    if (line == null) {
+      throw new IOException("Connection closed by the server");
+    }
+  }
+
+  /**
+   * Returns a percentile of sorted latencies, in microseconds.
+   */
+
+  private static long percentile(long[] sorted, int count, double fraction) {
+    int index = Math.min(count - 1, (int) Math.ceil(fraction * count) - 1);
+    return sorted[Math.max(index, 0)] / 1000;
+  }
+}
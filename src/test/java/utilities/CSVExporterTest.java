@@ -89,4 +89,42 @@ public class CSVExporterTest {
       throw e;
     }
   }
+
+  /**
+   * Test that events exported straight from a visitor are written exactly as the old
+   * String.format encoding wrote them, for every hour of the day.
+   * @throws Exception if errored when processing.
+   */
+
+  @Test
+  public void testExportFromVisitorMatchesFormat() throws Exception {
+    java.time.format.DateTimeFormatter dates =
+            java.time.format.DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    java.time.format.DateTimeFormatter times =
+            java.time.format.DateTimeFormatter.ofPattern("hh:mm a");
+    List<java.time.LocalDateTime> starts = new ArrayList<>();
+    List<String> expected = new ArrayList<>();
+    for (int hour = 0; hour < 24; hour++) {
+      java.time.LocalDateTime start = java.time.LocalDateTime.of(2024, 1 + hour % 12,
+              1 + hour, hour, hour * 2);
+      java.time.LocalDateTime end = start.plusMinutes(95);
+      starts.add(start);
+      expected.add(String.format("\"%s\",%s,%s,\"%s\",\"%s\",\"%s\",\"%s\",%b",
+              "Event " + hour, start.format(dates), start.format(times), end.format(dates),
+              end.format(times), hour % 2 == 0 ? null : "Notes", "Room", hour % 3 == 0));
+    }
+
+    Path tempFile = Files.createTempFile("test-export", ".csv");
+    new CSVExporter().exportCSV(visitor -> {
+      for (int hour = 0; hour < 24; hour++) {
+        visitor.visit("Event " + hour, starts.get(hour), starts.get(hour).plusMinutes(95),
+                hour % 2 == 0 ? null : "Notes", "Room", hour % 3 != 0);
+      }
+    }, tempFile.toAbsolutePath().toString());
+
+    List<String> lines = Files.readAllLines(tempFile);
+    assertEquals(25, lines.size());
+    assertEquals(expected, lines.subList(1, lines.size()));
+    Files.deleteIfExists(tempFile);
+  }
 }
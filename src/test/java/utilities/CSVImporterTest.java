@@ -363,4 +363,103 @@ public class CSVImporterTest {
     Boolean isPublic = (Boolean) eventDetails.get(7);
     assertFalse("Private value '  true  ' should trim to 'true' and result in isPublic false", isPublic);
   }
-}
\ No newline at end of file
+
+  /**
+   * Test that commas, line breaks and doubled quotes inside quoted values stay part of
+   * the value, and that Windows line endings and blank lines are handled.
+   */
+
+  @Test
+  public void testQuotedValuesAndLineEndings() throws Exception {
+    String header = "Subject, Start Date, Start Time, End Date, End Time, Description, Location, Private";
+    String row1 = "\"Review, part 1\",03/15/2024,10:00 AM,03/15/2024,11:00 AM,"
+            + "\"Says \"\"hi\"\"\",\"Room\r\nB\",false";
+    String row2 = "Plain,03/16/2024,09:00 AM,03/16/2024,10:00 AM,,,";
+    String row3 = "\"Bad\",nope,09:00 AM,03/16/2024,10:00 AM,,,";
+    String content = header + "\r\n" + row1 + "\r\n\r\n" + row2 + "\r\n" + row3 + "\r\n";
+    Files.write(tempFile, content.getBytes());
+
+    java.io.PrintStream originalErr = System.err;
+    java.io.ByteArrayOutputStream errContent = new java.io.ByteArrayOutputStream();
+    System.setErr(new java.io.PrintStream(errContent));
+    List<List> events;
+    try {
+      events = new CSVImporter().importEvents(tempFile.toAbsolutePath().toString());
+    } finally {
+      System.setErr(originalErr);
+    }
+
+    assertEquals(2, events.size());
+    assertEquals("Review, part 1", events.get(0).get(0));
+    assertEquals("Says \"hi\"", events.get(0).get(5));
+    assertEquals("Room\r\nB", events.get(0).get(6));
+    assertEquals("Plain", events.get(1).get(0));
+    assertEquals("", events.get(1).get(6));
+    assertTrue("Error message should mention line 6", errContent.toString().contains("line 6"));
+  }
+
+  /**
+   * Test that readEvents hands out the events one at a time.
+   */
+
+  @Test
+  public void testReadEventsIterates() throws Exception {
+    String header = "Subject, Start Date, Start Time";
+    String content = header + "\nFirst,03/15/2024,10:00 AM\nSecond,03/16/2024,11:00 AM";
+    Files.write(tempFile, content.getBytes());
+
+    try (CSVImporter.EventIterator events =
+                 new CSVImporter().readEvents(tempFile.toAbsolutePath().toString())) {
+      assertTrue(events.hasNext());
+      assertEquals("First", events.next().get(0));
+      assertTrue(events.hasNext());
+      List second = events.next();
+      assertEquals("Second", second.get(0));
+      assertEquals(LocalDate.of(2024, 3, 17), second.get(3));
+      assertFalse(events.hasNext());
+    }
+  }
+
+  /**
+   * Test that the parallel import matches the sequential one for every chunk size,
+   * including chunks that would split quoted line breaks and CRLF pairs.
+   */
+
+  @Test
+  public void testParallelImportMatchesSequential() throws Exception {
+    String content = "\r\nSubject, Start Date, Start Time, End Date, End Time, Description, "
+            + "Location, Private\r\n"
+            + "\"Review, part 1\",03/15/2024,10:00 AM,03/15/2024,11:00 AM,"
+            + "\"Says \"\"hi\"\"\",\"Room\r\nB\",false\r\n\r\n"
+            + "Plain,03/16/2024,09:00 AM,03/16/2024,10:00 AM,,,\n"
+            + "\"Bad\",nope,09:00 AM,03/16/2024,10:00 AM,,,\r"
+            + "\"Multi\nline\nsubject\",3/17/24,01:30 PM,,,,,true\n"
+            + "Short,03/18/2024\n"
+            + "Last,03/19/2024,08:00 AM";
+    Files.write(tempFile, content.getBytes());
+    String path = tempFile.toAbsolutePath().toString();
+
+    java.io.PrintStream originalErr = System.err;
+    try {
+      java.io.ByteArrayOutputStream expectedErr = new java.io.ByteArrayOutputStream();
+      System.setErr(new java.io.PrintStream(expectedErr));
+      List<List> expected = new CSVImporter().importEvents(path);
+      assertEquals(3, expected.size());
+      assertTrue(expectedErr.toString().contains("line 12"));
+
+      for (int chunkSize = 1; chunkSize <= content.length(); chunkSize++) {
+        java.io.ByteArrayOutputStream actualErr = new java.io.ByteArrayOutputStream();
+        System.setErr(new java.io.PrintStream(actualErr));
+        CSVImporter importer = new CSVImporter();
+        importer.chunkSize = chunkSize;
+        List<List> actual = new java.util.ArrayList<>();
+        importer.importEventsInParallel(path, actual::addAll);
+
+        assertEquals("chunk size " + chunkSize, expected, actual);
+        assertEquals("chunk size " + chunkSize, expectedErr.toString(), actualErr.toString());
+      }
+    } finally {
+      System.setErr(originalErr);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JUnit4 test cases for CommandJournal.
+ */
+
+public class CommandJournalTest {
+  private Path file;
+
+  /**
+   * Creates an empty journal file.
+   * @throws IOException if the file cannot be created.
+   */
+
+  @Before
+  public void setUp() throws IOException {
+    file = Files.createTempFile("commands", ".journal");
+  }
+
+  /**
+   * Deletes the journal file.
+   * @throws IOException if the file cannot be deleted.
+   */
+
+  @After
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Test that batched commands are written on close and replayed in order.
+   */
+
+  @Test
+  public void testBatchedCommandsAreReplayedInOrder() throws IOException {
+    List<String> commands = new ArrayList<>();
+    try (CommandJournal journal = new CommandJournal(file, 0, 1000, 60_000)) {
+      for (int i = 0; i < 500; i++) {
+        commands.add("create event \"Meeting " + i + "\" on 2025-03-10T10:00 ü");
+        assertEquals(i + 1, journal.append(commands.get(i)));
+      }
+    }
+    assertEquals(commands, replay(file, 0));
+  }
+
+  /**
+   * Test that sync and a sync interval of one put every command on disk.
+   */
+
+  @Test
+  public void testSyncWritesWaitingCommands() throws IOException {
+    try (CommandJournal journal = new CommandJournal(file, 0, 1, 0)) {
+      journal.append("first");
+      assertTrue(Files.size(file) > 0);
+    }
+    try (CommandJournal journal = new CommandJournal(file, 0, 1000, 60_000)) {
+      journal.append("second");
+      journal.sync();
+      assertEquals(Arrays.asList("first", "second"), replay(file, 0));
+    }
+  }
+
+  /**
+   * Test that a partly written command at the end is dropped, and that new commands go
+   * after the last complete one.
+   */
+
+  @Test
+  public void testTornTailIsDropped() throws IOException {
+    try (CommandJournal journal = new CommandJournal(file, 0, 1, 0)) {
+      journal.append("first");
+      journal.append("second");
+    }
+    long size = Files.size(file);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(size - 2);
+    }
+
+    try (CommandJournal journal = new CommandJournal(file, 0, 1, 0)) {
+      assertEquals(1, journal.lastSequence());
+      assertEquals(2, journal.append("third"));
+    }
+    assertEquals(Arrays.asList("first", "third"), replay(file, 0));
+  }
+
+  /**
+   * Test that a damaged command and everything after it are dropped.
+   */
+
+  @Test
+  public void testDamagedCommandIsDropped() throws IOException {
+    try (CommandJournal journal = new CommandJournal(file, 0, 1, 0)) {
+      journal.append("first");
+      journal.append("second");
+      journal.append("third");
+    }
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[16 + "first".length() + 16] ^= 1;
+    Files.write(file, bytes);
+    assertEquals(Arrays.asList("first"), replay(file, 0));
+  }
+
+  /**
+   * Test that commands up to the base sequence are skipped, that numbering carries on
+   * after it, and that truncate drops every command.
+   */
+
+  @Test
+  public void testBaseSequenceAndTruncate() throws IOException {
+    try (CommandJournal journal = new CommandJournal(file, 0, 1, 0)) {
+      journal.append("first");
+      journal.append("second");
+    }
+    assertEquals(Arrays.asList("second"), replay(file, 1));
+
+    try (CommandJournal journal = new CommandJournal(file, 2, 1000, 60_000)) {
+      journal.append("third");
+      journal.truncate();
+      assertEquals(0, Files.size(file));
+      assertEquals(3, journal.lastSequence());
+    }
+    try (CommandJournal journal = new CommandJournal(file, 10, 1, 0)) {
+      assertEquals(11, journal.append("fourth"));
+    }
+    assertEquals(Arrays.asList("fourth"), replay(file, 10));
+  }
+
+  /**
+   * Opens a journal and collects the commands after a base sequence.
+   */
+
+  private static List<String> replay(Path file, long baseSequence) throws IOException {
+    List<String> commands = new ArrayList<>();
+    try (CommandJournal journal = new CommandJournal(file, baseSequence, 1, 0)) {
+      journal.replay(commands::add);
+    }
+    return commands;
+  }
+}
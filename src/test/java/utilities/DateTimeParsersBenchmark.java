@@ -0,0 +1,143 @@
+package utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH comparison of DateTimeParsers with the formatters it replaces. Not run by the tests;
+ * after {@code mvn test-compile}, run it with
+ * {@code java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main DateTimeParsersBenchmark}.
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeParsersBenchmark {
+
+  private static final DateTimeFormatter US_DATE =
+          DateTimeFormatter.ofPattern("MM/dd/yyyy", Locale.ENGLISH);
+  private static final DateTimeFormatter SHORT_US_DATE =
+          DateTimeFormatter.ofPattern("M/d/yy", Locale.ENGLISH);
+  private static final DateTimeFormatter CLOCK_TIME =
+          DateTimeFormatter.ofPattern("hh:mm a", Locale.ENGLISH);
+  private static final DateTimeFormatter ISO_DATE_TIME =
+          DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm", Locale.ENGLISH);
+
+  private final String[] usDates = {"03/15/2024", "11/02/2023", "12/31/2025", "01/01/2024"};
+  private final String[] shortUsDates = {"3/15/24", "11/2/23", "12/31/25", "1/1/24"};
+  private final String[] clockTimes = {"09:30 AM", "12:00 PM", "04:45 PM", "11:59 PM"};
+  private final String[] isoDateTimes = {"2024-03-15T09:30", "2023-11-02T12:00",
+      "2025-12-31T16:45", "2024-01-01T23:59"};
+
+  /**
+   * Parses MM/dd/yyyy dates with the formatter.
+   */
+
+  @Benchmark
+  public void usDateFormatter(Blackhole sink) {
+    for (String date : usDates) {
+      sink.consume(LocalDate.parse(date, US_DATE));
+    }
+  }
+
+  /**
+   * Parses MM/dd/yyyy dates with the fast path.
+   */
+
+  @Benchmark
+  public void usDateFast(Blackhole sink) {
+    for (String date : usDates) {
+      sink.consume(DateTimeParsers.parseUsDate(date));
+    }
+  }
+
+  /**
+   * Parses M/d/yy dates the way the importer did: the primary formatter fails first.
+   */
+
+  @Benchmark
+  public void shortUsDateFormatterFallback(Blackhole sink) {
+    for (String date : shortUsDates) {
+      try {
+        sink.consume(LocalDate.parse(date, US_DATE));
+      }
+      catch (DateTimeParseException e) {
+        sink.consume(LocalDate.parse(date, SHORT_US_DATE));
+      }
+    }
+  }
+
+  /**
+   * Parses M/d/yy dates with the fast path.
+   */
+
+  @Benchmark
+  public void shortUsDateFast(Blackhole sink) {
+    for (String date : shortUsDates) {
+      sink.consume(DateTimeParsers.parseUsDate(date));
+    }
+  }
+
+  /**
+   * Parses hh:mm a times with the formatter.
+   */
+
+  @Benchmark
+  public void clockTimeFormatter(Blackhole sink) {
+    for (String time : clockTimes) {
+      sink.consume(LocalTime.parse(time, CLOCK_TIME));
+    }
+  }
+
+  /**
+   * Parses hh:mm a times with the fast path.
+   */
+
+  @Benchmark
+  public void clockTimeFast(Blackhole sink) {
+    for (String time : clockTimes) {
+      sink.consume(DateTimeParsers.parseClockTime(time));
+    }
+  }
+
+  /**
+   * Parses command date times with the formatter.
+   */
+
+  @Benchmark
+  public void isoDateTimeFormatter(Blackhole sink) {
+    for (String dateTime : isoDateTimes) {
+      sink.consume(LocalDateTime.parse(dateTime, ISO_DATE_TIME));
+    }
+  }
+
+  /**
+   * Parses command date times with the fast path.
+   */
+
+  @Benchmark
+  public void isoDateTimeFast(Blackhole sink) {
+    for (String dateTime : isoDateTimes) {
+      sink.consume(DateTimeParsers.parseIsoDateTime(dateTime));
+    }
+  }
+}
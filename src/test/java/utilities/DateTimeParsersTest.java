@@ -0,0 +1,169 @@
+package utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * JUnit4 test cases for DateTimeParsers. Every parser must either agree with the formatter
+ * it replaces or return null, and must return a value for the usual inputs.
+ */
+
+public class DateTimeParsersTest {
+
+  private static final DateTimeFormatter US_DATE =
+          DateTimeFormatter.ofPattern("MM/dd/yyyy", Locale.ENGLISH);
+  private static final DateTimeFormatter SHORT_US_DATE =
+          DateTimeFormatter.ofPattern("M/d/yy", Locale.ENGLISH);
+  private static final DateTimeFormatter CLOCK_TIME =
+          DateTimeFormatter.ofPattern("hh:mm a", Locale.ENGLISH);
+  private static final DateTimeFormatter ISO_DATE =
+          DateTimeFormatter.ofPattern("yyyy-MM-dd", Locale.ENGLISH);
+  private static final DateTimeFormatter ISO_DATE_TIME =
+          DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm", Locale.ENGLISH);
+
+  /**
+   * Test the date layouts of imported files against both formatters, in the order the
+   * importer tries them.
+   */
+
+  @Test
+  public void testUsDateMatchesFormatters() {
+    String[] years = {"2024", "2023", "1900", "2000", "0000", "0001", "20245", "24", "99",
+        "00", "7"};
+    for (String year : years) {
+      for (int month = 0; month <= 13; month++) {
+        for (int day = 0; day <= 32; day++) {
+          for (String date : new String[] {pad(month) + "/" + pad(day) + "/" + year,
+              month + "/" + day + "/" + year, pad(month) + "/" + day + "/" + year}) {
+            LocalDate expected = parseUsDate(date);
+            LocalDate actual = DateTimeParsers.parseUsDate(date);
+            assertAgrees(date, expected, actual);
+            if (day >= 1 && day <= 28 && month >= 1 && month <= 12 && year.equals("2024")) {
+              assertEquals(date, expected, actual);
+            }
+          }
+        }
+      }
+    }
+    assertEquals(LocalDate.of(2024, 3, 15), DateTimeParsers.parseUsDate("03/15/2024"));
+    assertEquals(LocalDate.of(2024, 3, 5), DateTimeParsers.parseUsDate("3/5/24"));
+    assertNull(DateTimeParsers.parseUsDate("03-15-2024"));
+    assertNull(DateTimeParsers.parseUsDate("/3/24"));
+  }
+
+  /**
+   * Test every hour and minute of the clock time layout, including invalid ones.
+   */
+
+  @Test
+  public void testClockTimeMatchesFormatter() {
+    for (int hour = 0; hour <= 13; hour++) {
+      for (int minute = 0; minute <= 60; minute++) {
+        for (String marker : new String[] {"AM", "PM", "am", "XM", "A"}) {
+          String time = pad(hour) + ":" + pad(minute) + " " + marker;
+          LocalTime expected = parse(time, CLOCK_TIME, LocalTime::from);
+          LocalTime actual = DateTimeParsers.parseClockTime(time);
+          assertAgrees(time, expected, actual);
+          if (hour >= 1 && hour <= 12 && minute < 60
+                  && (marker.equals("AM") || marker.equals("PM"))) {
+            assertEquals(time, expected, actual);
+          }
+        }
+      }
+    }
+    assertNull(DateTimeParsers.parseClockTime("9:30 AM"));
+  }
+
+  /**
+   * Test the date and date time layouts of commands.
+   */
+
+  @Test
+  public void testIsoDateTimeMatchesFormatter() {
+    for (String year : new String[] {"2024", "2023", "2100", "0000", "abcd"}) {
+      for (int month = 0; month <= 13; month++) {
+        for (int day = 0; day <= 32; day++) {
+          String date = year + "-" + pad(month) + "-" + pad(day);
+          LocalDate expectedDate = parse(date, ISO_DATE, LocalDate::from);
+          LocalDate actualDate = DateTimeParsers.parseIsoDate(date);
+          assertAgrees(date, expectedDate, actualDate);
+
+          for (String time : new String[] {"T00:00", "T23:59", "T24:00", "T10:60", "T9:30",
+              " 10:00"}) {
+            LocalDateTime expected = parse(date + time, ISO_DATE_TIME, LocalDateTime::from);
+            LocalDateTime actual = DateTimeParsers.parseIsoDateTime(date + time);
+            assertAgrees(date + time, expected, actual);
+          }
+        }
+      }
+    }
+    assertEquals(LocalDate.of(2024, 2, 29), DateTimeParsers.parseIsoDate("2024-02-29"));
+    assertEquals(LocalDateTime.of(2024, 3, 15, 23, 59),
+            DateTimeParsers.parseIsoDateTime("2024-03-15T23:59"));
+    assertNull(DateTimeParsers.parseIsoDateTime("2024-03-15T24:00"));
+  }
+
+  /**
+   * Test that the date and date time layouts are read in place inside a longer text.
+   */
+
+  @Test
+  public void testIsoLayoutsInsideText() {
+    String command = "edit event location M from 2024-03-15T09:30 to 2024-02-29 with X";
+    assertEquals(LocalDateTime.of(2024, 3, 15, 9, 30),
+            DateTimeParsers.parseIsoDateTime(command, 27, 43));
+    assertEquals(LocalDate.of(2024, 2, 29), DateTimeParsers.parseIsoDate(command, 47, 57));
+    assertNull(DateTimeParsers.parseIsoDateTime(command, 27, 44));
+    assertNull(DateTimeParsers.parseIsoDate(command, 46, 56));
+  }
+
+  /**
+   * Checks that a parser either agrees with the formatter or leaves the text to it.
+   */
+
+  private static void assertAgrees(String text, Object expected, Object actual) {
+    if (actual != null) {
+      assertEquals(text, expected, actual);
+    }
+  }
+
+  /**
+   * Parses a date the way the importer did before the fast path.
+   */
+
+  private static LocalDate parseUsDate(String date) {
+    LocalDate parsed = parse(date, US_DATE, LocalDate::from);
+    return parsed != null ? parsed : parse(date, SHORT_US_DATE, LocalDate::from);
+  }
+
+  /**
+   * Parses text with a formatter, returning null if it fails.
+   */
+
+  private static <T> T parse(String text, DateTimeFormatter formatter,
+                             java.time.temporal.TemporalQuery<T> query) {
+    try {
+      return formatter.parse(text, query);
+    }
+    catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Writes a number with at least two digits.
+   */
+
+  private static String pad(int value) {
+    return value < 10 ? "0" + value : String.valueOf(value);
+  }
+}
@@ -0,0 +1,93 @@
+package view;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+/**
+ * Test class for BufferedConsoleView.
+ */
+
+public class BufferedConsoleViewTest {
+
+  private static final String NL = System.lineSeparator();
+
+  private final InputStream noInput = new ByteArrayInputStream(new byte[0]);
+
+  /**
+   * Tests that every message is written out, in order, once the view is flushed, even
+   * when the messages are much larger than the ring buffer and wrap around it.
+   */
+
+  @Test
+  public void testMessagesWrapAroundRing() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BufferedConsoleView view = new BufferedConsoleView(noInput, out, false, 7);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 500; i++) {
+      String message = "message " + i + (i % 50 == 0 ? " " + "x".repeat(100) : "");
+      view.displayMessage(message);
+      expected.append(message).append(NL);
+    }
+    view.flush();
+
+    assertEquals(expected.toString(), out.toString());
+  }
+
+  /**
+   * Tests that a quiet view drops acknowledgements and keeps other messages.
+   */
+
+  @Test
+  public void testQuietDropsAcknowledgements() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BufferedConsoleView view = new BufferedConsoleView(noInput, out, true);
+    view.displayAcknowledgement("Command processed: create calendar --name Work");
+    view.displayMessage("false");
+    view.flush();
+
+    assertEquals("false" + NL, out.toString());
+
+    ByteArrayOutputStream loud = new ByteArrayOutputStream();
+    view = new BufferedConsoleView(noInput, loud, false);
+    view.displayAcknowledgement("Command processed: show status on 2025-03-10T10:00");
+    view.flush();
+
+    assertEquals("Command processed: show status on 2025-03-10T10:00" + NL, loud.toString());
+  }
+
+  /**
+   * Tests that pending messages are written out before input is read.
+   */
+
+  @Test
+  public void testGetInputWritesOutputFirst() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BufferedConsoleView view = new BufferedConsoleView(
+            new ByteArrayInputStream(("print events on 2025-03-10" + NL).getBytes()), out,
+            false);
+    view.displayMessage("Interactive mode on. Type 'exit' to quit");
+
+    assertEquals("print events on 2025-03-10", view.getInput());
+    assertEquals("Interactive mode on. Type 'exit' to quit" + NL, out.toString());
+  }
+
+  /**
+   * Tests that a null message is shown as null, as the console view shows it.
+   */
+
+  @Test
+  public void testNullMessage() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BufferedConsoleView view = new BufferedConsoleView(noInput, out, false);
+    view.displayMessage(null);
+    view.displayMessage("false");
+    view.flush();
+
+    assertEquals("null" + NL + "false" + NL, out.toString());
+  }
+}